@@ -0,0 +1,191 @@
+package br.com.sysmap.bootcamp.common.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Keeps the response to a request sent with an Idempotency-Key, a retry gets it back without running the request again.
+// Recent keys are answered from memory, the table makes a key used on one instance known to the others.
+// A key is bound to a hash of the request's payload, reusing it for a different request is refused rather than answered with the old response
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotentRequests<?> idempotentRequests;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> responses;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+
+    public IdempotencyStore(IdempotentRequests<?> idempotentRequests,
+                            ObjectMapper objectMapper,
+                            @Value("${idempotency.ttl:24h}") Duration ttl,
+                            @Value("${idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${idempotency.in-progress-timeout:30s}") Duration inProgressTimeout) {
+        this.idempotentRequests = idempotentRequests;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.inProgressTimeout = inProgressTimeout;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // Runs the request once per operation, user and key. Without a key it just runs
+    public ResponseEntity<Object> execute(String operation, String key, Object payload, Supplier<ResponseEntity<Object>> request) {
+        if (key == null) {
+            return request.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid " + HEADER);
+        }
+        String requestKey = operation + ":" + principal() + ":" + key;
+        String requestHash = hash(payload);
+
+        StoredResponse stored = this.responses.getIfPresent(requestKey);
+        if (stored != null) {
+            return stored.matches(requestHash) ? stored.replay() : mismatch();
+        }
+        Optional<ResponseEntity<Object>> previous = claim(requestKey, requestHash);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+
+        ResponseEntity<Object> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            release(requestKey);
+            throw e;
+        }
+        // A server error is worth retrying, the key is given back
+        if (response.getStatusCode().is5xxServerError()) {
+            release(requestKey);
+            return response;
+        }
+        try {
+            stored = StoredResponse.of(response, requestHash, this.objectMapper);
+        } catch (JsonProcessingException e) {
+            log.warn("Couldn't store the response for {}, a retry will run the request again", requestKey, e);
+            release(requestKey);
+            return response;
+        }
+        this.idempotentRequests.complete(requestKey, stored.status(), stored.contentType(), stored.body());
+        this.responses.put(requestKey, stored);
+        return response;
+    }
+
+    // Empty when this call owns the key now, otherwise the answer the key already has
+    private Optional<ResponseEntity<Object>> claim(String requestKey, String requestHash) {
+        Instant now = Instant.now();
+        try {
+            this.idempotentRequests.claim(requestKey, now, requestHash);
+            return Optional.empty();
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Idempotency key {} already used", requestKey);
+        }
+
+        Optional<? extends IdempotentRequests.Request> existing = this.idempotentRequests.findById(requestKey);
+        if (existing.isPresent() && existing.get().getRequestHash() != null && !existing.get().getRequestHash().equals(requestHash)) {
+            return Optional.of(mismatch());
+        }
+        if (existing.isPresent() && existing.get().getStatus() != null) {
+            StoredResponse stored = StoredResponse.of(existing.get());
+            this.responses.put(requestKey, stored);
+            return Optional.of(stored.replay());
+        }
+        if (existing.isPresent() && this.idempotentRequests.reclaim(requestKey, now, now.minus(this.inProgressTimeout)) == 1) {
+            return Optional.empty();
+        }
+        return Optional.of(ResponseEntity.status(HttpStatus.CONFLICT).body("A request with this " + HEADER + " is still in progress"));
+    }
+
+    private void release(String requestKey) {
+        try {
+            this.idempotentRequests.deleteById(requestKey);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't release idempotency key {}, it's taken over after {}", requestKey, this.inProgressTimeout, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT1H}")
+    public void purge() {
+        int purged = this.idempotentRequests.deleteCreatedBefore(Instant.now().minus(this.ttl));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private String hash(Object payload) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(this.objectMapper.writeValueAsBytes(payload)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Couldn't hash the request payload", e);
+        }
+    }
+
+    private static ResponseEntity<Object> mismatch() {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body("This " + HEADER + " was already used for a different request");
+    }
+
+    private static String principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "anonymous" : String.valueOf(authentication.getPrincipal());
+    }
+
+    private record StoredResponse(int status, String contentType, String body, String requestHash) {
+
+        static StoredResponse of(ResponseEntity<Object> response, String requestHash, ObjectMapper objectMapper) throws JsonProcessingException {
+            Object body = response.getBody();
+            if (body == null) {
+                return new StoredResponse(response.getStatusCode().value(), null, null, requestHash);
+            }
+            if (body instanceof String text) {
+                return new StoredResponse(response.getStatusCode().value(), MediaType.TEXT_PLAIN_VALUE, text, requestHash);
+            }
+            return new StoredResponse(response.getStatusCode().value(), MediaType.APPLICATION_JSON_VALUE, objectMapper.writeValueAsString(body),
+                    requestHash);
+        }
+
+        static StoredResponse of(IdempotentRequests.Request request) {
+            return new StoredResponse(request.getStatus(), request.getContentType(), request.getBody(), request.getRequestHash());
+        }
+
+        boolean matches(String requestHash) {
+            return this.requestHash == null || this.requestHash.equals(requestHash);
+        }
+
+        ResponseEntity<Object> replay() {
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(this.status).header(REPLAYED_HEADER, "true");
+            if (this.contentType != null) {
+                response.contentType(MediaType.parseMediaType(this.contentType));
+            }
+            return response.body(this.body);
+        }
+    }
+}
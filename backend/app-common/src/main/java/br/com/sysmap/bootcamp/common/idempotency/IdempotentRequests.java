@@ -0,0 +1,34 @@
+package br.com.sysmap.bootcamp.common.idempotency;
+
+import java.time.Instant;
+import java.util.Optional;
+
+// The table IdempotencyStore keeps its keys in. Each service has its own and implements this with its Spring Data repository
+public interface IdempotentRequests<R extends IdempotentRequests.Request> {
+
+    // A plain insert, a key already taken fails with a DataIntegrityViolationException instead of being merged over
+    int claim(String requestKey, Instant createdAt, String requestHash);
+
+    // Takes over a key whose first attempt stopped answering before it finished
+    int reclaim(String requestKey, Instant createdAt, Instant staleBefore);
+
+    int complete(String requestKey, int status, String contentType, String body);
+
+    int deleteCreatedBefore(Instant createdBefore);
+
+    Optional<R> findById(String requestKey);
+
+    void deleteById(String requestKey);
+
+    // A request sent with an Idempotency-Key, status stays null while the first attempt is still running
+    interface Request {
+
+        Integer getStatus();
+
+        String getContentType();
+
+        String getBody();
+
+        String getRequestHash();
+    }
+}
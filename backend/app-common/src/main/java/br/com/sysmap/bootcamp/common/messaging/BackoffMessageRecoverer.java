@@ -0,0 +1,132 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Takes the messages a listener failed on instead of requeueing them at the head of their queue. A message waits in a retry stage,
+// a queue whose TTL dead-letters it back to the queue it failed on, each stage multiplier times longer than the one before.
+// Past the last stage, or if it can't even be read, it's parked on <queue>.dlq until DeadLetterReplayEndpoint moves it back.
+// Both services share the stages
+@Slf4j
+public class BackoffMessageRecoverer implements MessageBatchRecoverer {
+
+    public static final String RETRIES_HEADER = "x-retries";
+    public static final String EXCEPTION_HEADER = "x-exception";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+    private final List<Duration> delays = new ArrayList<>();
+    private final Duration confirmTimeout;
+
+    public BackoffMessageRecoverer(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry, Duration initialInterval,
+                                   double multiplier, int maxRetries, Duration confirmTimeout) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.meterRegistry = meterRegistry;
+        this.confirmTimeout = confirmTimeout;
+        for (int retry = 0; retry < maxRetries; retry++) {
+            this.delays.add(Duration.ofMillis(Math.round(initialInterval.toMillis() * Math.pow(multiplier, retry))));
+        }
+    }
+
+    // The waits between a message's attempts, for a listener that retries in place instead of through the stages
+    public List<Duration> delays() {
+        return List.copyOf(this.delays);
+    }
+
+    public static String deadLetterQueue(String queue) {
+        return queue + ".dlq";
+    }
+
+    // Named after the delay, so changing the delays declares new stages instead of clashing with the TTL of the old ones
+    public static String retryStage(Duration delay) {
+        return "Retry." + delay.toMillis() + "ms";
+    }
+
+    // An expired message is dead-lettered to the default exchange with the routing key it was published with,
+    // the fanout exchange in front keeps that key as the name of the queue it failed on
+    public Declarables retryStages() {
+        List<Declarable> declarables = new ArrayList<>();
+        for (Duration delay : this.delays) {
+            FanoutExchange exchange = new FanoutExchange(retryStage(delay));
+            Queue queue = QueueBuilder.durable(retryStage(delay)).ttl((int) delay.toMillis()).deadLetterExchange("").build();
+            Binding binding = BindingBuilder.bind(queue).to(exchange);
+            declarables.add(exchange);
+            declarables.add(queue);
+            declarables.add(binding);
+        }
+        return new Declarables(declarables);
+    }
+
+    @Override
+    public void recover(Message message, Throwable cause) {
+        MessageProperties properties = message.getMessageProperties();
+        String queue = properties.getConsumerQueue() == null ? properties.getReceivedRoutingKey() : properties.getConsumerQueue();
+        Integer retries = properties.getHeader(RETRIES_HEADER);
+        int retry = retries == null ? 0 : retries;
+        if (retry < this.delays.size() && !isUnreadable(cause)) {
+            properties.setHeader(RETRIES_HEADER, retry + 1);
+            publish(retryStage(this.delays.get(retry)), queue, message);
+            counter("messaging.retry.retried", "Failed messages sent to a retry stage", queue).increment();
+            log.warn("Message from {} failed, retrying it in {}: {}", queue, this.delays.get(retry), cause.toString());
+            return;
+        }
+        deadLetter(message, cause);
+    }
+
+    // Straight to <queue>.dlq, for a listener that already retried the message where it failed.
+    // Messages dead-lettered one after the other are replayed in that same order
+    public void deadLetter(Message message, Throwable cause) {
+        MessageProperties properties = message.getMessageProperties();
+        String queue = properties.getConsumerQueue() == null ? properties.getReceivedRoutingKey() : properties.getConsumerQueue();
+        Integer retries = properties.getHeader(RETRIES_HEADER);
+        properties.setHeader(EXCEPTION_HEADER, String.valueOf(cause));
+        publish("", deadLetterQueue(queue), message);
+        counter("messaging.retry.dead-lettered", "Failed messages parked on a dead-letter queue", queue).increment();
+        log.error("Message from {} dead-lettered after {} retries", queue, retries == null ? 0 : retries, cause);
+    }
+
+    @Override
+    public void recover(List<Message> messages, Throwable cause) {
+        messages.forEach(message -> recover(message, cause));
+    }
+
+    // The failed message is acked once this returns, so it waits for the broker to have the copy
+    private void publish(String exchange, String routingKey, Message message) {
+        CorrelationData correlation = new CorrelationData();
+        this.rabbitTemplate.send(exchange, routingKey, message, correlation);
+        PublisherConfirms.await(List.of(correlation), this.confirmTimeout);
+    }
+
+    private Counter counter(String name, String description, String queue) {
+        return Counter.builder(name).description(description).tag("queue", queue).register(this.meterRegistry);
+    }
+
+    // Retrying a message that can't be converted won't make it convertible
+    private static boolean isUnreadable(Throwable cause) {
+        for (Throwable current = cause; current != null; current = current.getCause()) {
+            if (current instanceof MessageConversionException
+                    || current instanceof org.springframework.messaging.converter.MessageConversionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import com.rabbitmq.client.GetResponse;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/deadletters counts the messages parked on each <queue>.dlq, POST /actuator/deadletters/{queue} moves them back
+// to the queue once whatever failed them is fixed, all of them or up to max, in the order they were parked. They come back
+// with a fresh set of retries, behind whatever reached the queue since they were parked.
+// Messages are acked on the dead-letter queue only after the broker confirmed their copy, a crash in between replays them twice
+@Endpoint(id = "deadletters")
+public class DeadLetterReplayEndpoint {
+
+    private static final int CHUNK = 100;
+    private static final MessagePropertiesConverter MESSAGE_PROPERTIES_CONVERTER = new DefaultMessagePropertiesConverter();
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final List<String> queues;
+    private final Duration confirmTimeout;
+
+    public DeadLetterReplayEndpoint(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin, List<String> queues, Duration confirmTimeout) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.queues = queues;
+        this.confirmTimeout = confirmTimeout;
+    }
+
+    @ReadOperation
+    public Map<String, Integer> deadLetters() {
+        Map<String, Integer> deadLetters = new LinkedHashMap<>();
+        for (String queue : this.queues) {
+            QueueInformation information = this.amqpAdmin.getQueueInfo(BackoffMessageRecoverer.deadLetterQueue(queue));
+            deadLetters.put(queue, information == null ? 0 : information.getMessageCount());
+        }
+        return deadLetters;
+    }
+
+    @WriteOperation
+    public int replay(@Selector String queue, @Nullable Integer max) {
+        if (!this.queues.contains(queue)) {
+            throw new InvalidEndpointRequestException("Unknown queue " + queue, "Unknown queue");
+        }
+        int limit = max == null ? Integer.MAX_VALUE : max;
+        String deadLetterQueue = BackoffMessageRecoverer.deadLetterQueue(queue);
+        Integer replayed = this.rabbitTemplate.execute(channel -> {
+            int moved = 0;
+            while (moved < limit) {
+                List<CorrelationData> confirms = new ArrayList<>();
+                long lastDeliveryTag = 0;
+                GetResponse response = null;
+                while (confirms.size() < CHUNK && moved + confirms.size() < limit
+                        && (response = channel.basicGet(deadLetterQueue, false)) != null) {
+                    CorrelationData correlation = new CorrelationData();
+                    this.rabbitTemplate.send("", queue, withoutRetries(response), correlation);
+                    confirms.add(correlation);
+                    lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+                }
+                if (!confirms.isEmpty()) {
+                    PublisherConfirms.await(confirms, this.confirmTimeout);
+                    channel.basicAck(lastDeliveryTag, true);
+                    moved += confirms.size();
+                }
+                if (response == null) {
+                    break;
+                }
+            }
+            return moved;
+        });
+        return replayed == null ? 0 : replayed;
+    }
+
+    private static Message withoutRetries(GetResponse response) {
+        MessageProperties properties = MESSAGE_PROPERTIES_CONVERTER.toMessageProperties(response.getProps(), response.getEnvelope(), "UTF-8");
+        properties.getHeaders().remove(BackoffMessageRecoverer.RETRIES_HEADER);
+        properties.getHeaders().remove(BackoffMessageRecoverer.EXCEPTION_HEADER);
+        properties.getHeaders().remove("x-death");
+        return new Message(response.getBody(), properties);
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Measures how busy each queue's consumers are: the share of their time spent in the listener over the last interval, the rest
+// they wait for messages. Near 1 the queue needs more concurrency or prefetch, near 0 it has consumers to spare.
+// Sits at the end of every listener container factory's advice chain
+public class ListenerUtilization implements MethodInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final RabbitListenerEndpointRegistry endpointRegistry;
+    private final Map<String, Usage> usages = new ConcurrentHashMap<>();
+
+    private static final class Usage {
+        private final LongAdder busyNanos = new LongAdder();
+        private long sampledBusyNanos;
+        private long sampledAt = System.nanoTime();
+        private volatile int consumers;
+        private volatile double utilization;
+    }
+
+    public ListenerUtilization(MeterRegistry meterRegistry, RabbitListenerEndpointRegistry endpointRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.endpointRegistry = endpointRegistry;
+    }
+
+    // Last in the chain, inside the retry advice, so a failure's trip through the recoverer doesn't count as listener time
+    public void measure(SimpleRabbitListenerContainerFactory factory) {
+        Advice[] adviceChain = factory.getAdviceChain() == null ? new Advice[0] : factory.getAdviceChain();
+        Advice[] measured = Arrays.copyOf(adviceChain, adviceChain.length + 1);
+        measured[adviceChain.length] = this;
+        factory.setAdviceChain(measured);
+    }
+
+    // Wraps the container's invokeListener(channel, data), data being the message or the batch
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            String queue = queueOf(invocation.getArguments()[1]);
+            if (queue != null) {
+                usage(queue).busyNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${messaging.listener.utilization-interval:PT30S}")
+    public void sample() {
+        Map<String, Integer> consumers = new HashMap<>();
+        for (MessageListenerContainer container : this.endpointRegistry.getListenerContainers()) {
+            if (container instanceof SimpleMessageListenerContainer simpleContainer) {
+                for (String queue : simpleContainer.getQueueNames()) {
+                    consumers.merge(queue, simpleContainer.getActiveConsumerCount(), Integer::sum);
+                }
+            }
+        }
+        // Queues nothing arrived on yet still report their consumers as idle
+        consumers.keySet().forEach(this::usage);
+        long now = System.nanoTime();
+        this.usages.forEach((queue, usage) -> {
+            int active = consumers.getOrDefault(queue, 0);
+            long busy = usage.busyNanos.sum();
+            long elapsed = now - usage.sampledAt;
+            usage.consumers = active;
+            usage.utilization = active == 0 || elapsed <= 0 ? 0 : Math.min(1, (double) (busy - usage.sampledBusyNanos) / ((double) elapsed * active));
+            usage.sampledBusyNanos = busy;
+            usage.sampledAt = now;
+        });
+    }
+
+    private Usage usage(String queue) {
+        return this.usages.computeIfAbsent(queue, name -> {
+            Usage usage = new Usage();
+            Gauge.builder("messaging.listener.utilization", usage, current -> current.utilization)
+                    .description("Share of the consumers' time spent in the listener over the last interval")
+                    .tag("queue", name)
+                    .register(this.meterRegistry);
+            Gauge.builder("messaging.listener.consumers", usage, current -> current.consumers)
+                    .description("Active consumers of the queue")
+                    .tag("queue", name)
+                    .register(this.meterRegistry);
+            FunctionCounter.builder("messaging.listener.busy", usage, current -> current.busyNanos.sum() / 1e9)
+                    .description("Time the consumers spent in the listener")
+                    .baseUnit("seconds")
+                    .tag("queue", name)
+                    .register(this.meterRegistry);
+            return usage;
+        });
+    }
+
+    private static String queueOf(Object data) {
+        Object message = data instanceof List<?> batch && !batch.isEmpty() ? batch.get(0) : data;
+        return message instanceof Message received ? received.getMessageProperties().getConsumerQueue() : null;
+    }
+}
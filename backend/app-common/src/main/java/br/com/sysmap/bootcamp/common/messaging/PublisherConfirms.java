@@ -0,0 +1,39 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// With correlated confirms the broker acks messages in the background while more are published, so a batch is sent first
+// and its confirms are waited for once, instead of a round trip per message
+public final class PublisherConfirms {
+
+    private PublisherConfirms() {
+    }
+
+    public static void await(List<CorrelationData> correlations, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (CorrelationData correlation : correlations) {
+            CorrelationData.Confirm confirm;
+            try {
+                confirm = correlation.getFuture().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmqpException("Interrupted waiting for the confirm of " + correlation.getId(), e);
+            } catch (ExecutionException e) {
+                throw new AmqpException("Couldn't get the confirm of " + correlation.getId(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new AmqpTimeoutException("No confirm of " + correlation.getId() + " within " + timeout, e);
+            }
+            if (!confirm.isAck()) {
+                throw new AmqpException("The broker didn't take " + correlation.getId() + ": " + confirm.getReason());
+            }
+        }
+    }
+}
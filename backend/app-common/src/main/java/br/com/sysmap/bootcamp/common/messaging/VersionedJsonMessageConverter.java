@@ -0,0 +1,112 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes queue messages as JSON with the schema in the content type, e.g. application/vnd.sysmap.wallet-debit.v1+json.
+// The content type survives the outbox, which only keeps it and the body. Both services read and write through this class,
+// each with its own copies of the DTOs.
+// Fields may only be added within a version, a reader ignores the ones it doesn't know and rejects versions newer than its own.
+// Java-serialized messages are still read so whatever was queued before the switch is consumed
+public class VersionedJsonMessageConverter extends AbstractMessageConverter {
+
+    private static final String CONTENT_TYPE_PREFIX = "application/vnd.sysmap.";
+    private static final String CONTENT_TYPE_SUFFIX = "+json";
+
+    private final ObjectMapper objectMapper;
+    private final SimpleMessageConverter javaSerialization;
+    private final Map<Class<?>, Schema> schemasByType = new HashMap<>();
+    private final Map<String, Schema> schemasByName = new HashMap<>();
+    private boolean writeJavaSerialization;
+
+    private record Schema(String name, int version, String contentType, ObjectReader reader, ObjectWriter writer) {
+    }
+
+    public VersionedJsonMessageConverter(ObjectMapper objectMapper, SimpleMessageConverter javaSerialization) {
+        // Both services have to agree on the JSON whatever their own ObjectMapper settings are
+        this.objectMapper = objectMapper.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .findAndRegisterModules();
+        this.javaSerialization = javaSerialization;
+    }
+
+    public VersionedJsonMessageConverter register(String name, int version, Class<?> type) {
+        Schema schema = new Schema(name, version, CONTENT_TYPE_PREFIX + name + ".v" + version + CONTENT_TYPE_SUFFIX,
+                this.objectMapper.readerFor(type), this.objectMapper.writerFor(type));
+        this.schemasByType.put(type, schema);
+        this.schemasByName.put(name, schema);
+        return this;
+    }
+
+    // Keeps publishing Java-serialized messages while the other service can't read JSON yet, reading accepts both either way
+    public void setWriteJavaSerialization(boolean writeJavaSerialization) {
+        this.writeJavaSerialization = writeJavaSerialization;
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        if (this.writeJavaSerialization) {
+            return this.javaSerialization.toMessage(object, messageProperties);
+        }
+        Schema schema = this.schemasByType.get(object.getClass());
+        if (schema == null) {
+            throw new MessageConversionException("No message schema registered for " + object.getClass().getName());
+        }
+        byte[] body;
+        try {
+            body = schema.writer().writeValueAsBytes(object);
+        } catch (IOException e) {
+            throw new MessageConversionException("Couldn't write a " + schema.name() + " message", e);
+        }
+        messageProperties.setContentType(schema.contentType());
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        String contentType = message.getMessageProperties().getContentType();
+        if (MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT.equals(contentType)) {
+            return this.javaSerialization.fromMessage(message);
+        }
+        if (contentType == null || !contentType.startsWith(CONTENT_TYPE_PREFIX) || !contentType.endsWith(CONTENT_TYPE_SUFFIX)) {
+            throw new MessageConversionException("Unsupported message content type " + contentType);
+        }
+        String schemaVersion = contentType.substring(CONTENT_TYPE_PREFIX.length(), contentType.length() - CONTENT_TYPE_SUFFIX.length());
+        int versionAt = schemaVersion.lastIndexOf(".v");
+        Schema schema = versionAt < 0 ? null : this.schemasByName.get(schemaVersion.substring(0, versionAt));
+        if (schema == null) {
+            throw new MessageConversionException("No message schema registered for " + contentType);
+        }
+        int version;
+        try {
+            version = Integer.parseInt(schemaVersion.substring(versionAt + 2));
+        } catch (NumberFormatException e) {
+            throw new MessageConversionException("Unsupported message content type " + contentType, e);
+        }
+        if (version > schema.version()) {
+            throw new MessageConversionException(contentType + " is newer than " + schema.contentType());
+        }
+        // Jackson parses the body array in place, there's no intermediate String or stream
+        try {
+            return schema.reader().readValue(message.getBody());
+        } catch (IOException e) {
+            throw new MessageConversionException("Couldn't read a " + contentType + " message", e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class BackoffMessageRecovererTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private BackoffMessageRecoverer recoverer;
+
+    @BeforeEach
+    public void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(3).getFuture().complete(new CorrelationData.Confirm(true, null)))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        recoverer = new BackoffMessageRecoverer(rabbitTemplate, meterRegistry, Duration.ofSeconds(1), 4, 3, Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should declare one delay queue per retry, each dead-lettering back through the default exchange")
+    public void shouldDeclareRetryStages() {
+        List<Queue> stages = recoverer.retryStages().getDeclarablesByType(Queue.class);
+
+        assertEquals(List.of("Retry.1000ms", "Retry.4000ms", "Retry.16000ms"), stages.stream().map(Queue::getName).toList());
+        assertEquals(16000, stages.get(2).getArguments().get("x-message-ttl"));
+        assertEquals("", stages.get(2).getArguments().get("x-dead-letter-exchange"));
+    }
+
+    @Test
+    @DisplayName("Should send a failed message to the retry stage of its next attempt")
+    public void shouldRetryWithBackoff() {
+        Message first = message(null);
+        Message second = message(1);
+
+        recoverer.recover(first, new IllegalStateException("Database unavailable"));
+        recoverer.recover(second, new IllegalStateException("Database unavailable"));
+
+        verify(rabbitTemplate).send(eq("Retry.1000ms"), eq("DebitConfirmationQueue"), eq(first), any(CorrelationData.class));
+        verify(rabbitTemplate).send(eq("Retry.4000ms"), eq("DebitConfirmationQueue"), eq(second), any(CorrelationData.class));
+        assertEquals(2, (Integer) second.getMessageProperties().getHeader(BackoffMessageRecoverer.RETRIES_HEADER));
+        assertEquals(2, meterRegistry.get("messaging.retry.retried").tag("queue", "DebitConfirmationQueue").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter a message out of retries or that can't be read")
+    public void shouldDeadLetter() {
+        Message exhausted = message(3);
+        Message unreadable = message(null);
+
+        recoverer.recover(exhausted, new IllegalStateException("Sale not found"));
+        recoverer.recover(unreadable, new MessageConversionException("Unsupported message content type application/json"));
+
+        verify(rabbitTemplate).send(eq(""), eq("DebitConfirmationQueue.dlq"), eq(exhausted), any(CorrelationData.class));
+        verify(rabbitTemplate).send(eq(""), eq("DebitConfirmationQueue.dlq"), eq(unreadable), any(CorrelationData.class));
+        assertEquals("java.lang.IllegalStateException: Sale not found", exhausted.getMessageProperties().getHeader(BackoffMessageRecoverer.EXCEPTION_HEADER));
+        assertEquals(2, meterRegistry.get("messaging.retry.dead-lettered").tag("queue", "DebitConfirmationQueue").counter().count());
+    }
+
+    private static Message message(Integer retries) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue("DebitConfirmationQueue");
+        if (retries != null) {
+            properties.setHeader(BackoffMessageRecoverer.RETRIES_HEADER, retries);
+        }
+        return new Message(new byte[0], properties);
+    }
+}
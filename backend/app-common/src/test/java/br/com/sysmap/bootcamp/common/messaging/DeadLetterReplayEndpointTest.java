@@ -0,0 +1,107 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeadLetterReplayEndpointTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private Channel channel;
+    private DeadLetterReplayEndpoint endpoint;
+
+    @BeforeEach
+    public void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        channel = mock(Channel.class);
+        when(rabbitTemplate.execute(any())).thenAnswer(invocation -> invocation.<ChannelCallback<?>>getArgument(0).doInRabbit(channel));
+        endpoint = new DeadLetterReplayEndpoint(rabbitTemplate, mock(AmqpAdmin.class), List.of("DebitConfirmationQueue"), Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Should move every dead letter back with a fresh set of retries and ack them once confirmed")
+    public void shouldReplayDeadLetters() throws Exception {
+        confirmSends(true);
+        when(channel.basicGet("DebitConfirmationQueue.dlq", false)).thenReturn(deadLetter(1), deadLetter(2), deadLetter(3), (GetResponse) null);
+
+        int replayed = endpoint.replay("DebitConfirmationQueue", null);
+
+        assertEquals(3, replayed);
+        verify(rabbitTemplate, times(3)).send(eq(""), eq("DebitConfirmationQueue"), argThat((Message message) ->
+                message.getMessageProperties().getHeaders().keySet().stream().noneMatch(header -> header.startsWith("x-"))), any(CorrelationData.class));
+        verify(channel).basicAck(3, true);
+    }
+
+    @Test
+    @DisplayName("Should replay no more than max dead letters")
+    public void shouldReplayUpToMax() throws Exception {
+        confirmSends(true);
+        when(channel.basicGet("DebitConfirmationQueue.dlq", false)).thenReturn(deadLetter(1), deadLetter(2), deadLetter(3), (GetResponse) null);
+
+        int replayed = endpoint.replay("DebitConfirmationQueue", 2);
+
+        assertEquals(2, replayed);
+        verify(channel, times(2)).basicGet("DebitConfirmationQueue.dlq", false);
+        verify(channel).basicAck(2, true);
+    }
+
+    @Test
+    @DisplayName("Should leave dead letters unacked when the broker doesn't take their copies")
+    public void shouldNotAckNackedReplays() throws Exception {
+        confirmSends(false);
+        when(channel.basicGet("DebitConfirmationQueue.dlq", false)).thenReturn(deadLetter(1), (GetResponse) null);
+
+        assertThrows(AmqpException.class, () -> endpoint.replay("DebitConfirmationQueue", null));
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    @DisplayName("Should refuse to replay a queue it doesn't know")
+    public void shouldRefuseUnknownQueue() {
+        assertThrows(InvalidEndpointRequestException.class, () -> endpoint.replay("UnknownQueue", null));
+        verify(rabbitTemplate, never()).execute(any());
+    }
+
+    private void confirmSends(boolean ack) {
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(3).getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack")))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    private static GetResponse deadLetter(long deliveryTag) {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .headers(Map.of(BackoffMessageRecoverer.RETRIES_HEADER, 4, BackoffMessageRecoverer.EXCEPTION_HEADER, "java.lang.IllegalStateException",
+                        "x-death", List.of()))
+                .build();
+        return new GetResponse(new Envelope(deliveryTag, false, "", "DebitConfirmationQueue.dlq"), properties, new byte[0], 0);
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.sysmap.bootcamp.common.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ListenerUtilizationTest {
+
+    @Test
+    @DisplayName("Should report the share of the consumers' time spent in the listener per queue")
+    public void shouldReportUtilization() throws Throwable {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RabbitListenerEndpointRegistry endpointRegistry = mock(RabbitListenerEndpointRegistry.class);
+        SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+        when(endpointRegistry.getListenerContainers()).thenReturn(List.of(container));
+        when(container.getQueueNames()).thenReturn(new String[]{"DebitConfirmationQueue", "IdleQueue"});
+        when(container.getActiveConsumerCount()).thenReturn(2);
+        ListenerUtilization listenerUtilization = new ListenerUtilization(meterRegistry, endpointRegistry);
+
+        listenerUtilization.sample();
+        long start = System.nanoTime();
+        listenerUtilization.invoke(listening(message("DebitConfirmationQueue")));
+        while (System.nanoTime() - start < 100_000_000L) {
+            Thread.onSpinWait();
+        }
+        listenerUtilization.sample();
+
+        // One of two consumers busy for about 50ms out of at least 100ms
+        double utilization = meterRegistry.get("messaging.listener.utilization").tag("queue", "DebitConfirmationQueue").gauge().value();
+        assertTrue(utilization > 0 && utilization <= 0.25, "utilization " + utilization);
+        assertTrue(meterRegistry.get("messaging.listener.busy").tag("queue", "DebitConfirmationQueue").functionCounter().count() >= 0.05);
+        assertEquals(2, meterRegistry.get("messaging.listener.consumers").tag("queue", "DebitConfirmationQueue").gauge().value());
+        assertEquals(0, meterRegistry.get("messaging.listener.utilization").tag("queue", "IdleQueue").gauge().value());
+    }
+
+    private static MethodInvocation listening(Message message) throws Throwable {
+        MethodInvocation invocation = mock(MethodInvocation.class);
+        when(invocation.getArguments()).thenReturn(new Object[]{null, message});
+        when(invocation.proceed()).thenAnswer(answer -> {
+            Thread.sleep(50);
+            return null;
+        });
+        return invocation;
+    }
+
+    private static Message message(String queue) {
+        MessageProperties properties = new MessageProperties();
+        properties.setConsumerQueue(queue);
+        return new Message(new byte[0], properties);
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.sysmap.bootcamp.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class AsyncWebConfig implements WebMvcConfigurer {
+
+    private final AsyncTaskExecutor spotifyExecutor;
+
+    // Streamed album pages are written while Spotify is paged, so they run on the same executor as the calls
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(this.spotifyExecutor);
+    }
+}
@@ -1,13 +1,37 @@
 package br.com.sysmap.bootcamp.config;
+
+import br.com.sysmap.bootcamp.common.messaging.BackoffMessageRecoverer;
+import br.com.sysmap.bootcamp.common.messaging.DeadLetterReplayEndpoint;
+import br.com.sysmap.bootcamp.common.messaging.ListenerUtilization;
+import br.com.sysmap.bootcamp.common.messaging.PublisherConfirms;
+import br.com.sysmap.bootcamp.common.messaging.VersionedJsonMessageConverter;
 import br.com.sysmap.bootcamp.domain.listeners.DebitConfirmationListener;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateCustomizer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.List;
 
+@Slf4j
 @Configuration
 public class RabbitConfig {
 
@@ -17,18 +41,114 @@ public class RabbitConfig {
     @Bean
     public Queue walletDebitQueue() { return new Queue("WalletDebitQueue"); }
 
+    // Debits are published here with the user email as routing key, app-user-api binds one queue per shard to it.
+    // Needs the rabbitmq_consistent_hash_exchange plugin, enabled in backend/rabbitmq
+    @Bean
+    public CustomExchange walletDebitExchange() {
+        return new CustomExchange("WalletDebitExchange", "x-consistent-hash", true, false);
+    }
+
     @Bean
     public Queue debitConfirmationQueue() {
         return new Queue("DebitConfirmationQueue");
     }
 
+    @Bean
+    public Queue debitConfirmationDeadLetterQueue() {
+        return new Queue(BackoffMessageRecoverer.deadLetterQueue("DebitConfirmationQueue"));
+    }
+
     @Bean
     public DebitConfirmationListener debitConfirmationListener() {
         return new DebitConfirmationListener();
     }
 
     @Bean
-    public SimpleMessageConverter converter() {
+    public ListenerUtilization listenerUtilization(MeterRegistry meterRegistry, RabbitListenerEndpointRegistry endpointRegistry) {
+        return new ListenerUtilization(meterRegistry, endpointRegistry);
+    }
+
+    // Takes the place of Boot's default factory so every listener is measured, sized by spring.rabbitmq.listener.simple
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                               ConnectionFactory connectionFactory,
+                                                                               ListenerUtilization listenerUtilization) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        listenerUtilization.measure(factory);
+        return factory;
+    }
+
+    // Confirmations of different sales don't depend on each other, consumers are added up to max-concurrency while the queue is busy
+    @Bean
+    public SimpleRabbitListenerContainerFactory debitConfirmationContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                                  ConnectionFactory connectionFactory,
+                                                                                  ListenerUtilization listenerUtilization,
+                                                                                  @Value("${messaging.listener.debit-confirmation.concurrency:1}") int concurrency,
+                                                                                  @Value("${messaging.listener.debit-confirmation.max-concurrency:1}") int maxConcurrency,
+                                                                                  @Value("${messaging.listener.debit-confirmation.prefetch:250}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        listenerUtilization.measure(factory);
+        return factory;
+    }
+
+    // Every publish is confirmed by the broker in the background and counted here. Each sender correlates its publishes
+    // and waits for their confirms with PublisherConfirms, failing on a nack or timeout
+    @Bean
+    public RabbitTemplateCustomizer publisherConfirmCallback(MeterRegistry meterRegistry) {
+        Counter acked = Counter.builder("messaging.publish.confirms").description("Publishes confirmed by the broker")
+                .tag("result", "ack").register(meterRegistry);
+        Counter nacked = Counter.builder("messaging.publish.confirms").description("Publishes confirmed by the broker")
+                .tag("result", "nack").register(meterRegistry);
+        return rabbitTemplate -> rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
+            if (ack) {
+                acked.increment();
+                return;
+            }
+            nacked.increment();
+            log.warn("The broker didn't take {}: {}", correlationData == null ? "a message" : correlationData.getId(), cause);
+        });
+    }
+
+    // Picked up by spring.rabbitmq.listener.simple.retry, a failed confirmation waits in a retry stage instead of being requeued
+    @Bean
+    public BackoffMessageRecoverer messageRecoverer(RabbitTemplate rabbitTemplate,
+                                                    MeterRegistry meterRegistry,
+                                                    @Value("${messaging.retry.initial-interval:1s}") Duration initialInterval,
+                                                    @Value("${messaging.retry.multiplier:4}") double multiplier,
+                                                    @Value("${messaging.retry.max-retries:4}") int maxRetries,
+                                                    @Value("${messaging.retry.confirm-timeout:5s}") Duration confirmTimeout) {
+        return new BackoffMessageRecoverer(rabbitTemplate, meterRegistry, initialInterval, multiplier, maxRetries, confirmTimeout);
+    }
+
+    @Bean
+    public Declarables retryStages(BackoffMessageRecoverer messageRecoverer) {
+        return messageRecoverer.retryStages();
+    }
+
+    @Bean
+    public DeadLetterReplayEndpoint deadLetterReplayEndpoint(RabbitTemplate rabbitTemplate,
+                                                             AmqpAdmin amqpAdmin,
+                                                             @Value("${messaging.retry.confirm-timeout:5s}") Duration confirmTimeout) {
+        return new DeadLetterReplayEndpoint(rabbitTemplate, amqpAdmin, List.of("DebitConfirmationQueue"), confirmTimeout);
+    }
+
+    // Schema names and versions have to match the ones registered in app-user-api
+    @Bean
+    public VersionedJsonMessageConverter converter(ObjectMapper objectMapper,
+                                                   @Value("${messaging.write-java-serialization:false}") boolean writeJavaSerialization) {
+        VersionedJsonMessageConverter converter = new VersionedJsonMessageConverter(objectMapper, javaSerialization())
+                .register("wallet-debit", 1, WalletDebitDto.class)
+                .register("debit-confirmation", 1, DebitConfirmationDto.class);
+        converter.setWriteJavaSerialization(writeJavaSerialization);
+        return converter;
+    }
+
+    private static SimpleMessageConverter javaSerialization() {
         SimpleMessageConverter converter = new SimpleMessageConverter();
         converter.setAllowedListPatterns(List.of("br.com.sysmap.bootcamp.dto.*", "java.util.*", "java.time.*", "java.math.*", "java.lang.Boolean"));
         return converter;
@@ -1,5 +1,7 @@
 package br.com.sysmap.bootcamp.config;
 
+import br.com.sysmap.bootcamp.common.messaging.DeadLetterReplayEndpoint;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,6 +26,8 @@ public class ServerSecurityConfig {
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity) throws Exception {
         return httpSecurity.csrf(AbstractHttpConfigurer::disable)
+                // Replaying dead letters moves messages between queues, only admins may list or replay them
+                .authorizeHttpRequests(authorize->authorize.requestMatchers(EndpointRequest.to(DeadLetterReplayEndpoint.class)).hasRole("ADMIN"))
                 .authorizeHttpRequests(authorize->authorize.anyRequest().authenticated())
                 .httpBasic(Customizer.withDefaults())
                 .build();
@@ -0,0 +1,80 @@
+package br.com.sysmap.bootcamp.config;
+
+import br.com.sysmap.bootcamp.domain.service.integration.PooledSpotifyHttpManager;
+import br.com.sysmap.bootcamp.domain.service.integration.RecordingHttpManager;
+import br.com.sysmap.bootcamp.domain.service.integration.RedirectingHttpManager;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyFixtures;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyHttpManager;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration
+@Slf4j
+public class SpotifyConfig {
+
+    // Shared between the search integration and the token manager, so the token is fetched in a single place
+    @Bean
+    public se.michaelthelin.spotify.SpotifyApi spotifyClient(@Value("${spotify.client-id}") String clientId,
+                                                              @Value("${spotify.client-secret}") String clientSecret,
+                                                              @Value("${spotify.api-url:}") String apiUrl,
+                                                              @Value("${spotify.accounts-url:}") String accountsUrl,
+                                                              @Value("${spotify.fixtures.record-dir:}") String recordDir,
+                                                              @Value("${spotify.http.max-connections:32}") int maxConnections,
+                                                              @Value("${spotify.http.acquire-timeout:5s}") Duration acquireTimeout,
+                                                              @Value("${spotify.http.connect-timeout:2s}") Duration connectTimeout,
+                                                              @Value("${spotify.http.socket-timeout:10s}") Duration socketTimeout) {
+        // The socket timeout is the hard limit, calls abandoned by SpotifyResilience hold their permit until then
+        IHttpManager httpManager = new PooledSpotifyHttpManager(() -> new SpotifyHttpManager.Builder()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) socketTimeout.toMillis())
+                .build(), maxConnections, acquireTimeout);
+        if (!recordDir.isBlank()) {
+            log.info("Recording Spotify responses to {}", recordDir);
+            httpManager = new RecordingHttpManager(httpManager, new SpotifyFixtures(Path.of(recordDir)));
+        }
+        if (!apiUrl.isBlank() || !accountsUrl.isBlank()) {
+            log.info("Sending Spotify requests to {} and {}", apiUrl, accountsUrl);
+            httpManager = new RedirectingHttpManager(httpManager,
+                    apiUrl.isBlank() ? null : URI.create(apiUrl), accountsUrl.isBlank() ? null : URI.create(accountsUrl));
+        }
+
+        return new se.michaelthelin.spotify.SpotifyApi.Builder()
+                .setClientId(clientId)
+                .setClientSecret(clientSecret)
+                .setHttpManager(httpManager)
+                .build();
+    }
+
+    // Runs outbound Spotify calls, virtual threads only park while waiting on the network
+    @Bean
+    public AsyncTaskExecutor spotifyExecutor(@Value("${spotify.executor.virtual-threads:false}") boolean virtualThreads,
+                                             @Value("${spotify.executor.pool-size:32}") int poolSize,
+                                             @Value("${spotify.executor.queue-capacity:500}") int queueCapacity) {
+        if (virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("spotify-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        if (virtualThreads) {
+            log.warn("Virtual threads need Java 21, running Spotify calls on a pool of {} platform threads", poolSize);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("spotify-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        return executor;
+    }
+}
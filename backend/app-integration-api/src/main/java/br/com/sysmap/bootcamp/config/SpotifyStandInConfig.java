@@ -0,0 +1,32 @@
+package br.com.sysmap.bootcamp.config;
+
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyFixtures;
+import br.com.sysmap.bootcamp.domain.service.integration.standin.SpotifyStandInServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Runs a fake Spotify next to the application, see application-standin.yml
+@Configuration
+@ConditionalOnProperty(name = "spotify.stand-in.enabled", havingValue = "true")
+public class SpotifyStandInConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public SpotifyStandInServer spotifyStandInServer(@Value("${spotify.stand-in.port:8099}") int port,
+                                                     @Value("${spotify.stand-in.threads:200}") int threads,
+                                                     @Value("${spotify.stand-in.latency:80ms}") Duration latency,
+                                                     @Value("${spotify.stand-in.latency-jitter:40ms}") Duration latencyJitter,
+                                                     @Value("${spotify.stand-in.error-rate:0}") double errorRate,
+                                                     @Value("${spotify.stand-in.error-status:503}") int errorStatus,
+                                                     @Value("${spotify.stand-in.token-lifetime:1h}") Duration tokenLifetime,
+                                                     @Value("${spotify.stand-in.synthetic:true}") boolean synthetic,
+                                                     @Value("${spotify.stand-in.fixtures-dir:}") String fixturesDir) {
+        SpotifyFixtures fixtures = fixturesDir.isBlank() ? null : new SpotifyFixtures(Path.of(fixturesDir));
+        return new SpotifyStandInServer(new SpotifyStandInServer.Settings(port, threads, latency, latencyJitter,
+                errorRate, errorStatus, tokenLifetime, synthetic), fixtures);
+    }
+}
@@ -2,12 +2,17 @@ package br.com.sysmap.bootcamp.domain.entities;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -15,17 +20,30 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
 
 @Data
 @Builder(toBuilder = true)
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Entity
-@Table(name = "ALBUM")
+// Duplicate purchases are looked up by user, album and status, see AlbumRepository.existsByUsersAndIdSpotifyAndSaleStatusIn.
+// schema-postgresql.sql adds a partial unique index so only one PROCESSING or COMPLETED sale exists per user and album
+// A collection is paged by (ID_USER, ID), a cart confirmation updates its albums by CART_ID
+// and SaleSweeper scans the PROCESSING sales past their deadline
+@Table(name = "ALBUM", indexes = {
+        @Index(name = "IX_ALBUM_USER_SPOTIFY_STATUS", columnList = "ID_USER, ID_SPOTIFY, SALE_STATUS"),
+        @Index(name = "IX_ALBUM_USER_ID", columnList = "ID_USER, ID"),
+        @Index(name = "IX_ALBUM_CART", columnList = "CART_ID"),
+        @Index(name = "IX_ALBUM_STATUS_DEADLINE", columnList = "SALE_STATUS, DEADLINE")
+})
 public class Album {
 
+    // Ids come from a pooled sequence so a cart is saved with batched inserts, IDENTITY would insert row by row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ALBUM_SEQ")
+    @SequenceGenerator(name = "ALBUM_SEQ", sequenceName = "ALBUM_SEQ", allocationSize = 50)
     @Column(name = "ID", updatable = false, nullable = false)
     private Long id;
 
@@ -48,7 +66,26 @@ public class Album {
     @JoinColumn(name = "ID_USER")
     private Users users;
 
+    @Enumerated(EnumType.STRING)
     @Column(name = "SALE_STATUS", nullable = false, length = 50)
-    private String saleStatus;
+    private SaleStatus saleStatus;
+
+    // Identifies the sale in the wallet debit and its confirmation, null on sales made before it existed
+    @Column(name = "SALE_ID", unique = true, updatable = false)
+    private UUID saleId;
+
+    // Shared by the albums bought together in a cart, they're debited and confirmed as one
+    @Column(name = "CART_ID", updatable = false)
+    private UUID cartId;
+
+    @Column(name = "CREATED_AT", updatable = false)
+    private Instant createdAt;
+
+    // When a PROCESSING sale without a debit confirmation is picked up by SaleSweeper
+    @Column(name = "DEADLINE")
+    private Instant deadline;
+
+    @Column(name = "DEBIT_ATTEMPTS")
+    private Integer debitAttempts;
 
 }
\ No newline at end of file
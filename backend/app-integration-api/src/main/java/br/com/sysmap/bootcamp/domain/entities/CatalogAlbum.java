@@ -0,0 +1,58 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// One row per market an album was seen in, an album Spotify returned for one market isn't served to searches in another
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@IdClass(CatalogAlbum.Key.class)
+@Table(name = "CATALOG_MARKET_ALBUM")
+public class CatalogAlbum {
+
+    @Id
+    @Column(name = "MARKET", updatable = false, nullable = false, length = 2)
+    private String market;
+
+    @Id
+    @Column(name = "ID_SPOTIFY", updatable = false, nullable = false, length = 100)
+    private String idSpotify;
+
+    @Column(name = "NAME", nullable = false, length = 500)
+    private String name;
+
+    @Column(name = "ARTIST_NAME", length = 500)
+    private String artistName;
+
+    @Column(name = "IMAGE_URL", length = 500)
+    private String imageUrl;
+
+    @Column(name = "RELEASE_DATE", length = 10)
+    private String releaseDate;
+
+    @Column(name = "ALBUM_TYPE", length = 20)
+    private String albumType;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private String market;
+
+        private String idSpotify;
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import br.com.sysmap.bootcamp.common.idempotency.IdempotentRequests;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A request sent with an Idempotency-Key, STATUS stays null while the first attempt is still running
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "IDEMPOTENT_REQUEST", indexes = @Index(name = "IX_IDEMPOTENT_REQUEST_CREATED_AT", columnList = "CREATED_AT"))
+public class IdempotentRequest implements IdempotentRequests.Request {
+
+    // Operation, user and the client's key
+    @Id
+    @Column(name = "REQUEST_KEY", updatable = false, nullable = false, length = 400)
+    private String requestKey;
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "STATUS")
+    private Integer status;
+
+    @Column(name = "CONTENT_TYPE", length = 100)
+    private String contentType;
+
+    @Column(name = "BODY", length = 65535)
+    private String body;
+
+    // SHA-256 of the request payload, the key can't be reused for a different request. Null on keys stored before it existed
+    @Column(name = "REQUEST_HASH", updatable = false, length = 64)
+    private String requestHash;
+
+}
@@ -0,0 +1,48 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A message written in the same transaction as the change it announces, see OutboxRelay
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "OUTBOX_MESSAGE")
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID", updatable = false, nullable = false)
+    private Long id;
+
+    // Null for the default exchange, QUEUE is then the queue itself and otherwise the routing key
+    @Column(name = "EXCHANGE", updatable = false, length = 100)
+    private String exchange;
+
+    @Column(name = "QUEUE", updatable = false, nullable = false, length = 100)
+    private String queue;
+
+    @Column(name = "CONTENT_TYPE", updatable = false, length = 100)
+    private String contentType;
+
+    // Already converted, the relay publishes it as is
+    @Column(name = "BODY", updatable = false, nullable = false, length = 65535)
+    private byte[] body;
+
+    @Column(name = "CREATED_AT", updatable = false, nullable = false)
+    private Instant createdAt;
+
+}
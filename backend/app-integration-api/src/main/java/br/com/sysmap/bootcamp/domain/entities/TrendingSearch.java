@@ -0,0 +1,28 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "TRENDING_SEARCH")
+public class TrendingSearch {
+
+    @Id
+    @Column(name = "TERM", updatable = false, nullable = false, length = 200)
+    private String term;
+
+    @Column(name = "HITS", nullable = false)
+    private Long hits;
+
+}
@@ -1,5 +1,6 @@
 package br.com.sysmap.bootcamp.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -28,6 +29,8 @@ public class Users {
     @Column( name = "email")
     private String email;
 
+    // The bcrypt hash doubles as the Basic token's secret, it never leaves the service in a response
+    @JsonIgnore
     @Column( name = "password")
     private String password;
 
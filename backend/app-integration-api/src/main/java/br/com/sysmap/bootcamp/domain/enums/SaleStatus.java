@@ -0,0 +1,21 @@
+package br.com.sysmap.bootcamp.domain.enums;
+
+import java.util.List;
+import java.util.Set;
+
+// A sale waits in PROCESSING for its wallet debit, then ends COMPLETED or CANCELED
+public enum SaleStatus {
+    PROCESSING,
+    COMPLETED,
+    CANCELED;
+
+    // Sales that block buying the same album again
+    public static final List<SaleStatus> ACTIVE = List.of(PROCESSING, COMPLETED);
+
+    public boolean canTransitionTo(SaleStatus next) {
+        return switch (this) {
+            case PROCESSING -> Set.of(COMPLETED, CANCELED).contains(next);
+            case COMPLETED, CANCELED -> false;
+        };
+    }
+}
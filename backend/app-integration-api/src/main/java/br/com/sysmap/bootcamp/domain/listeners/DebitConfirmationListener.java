@@ -8,7 +8,7 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Slf4j
-@RabbitListener(queues = "DebitConfirmationQueue")
+@RabbitListener(queues = "DebitConfirmationQueue", containerFactory = "debitConfirmationContainerFactory")
 public class DebitConfirmationListener {
 
     @Autowired
@@ -16,6 +16,11 @@ public class DebitConfirmationListener {
 
     @RabbitHandler
     public void debitConfirmationHandler(DebitConfirmationDto debitConfirmationDto) {
-        albumService.updateAlbumSale(debitConfirmationDto.getIsDebitConfirmed(), debitConfirmationDto.getUserEmail(), debitConfirmationDto.getIdSpotify());
+        if (debitConfirmationDto.getCartId() != null) {
+            albumService.updateCartSale(debitConfirmationDto.getIsDebitConfirmed(), debitConfirmationDto.getCartId());
+            return;
+        }
+        albumService.updateAlbumSale(debitConfirmationDto.getIsDebitConfirmed(), debitConfirmationDto.getUserEmail(),
+                debitConfirmationDto.getIdSpotify(), debitConfirmationDto.getSaleId());
     }
 }
\ No newline at end of file
@@ -2,8 +2,10 @@ package br.com.sysmap.bootcamp.domain.mapper;
 
 import br.com.sysmap.bootcamp.domain.model.AlbumModel;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.Named;
 import org.mapstruct.factory.Mappers;
+import se.michaelthelin.spotify.model_objects.specification.Album;
 import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
 
 import java.util.List;
@@ -15,4 +17,8 @@ public interface AlbumMapper {
     AlbumMapper INSTANCE = Mappers.getMapper(AlbumMapper.class);
 
     List<AlbumModel> toModel(AlbumSimplified[] albumSimplifiedPaging);
+
+    // Prices are set by the pricing engine after mapping
+    @Mapping(target = "value", ignore = true)
+    AlbumModel toModel(Album album);
 }
@@ -0,0 +1,23 @@
+package br.com.sysmap.bootcamp.domain.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AlbumPage {
+
+    private List<AlbumModel> items;
+
+    private int offset;
+
+    private int limit;
+
+    private int total;
+
+    // Offset of the following page, null on the last one
+    private Integer nextOffset;
+
+}
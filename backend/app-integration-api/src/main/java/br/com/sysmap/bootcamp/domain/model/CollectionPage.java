@@ -0,0 +1,21 @@
+package br.com.sysmap.bootcamp.domain.model;
+
+import br.com.sysmap.bootcamp.dto.CollectionAlbumDto;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CollectionPage {
+
+    private List<CollectionAlbumDto> items;
+
+    // Id of the last album on this page, the following page starts after it, null on the last one
+    private Long nextCursor;
+
+    // Only on the first page, the following ones are read as the user scrolls through the collection
+    private CollectionTotals totals;
+
+}
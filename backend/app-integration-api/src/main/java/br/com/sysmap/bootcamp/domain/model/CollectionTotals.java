@@ -0,0 +1,7 @@
+package br.com.sysmap.bootcamp.domain.model;
+
+import java.math.BigDecimal;
+
+// How many albums a user's collection holds and what they cost, counted in the database instead of from its pages
+public record CollectionTotals(long albums, BigDecimal value) {
+}
@@ -2,16 +2,72 @@ package br.com.sysmap.bootcamp.domain.repository;
 
 import br.com.sysmap.bootcamp.domain.entities.Album;
 import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
+import br.com.sysmap.bootcamp.domain.model.CollectionTotals;
+import br.com.sysmap.bootcamp.domain.service.catalog.IndexedAlbum;
+import br.com.sysmap.bootcamp.dto.CollectionAlbumDto;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Repository
 public interface AlbumRepository extends JpaRepository<Album, Long> {
 
-    List<Album> findAllByUsers(Users users);
+    Optional<Album> findBySaleId(UUID saleId);
 
-    Album findByIdSpotify(String idSpotify);
+    Optional<Album> findFirstByUsersAndIdSpotifyAndSaleStatus(Users users, String idSpotify, SaleStatus saleStatus);
+
+    // Reads the FK column, neither Users nor the rest of the entity is loaded
+    @Query("select new br.com.sysmap.bootcamp.dto.CollectionAlbumDto(a.id, a.name, a.idSpotify, a.artistName, a.imageUrl, a.value, a.saleStatus) "
+            + "from Album a where a.users.id = :userId and a.id > :after and a.saleStatus in :saleStatuses order by a.id")
+    List<CollectionAlbumDto> findCollectionPage(@Param("userId") Long userId, @Param("after") Long after,
+                                                @Param("saleStatuses") Collection<SaleStatus> saleStatuses, Limit limit);
+
+    @Query("select new br.com.sysmap.bootcamp.domain.model.CollectionTotals(count(a), coalesce(sum(a.value), 0)) "
+            + "from Album a where a.users.id = :userId and a.saleStatus in :saleStatuses")
+    CollectionTotals findCollectionTotals(@Param("userId") Long userId, @Param("saleStatuses") Collection<SaleStatus> saleStatuses);
+
+    // One row per album sold here with only the fields the catalog index keeps, a keyset page for LocalCatalog to load at startup
+    @Query("select new br.com.sysmap.bootcamp.domain.service.catalog.IndexedAlbum(a.idSpotify, min(a.name), min(a.artistName), min(a.imageUrl)) "
+            + "from Album a where a.idSpotify > :after group by a.idSpotify order by a.idSpotify")
+    List<IndexedAlbum> findIndexedAlbums(@Param("after") String after, Limit limit);
+
+    boolean existsByUsersAndIdSpotifyAndSaleStatusIn(Users users, String idSpotify, Collection<SaleStatus> saleStatuses);
+
+    // Which albums of a cart the user already bought, one query for the whole cart
+    @Query("select a.idSpotify from Album a where a.users = :users and a.idSpotify in :idSpotifies and a.saleStatus in :saleStatuses")
+    List<String> findBoughtIdSpotifies(@Param("users") Users users,
+                                       @Param("idSpotifies") Collection<String> idSpotifies,
+                                       @Param("saleStatuses") Collection<SaleStatus> saleStatuses);
+
+    @Modifying
+    @Query("update Album a set a.saleStatus = :to where a.cartId = :cartId and a.saleStatus = :from")
+    int updateCartSaleStatus(@Param("cartId") UUID cartId, @Param("from") SaleStatus from, @Param("to") SaleStatus to);
+
+    // Sales still waiting for their debit past the deadline, served by IX_ALBUM_STATUS_DEADLINE
+    @EntityGraph(attributePaths = "users")
+    List<Album> findBySaleStatusAndDeadlineBeforeOrderByDeadline(SaleStatus saleStatus, Instant deadline, Limit limit);
+
+    @EntityGraph(attributePaths = "users")
+    List<Album> findByCartIdAndSaleStatus(UUID cartId, SaleStatus saleStatus);
+
+    long countBySaleStatus(SaleStatus saleStatus);
+
+    @Modifying
+    @Query("update Album a set a.saleStatus = :to where a.id in :ids and a.saleStatus = :from")
+    int updateSaleStatus(@Param("ids") Collection<Long> ids, @Param("from") SaleStatus from, @Param("to") SaleStatus to);
+
+    @Modifying
+    @Query("update Album a set a.deadline = :deadline, a.debitAttempts = a.debitAttempts + 1 where a.id in :ids and a.saleStatus = :saleStatus")
+    int retryDebit(@Param("ids") Collection<Long> ids, @Param("saleStatus") SaleStatus saleStatus, @Param("deadline") Instant deadline);
 }
\ No newline at end of file
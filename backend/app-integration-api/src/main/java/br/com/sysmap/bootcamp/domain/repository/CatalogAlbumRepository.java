@@ -0,0 +1,19 @@
+package br.com.sysmap.bootcamp.domain.repository;
+
+import br.com.sysmap.bootcamp.domain.entities.CatalogAlbum;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CatalogAlbumRepository extends JpaRepository<CatalogAlbum, CatalogAlbum.Key> {
+
+    @Query("select distinct c.market from CatalogAlbum c order by c.market")
+    List<String> findMarkets();
+
+    // Keyset page over the primary key within a market
+    List<CatalogAlbum> findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(String market, String after, Limit limit);
+}
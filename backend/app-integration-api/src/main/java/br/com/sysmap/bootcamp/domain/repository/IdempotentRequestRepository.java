@@ -0,0 +1,48 @@
+package br.com.sysmap.bootcamp.domain.repository;
+
+import br.com.sysmap.bootcamp.common.idempotency.IdempotentRequests;
+import br.com.sysmap.bootcamp.domain.entities.IdempotentRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface IdempotentRequestRepository extends JpaRepository<IdempotentRequest, String>, IdempotentRequests<IdempotentRequest> {
+
+    // Declared by both JpaRepository and IdempotentRequests, said once more here to be unambiguous. Spring Data still serves them
+    @Override
+    Optional<IdempotentRequest> findById(String requestKey);
+
+    @Override
+    void deleteById(String requestKey);
+
+    // A plain insert, a key already taken fails on the primary key instead of being merged over
+    @Transactional
+    @Modifying
+    @Query(value = "insert into IDEMPOTENT_REQUEST (REQUEST_KEY, CREATED_AT, REQUEST_HASH) values (:requestKey, :createdAt, :requestHash)",
+            nativeQuery = true)
+    int claim(@Param("requestKey") String requestKey, @Param("createdAt") Instant createdAt, @Param("requestHash") String requestHash);
+
+    // Takes over a key whose first attempt stopped answering before it finished
+    @Transactional
+    @Modifying
+    @Query("update IdempotentRequest r set r.createdAt = :createdAt where r.requestKey = :requestKey and r.status is null and r.createdAt < :staleBefore")
+    int reclaim(@Param("requestKey") String requestKey, @Param("createdAt") Instant createdAt, @Param("staleBefore") Instant staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("update IdempotentRequest r set r.status = :status, r.contentType = :contentType, r.body = :body where r.requestKey = :requestKey")
+    int complete(@Param("requestKey") String requestKey, @Param("status") int status,
+                 @Param("contentType") String contentType, @Param("body") String body);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotentRequest r where r.createdAt < :createdBefore")
+    int deleteCreatedBefore(@Param("createdBefore") Instant createdBefore);
+}
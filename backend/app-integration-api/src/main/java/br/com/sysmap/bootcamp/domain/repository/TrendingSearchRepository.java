@@ -0,0 +1,18 @@
+package br.com.sysmap.bootcamp.domain.repository;
+
+import br.com.sysmap.bootcamp.domain.entities.TrendingSearch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TrendingSearchRepository extends JpaRepository<TrendingSearch, String> {
+
+    @Transactional
+    default void replaceAll(List<TrendingSearch> trending) {
+        deleteAllInBatch();
+        saveAll(trending);
+    }
+}
@@ -2,116 +2,382 @@ package br.com.sysmap.bootcamp.domain.service;
 
 import br.com.sysmap.bootcamp.domain.entities.Album;
 import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
 import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionPage;
 import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
+import br.com.sysmap.bootcamp.domain.service.catalog.LocalCatalog;
+import br.com.sysmap.bootcamp.domain.service.integration.AlbumSearchCache;
+import br.com.sysmap.bootcamp.domain.service.integration.CatalogWarmer;
+import br.com.sysmap.bootcamp.domain.service.integration.SearchQueries;
 import br.com.sysmap.bootcamp.domain.service.integration.SpotifyApi;
+import br.com.sysmap.bootcamp.domain.service.outbox.Outbox;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
+import br.com.sysmap.bootcamp.dto.CollectionAlbumDto;
 import br.com.sysmap.bootcamp.dto.WalletDebitDto;
 import br.com.sysmap.bootcamp.errors.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neovisionaries.i18n.CountryCode;
 
 import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hc.core5.http.ParseException;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class AlbumService {
-    private final RabbitTemplate rabbitTemplate;
+    private final Outbox outbox;
+    private final AlbumSearchCache albumSearchCache;
+    private final CatalogWarmer catalogWarmer;
+    private final LocalCatalog localCatalog;
+    private final AlbumPriceCache albumPriceCache;
     private final SpotifyApi spotifyApi;
     private final RestTemplate restTemplate;
     private final UsersServices usersServices;
     private final AlbumRepository albumRepository;
     private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor spotifyExecutor;
+    private final TransactionTemplate transactionTemplate;
 
-    public List<AlbumModel> getAlbums(String search) {
-        if (search == null || search.isEmpty()) {
+    public static final int MAX_COLLECTION_LIMIT = 200;
+
+    public static final int MAX_CART_SIZE = 50;
+
+    @Value("${spotify.market:BR}")
+    private CountryCode market;
+
+    @Value("${spotify.markets.max-fan-out:10}")
+    private int maxMarketFanOut;
+
+    // How long a sale waits for its debit confirmation before SaleSweeper looks at it
+    @Value("${sale.debit-timeout:PT2M}")
+    private Duration debitTimeout;
+
+    public AlbumPage getAlbums(String search, int offset, int limit) {
+        if (search == null || search.isBlank()) {
             throw new InvalidParameterException("Search parameter is required");
         }
+        if (!SearchQueries.isValidPage(offset, limit)) {
+            throw new InvalidParameterException("Offset must be between 0 and " + SearchQueries.MAX_OFFSET
+                    + " and limit between 1 and " + SearchQueries.MAX_LIMIT);
+        }
+        if (offset == 0) {
+            this.catalogWarmer.record(search);
+        }
+        Optional<AlbumPage> local = this.localCatalog.search(search, this.market, offset, limit);
+        if (local.isPresent()) {
+            return local.get();
+        }
         try {
-           return this.spotifyApi.getAlbums(search);
+           return this.albumSearchCache.getAlbums(search, offset, limit);
         } catch (IOException | ParseException | SpotifyWebApiException e) {
            throw new UnavailableSpotifyApiException("Couldn't fetch albums from Spotify API");
         }
     }
 
+    // Writes one album per line, each page is flushed as soon as it arrives and dropped before the next one is fetched
+    public void writeAlbums(String search, AlbumPage firstPage, int maxItems, OutputStream out) throws IOException {
+        AlbumPage page = firstPage;
+        int written = 0;
+        while (true) {
+            for (AlbumModel album : page.getItems()) {
+                if (written == maxItems) {
+                    break;
+                }
+                out.write(this.objectMapper.writeValueAsBytes(album));
+                out.write('\n');
+                written++;
+            }
+            out.flush();
+
+            if (page.getNextOffset() == null || written >= maxItems) {
+                return;
+            }
+            page = getAlbums(search, page.getNextOffset(), page.getLimit());
+        }
+    }
+
+    // Searches every market at once, an album available in several markets is returned only once
+    public CompletableFuture<List<AlbumModel>> getAlbums(String search, List<String> markets) {
+        if (search == null || search.isBlank()) {
+            throw new InvalidParameterException("Search parameter is required");
+        }
+        List<CountryCode> countryCodes = parseMarkets(markets);
+
+        List<CompletableFuture<List<AlbumModel>>> searches = new ArrayList<>();
+        try {
+            for (CountryCode countryCode : countryCodes) {
+                searches.add(CompletableFuture.supplyAsync(() -> searchMarket(search, countryCode), this.spotifyExecutor));
+            }
+        } catch (RejectedExecutionException e) {
+            throw new UnavailableSpotifyApiException("Too many Spotify searches in progress");
+        }
+
+        return CompletableFuture.allOf(searches.toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> mergeByAlbumId(searches, countryCodes));
+    }
+
+    private List<CountryCode> parseMarkets(List<String> markets) {
+        if (markets == null || markets.isEmpty() || markets.size() > this.maxMarketFanOut) {
+            throw new InvalidParameterException("Between 1 and " + this.maxMarketFanOut + " markets are required");
+        }
+        List<CountryCode> countryCodes = new ArrayList<>();
+        for (String market : markets) {
+            CountryCode countryCode = market == null ? null : CountryCode.getByCode(market.trim(), false);
+            if (countryCode == null) {
+                throw new InvalidParameterException("Unknown market " + market);
+            }
+            if (!countryCodes.contains(countryCode)) {
+                countryCodes.add(countryCode);
+            }
+        }
+        return countryCodes;
+    }
+
+    private List<AlbumModel> searchMarket(String search, CountryCode countryCode) {
+        try {
+            return this.albumSearchCache.getAlbums(search, countryCode, 0, SearchQueries.DEFAULT_LIMIT).getItems();
+        } catch (IOException | ParseException | SpotifyWebApiException e) {
+            throw new UnavailableSpotifyApiException("Couldn't fetch albums from Spotify API");
+        }
+    }
+
+    // A market that failed is left out, the search only fails when every market did
+    private List<AlbumModel> mergeByAlbumId(List<CompletableFuture<List<AlbumModel>>> searches, List<CountryCode> countryCodes) {
+        Map<String, AlbumModel> albums = new LinkedHashMap<>();
+        int failures = 0;
+        for (int i = 0; i < searches.size(); i++) {
+            CompletableFuture<List<AlbumModel>> search = searches.get(i);
+            if (search.isCompletedExceptionally()) {
+                failures++;
+                log.warn("Album search failed for market {}", countryCodes.get(i));
+                continue;
+            }
+            for (AlbumModel album : search.join()) {
+                albums.putIfAbsent(album.getId(), album);
+            }
+        }
+        if (failures == searches.size()) {
+            throw new UnavailableSpotifyApiException("Couldn't fetch albums from Spotify API");
+        }
+        return new ArrayList<>(albums.values());
+    }
+
     @Transactional(propagation = Propagation.REQUIRED)
     public Album albumSale(Album album) {
         this.validateAlbumFields(album);
+        this.validateAlbumPrice(album);
 
         Users user = getUser();
 
-        List<Album> userAlbums = this.albumRepository.findAllByUsers(user);
-
-        // Check if user already bought the album and its sale status is "PROCESSING" or "COMPLETED"
-        boolean userHasAlbum = userAlbums.stream()
-                .anyMatch(existingAlbum ->
-                        existingAlbum.getIdSpotify().equals(album.getIdSpotify()) &&
-                                (existingAlbum.getSaleStatus().equals("PROCESSING") || existingAlbum.getSaleStatus().equals("COMPLETED")));
+        // Cheap check for the common case, the unique index still rejects two sales racing past it
+        if (this.albumRepository.existsByUsersAndIdSpotifyAndSaleStatusIn(user, album.getIdSpotify(), SaleStatus.ACTIVE)) {
+            throw new DuplicateAlbumException("User already bought this album");
+        }
 
-        if (userHasAlbum) {
+        Instant now = Instant.now();
+        Album updatedAlbum = album.toBuilder()
+                .users(user)
+                .saleStatus(SaleStatus.PROCESSING)
+                .saleId(UUID.randomUUID())
+                .createdAt(now)
+                .deadline(now.plus(this.debitTimeout))
+                .debitAttempts(1)
+                .build();
+        Album savedAlbum;
+        try {
+            savedAlbum = this.albumRepository.saveAndFlush(updatedAlbum);
+        } catch (DataIntegrityViolationException e) {
             throw new DuplicateAlbumException("User already bought this album");
-        } else {
-            Album updatedAlbum = album.toBuilder()
-                    .users(user)
-                    .saleStatus("PROCESSING")
-                    .build();
-            WalletDebitDto walletDebitDto = WalletDebitDto.builder()
-                    .email(user.getEmail())
-                    .value(updatedAlbum.getValue())
-                    .idSpotify(updatedAlbum.getIdSpotify())
-                    .build();
+        }
 
-            this.rabbitTemplate.convertAndSend("WalletDebitQueue", walletDebitDto);
+        // Only debited once the sale row exists, a rejected duplicate never reaches the wallet.
+        // Written to the outbox in this transaction, the broker isn't called until the sale has committed.
+        // Routed by email, so all debits of a user land in the same wallet shard and stay in order
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder()
+                .email(user.getEmail())
+                .value(savedAlbum.getValue())
+                .idSpotify(savedAlbum.getIdSpotify())
+                .saleId(savedAlbum.getSaleId())
+                .build();
+        this.outbox.enqueue("WalletDebitExchange", user.getEmail(), walletDebitDto);
 
-            return this.albumRepository.save(updatedAlbum);
+        afterCommit(() -> this.localCatalog.index(savedAlbum));
+        return savedAlbum;
+    }
+
+    // Every album is saved in one batch and the wallet is debited once for the whole cart.
+    // Prices are checked before the transaction opens, so Spotify lookups never hold a database connection
+    public List<Album> cartSale(List<Album> albums) {
+        if (albums == null || albums.isEmpty() || albums.size() > MAX_CART_SIZE) {
+            throw new InvalidParameterException("A cart must have between 1 and " + MAX_CART_SIZE + " albums");
         }
+        Set<String> idSpotifies = new LinkedHashSet<>();
+        for (Album album : albums) {
+            this.validateAlbumFields(album);
+            if (!idSpotifies.add(album.getIdSpotify())) {
+                throw new DuplicateAlbumException("Album " + album.getIdSpotify() + " is in the cart twice");
+            }
+        }
+        this.validateCartPrices(albums);
+
+        return this.transactionTemplate.execute(status -> saveCart(albums, idSpotifies));
     }
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public void updateAlbumSale(Boolean isDebitConfirmed, String userEmail, String idSpotify) {
-        try {
-            Users user = this.usersServices.findByEmail(userEmail);
-            Album album = this.albumRepository.findByIdSpotify(idSpotify);
+    private List<Album> saveCart(List<Album> albums, Set<String> idSpotifies) {
+        Users user = getUser();
+        List<String> bought = this.albumRepository.findBoughtIdSpotifies(user, idSpotifies, SaleStatus.ACTIVE);
+        if (!bought.isEmpty()) {
+            throw new DuplicateAlbumException("User already bought " + String.join(", ", bought));
+        }
 
-            // Update album with user and sale status
-            if (isDebitConfirmed) {
-                album = album.toBuilder()
+        UUID cartId = UUID.randomUUID();
+        Instant now = Instant.now();
+        List<Album> sales = albums.stream()
+                .map(album -> album.toBuilder()
                         .users(user)
-                        .saleStatus("COMPLETED")
-                        .build();
-                this.albumRepository.save(album);
-            } else {
-                this.albumRepository.delete(album);
-
-                // Document said that can't save an album with the same idSpotify
-//                album = album.toBuilder()
-//                        .users(user)
-//                        .saleStatus("CANCELED")
-//                        .build();
+                        .saleStatus(SaleStatus.PROCESSING)
+                        .saleId(UUID.randomUUID())
+                        .cartId(cartId)
+                        .createdAt(now)
+                        .deadline(now.plus(this.debitTimeout))
+                        .debitAttempts(1)
+                        .build())
+                .toList();
+        List<Album> savedAlbums;
+        try {
+            savedAlbums = this.albumRepository.saveAllAndFlush(sales);
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateAlbumException("User already bought an album of the cart");
+        }
+
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder()
+                .email(user.getEmail())
+                .value(savedAlbums.stream().map(Album::getValue).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .cartId(cartId)
+                .albumCount(savedAlbums.size())
+                .build();
+        this.outbox.enqueue("WalletDebitExchange", user.getEmail(), walletDebitDto);
+
+        afterCommit(() -> savedAlbums.forEach(this.localCatalog::index));
+        return savedAlbums;
+    }
+
+    // A sale rolled back never makes its album searchable
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // The cart's PROCESSING albums are completed or canceled together
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void updateCartSale(Boolean isDebitConfirmed, UUID cartId) {
+        SaleStatus next = isDebitConfirmed ? SaleStatus.COMPLETED : SaleStatus.CANCELED;
+        if (this.albumRepository.updateCartSaleStatus(cartId, SaleStatus.PROCESSING, next) == 0) {
+            logUnexpectedConfirmation(isDebitConfirmed, "cart " + cartId);
+        }
+    }
+
+    @Transactional(propagation = Propagation.REQUIRED)
+    public void updateAlbumSale(Boolean isDebitConfirmed, String userEmail, String idSpotify, UUID saleId) {
+        try {
+            Optional<Album> sale = findSale(userEmail, idSpotify, saleId);
+            SaleStatus next = isDebitConfirmed ? SaleStatus.COMPLETED : SaleStatus.CANCELED;
+            if (sale.isEmpty() || !sale.get().getSaleStatus().canTransitionTo(next)) {
+                logUnexpectedConfirmation(isDebitConfirmed, "sale " + saleId + " album " + idSpotify);
+                return;
             }
+            // A canceled sale keeps its row, it no longer blocks buying the album again
+            this.albumRepository.save(sale.get().toBuilder()
+                    .saleStatus(next)
+                    .build());
         } catch (Exception e) {
             log.error("An error occurred while trying to save album {}", e);
             throw e;
         }
     }
 
-    public List<Album> getUserAlbums() {
+    // A redelivered confirmation changes nothing. Sales are only canceled on the wallet's word, except the ones from before
+    // sale ids SaleSweeper gave up on: a debit of those confirmed afterwards took money for an album the user doesn't get
+    private void logUnexpectedConfirmation(Boolean isDebitConfirmed, String sale) {
+        if (isDebitConfirmed) {
+            log.error("Debit confirmed for {} which is no longer processing, check whether it needs a refund", sale);
+        } else {
+            log.warn("No sale waiting for a debit confirmation, {}", sale);
+        }
+    }
+
+    // Confirmations sent before sales had an id are matched on the buyer's processing sale for the album
+    private Optional<Album> findSale(String userEmail, String idSpotify, UUID saleId) {
+        if (saleId != null) {
+            return this.albumRepository.findBySaleId(saleId);
+        }
+        Users user = this.usersServices.findByEmail(userEmail);
+        return this.albumRepository.findFirstByUsersAndIdSpotifyAndSaleStatus(user, idSpotify, SaleStatus.PROCESSING);
+    }
+
+    // Keyset page, costs the same however deep into the collection it is
+    public CollectionPage getUserAlbums(Long after, int limit) {
+        if (after != null && after < 0) {
+            throw new InvalidParameterException("Cursor must be a positive album id");
+        }
+        if (limit < 1 || limit > MAX_COLLECTION_LIMIT) {
+            throw new InvalidParameterException("Limit must be between 1 and " + MAX_COLLECTION_LIMIT);
+        }
         Users user = getUser();
-        return this.albumRepository.findAllByUsers(user);
+
+        // One extra row tells whether another page follows
+        List<CollectionAlbumDto> albums = this.albumRepository.findCollectionPage(user.getId(), after == null ? 0L : after,
+                SaleStatus.ACTIVE, Limit.of(limit + 1));
+        boolean hasNext = albums.size() > limit;
+        List<CollectionAlbumDto> items = hasNext ? albums.subList(0, limit) : albums;
+        return CollectionPage.builder()
+                .items(items)
+                .nextCursor(hasNext ? items.get(items.size() - 1).getId() : null)
+                .totals(after == null ? this.albumRepository.findCollectionTotals(user.getId(), SaleStatus.ACTIVE) : null)
+                .build();
     }
 
     public void removeAlbum(Long id) {
@@ -146,6 +412,48 @@ public class AlbumService {
         return this.usersServices.findByEmail(username);
     }
 
+    // The client sends the price it was shown, it has to match what the catalog charges for the album
+    public void validateAlbumPrice(Album album) {
+        BigDecimal catalogPrice = this.albumPriceCache.quotedPrice(album.getIdSpotify())
+                .orElseGet(() -> fetchCatalogPrice(album.getIdSpotify()));
+
+        if (album.getValue().compareTo(catalogPrice) != 0) {
+            throw new InvalidAlbumPriceException("Album price doesn't match the catalog price");
+        }
+    }
+
+    // Albums whose quote was evicted are looked up together, a few Spotify requests for the whole cart
+    private void validateCartPrices(List<Album> albums) {
+        Map<String, BigDecimal> catalogPrices = new HashMap<>();
+        List<String> unquoted = new ArrayList<>();
+        for (Album album : albums) {
+            this.albumPriceCache.quotedPrice(album.getIdSpotify())
+                    .ifPresentOrElse(price -> catalogPrices.put(album.getIdSpotify(), price), () -> unquoted.add(album.getIdSpotify()));
+        }
+        if (!unquoted.isEmpty()) {
+            try {
+                this.spotifyApi.getSeveralAlbums(unquoted, this.market)
+                        .forEach(catalogAlbum -> catalogPrices.put(catalogAlbum.getId(), catalogAlbum.getValue()));
+            } catch (IOException | ParseException | SpotifyWebApiException e) {
+                throw new UnavailableSpotifyApiException("Couldn't fetch albums from Spotify API");
+            }
+        }
+        for (Album album : albums) {
+            BigDecimal catalogPrice = catalogPrices.get(album.getIdSpotify());
+            if (catalogPrice == null || album.getValue().compareTo(catalogPrice) != 0) {
+                throw new InvalidAlbumPriceException("Album price doesn't match the catalog price");
+            }
+        }
+    }
+
+    private BigDecimal fetchCatalogPrice(String idSpotify) {
+        try {
+            return this.spotifyApi.getAlbum(idSpotify, this.market).getValue();
+        } catch (IOException | ParseException | SpotifyWebApiException e) {
+            throw new UnavailableSpotifyApiException("Couldn't fetch album from Spotify API");
+        }
+    }
+
     public void validateAlbumFields(Album album) {
         if (album.getName() == null || album.getName().isEmpty() ||
                 album.getIdSpotify() == null || album.getIdSpotify().isEmpty() ||
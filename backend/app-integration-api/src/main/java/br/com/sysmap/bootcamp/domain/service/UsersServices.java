@@ -4,7 +4,9 @@ import br.com.sysmap.bootcamp.domain.entities.Users;
 import br.com.sysmap.bootcamp.domain.repository.UserRepository;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -12,7 +14,9 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UsersServices implements UserDetailsService {
@@ -20,14 +24,22 @@ public class UsersServices implements UserDetailsService {
     @Autowired
     private UserRepository usersRepository;
 
+    // Users allowed onto the management endpoints that change state, like replaying dead letters
+    @Value("${security.admins:}")
+    private Set<String> admins;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         Optional<Users> userDetail = usersRepository.findByEmail(username);
 
-        return userDetail.map(users -> new User(users.getEmail(), users.getPassword(), new ArrayList<GrantedAuthority>()))
+        return userDetail.map(users -> new User(users.getEmail(), users.getPassword(), authorities(users.getEmail())))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found " + username));
     }
 
+    private List<GrantedAuthority> authorities(String email) {
+        return this.admins.contains(email) ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : new ArrayList<>();
+    }
+
     public Users findByEmail(String username) {
         return usersRepository.findByEmail(username).orElseThrow(() -> new UserNotFoundException("User not found"));
     }
@@ -0,0 +1,258 @@
+package br.com.sysmap.bootcamp.domain.service.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory inverted index over album name, artist and release year
+public class AlbumIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int TYPO = 1;
+
+    // Shorter tokens match too many terms by prefix or with a typo
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_TYPO_LENGTH = 4;
+
+    private final int maxAlbums;
+    private final int maxCandidates;
+    private final Map<String, IndexedAlbum> albums = new HashMap<>();
+    private final Map<String, Set<String>> albumTerms = new HashMap<>();
+    private final NavigableMap<String, Set<String>> postings = new TreeMap<>();
+    // Every term under itself and each of its one-letter deletions, two terms one edit apart share a key
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public AlbumIndex(int maxAlbums, int maxCandidates) {
+        this.maxAlbums = maxAlbums;
+        this.maxCandidates = maxCandidates;
+    }
+
+    // Returns false when the album was already indexed with the same fields or the index is full
+    public boolean add(IndexedAlbum album) {
+        this.lock.writeLock().lock();
+        try {
+            IndexedAlbum previous = this.albums.get(album.id());
+            if (album.equals(previous) || (previous == null && this.albums.size() >= this.maxAlbums)) {
+                return false;
+            }
+            if (previous != null) {
+                this.albumTerms.get(previous.id()).forEach(term -> unpost(term, previous.id()));
+            }
+            Set<String> terms = tokens(album);
+            this.albums.put(album.id(), album);
+            this.albumTerms.put(album.id(), terms);
+            terms.forEach(term -> post(term, album.id()));
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(String id) {
+        this.lock.readLock().lock();
+        try {
+            return this.albums.containsKey(id);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.albums.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Albums matching every query token, exact matches rank above prefix matches and those above typos.
+    // Empty when even the most selective token matches more than maxCandidates albums, ranking that many
+    // by name alone wouldn't beat asking Spotify and would no longer be cheap
+    public Optional<Matches> search(String query, int max) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty()) {
+            return Optional.of(new Matches(List.of(), 0));
+        }
+
+        this.lock.readLock().lock();
+        try {
+            List<TokenMatch> matches = tokens.stream().map(this::match).sorted(Comparator.comparingLong(TokenMatch::postings)).toList();
+
+            // Candidates come from the most selective token, the other tokens are checked against each candidate's own terms
+            TokenMatch first = matches.get(0);
+            if (first.postings() > this.maxCandidates) {
+                return Optional.empty();
+            }
+            Map<String, Integer> scores = new HashMap<>();
+            first.terms().forEach((term, score) -> {
+                for (String id : this.postings.get(term)) {
+                    scores.merge(id, score, Math::max);
+                }
+            });
+            for (TokenMatch match : matches.subList(1, matches.size())) {
+                scores.entrySet().removeIf(entry -> {
+                    int score = match.score(this.albumTerms.get(entry.getKey()));
+                    entry.setValue(entry.getValue() + score);
+                    return score == 0;
+                });
+                if (scores.isEmpty()) {
+                    return Optional.of(new Matches(List.of(), 0));
+                }
+            }
+
+            return Optional.of(new Matches(top(scores, max), scores.size()));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    // Keeps only the best max albums instead of sorting every match
+    private List<IndexedAlbum> top(Map<String, Integer> scores, int max) {
+        Comparator<IndexedAlbum> ranking = Comparator.comparing((IndexedAlbum album) -> scores.get(album.id())).reversed()
+                .thenComparing(IndexedAlbum::name, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(IndexedAlbum::id);
+        PriorityQueue<IndexedAlbum> best = new PriorityQueue<>(ranking.reversed());
+        for (String id : scores.keySet()) {
+            IndexedAlbum album = this.albums.get(id);
+            if (best.size() < max) {
+                best.add(album);
+            } else if (max > 0 && ranking.compare(album, best.peek()) < 0) {
+                best.poll();
+                best.add(album);
+            }
+        }
+        List<IndexedAlbum> top = new ArrayList<>(best);
+        top.sort(ranking);
+        return top;
+    }
+
+    private TokenMatch match(String token) {
+        Map<String, Integer> terms = new HashMap<>();
+        if (token.length() >= MIN_TYPO_LENGTH && hasLetter(token)) {
+            for (String term : similarTerms(token)) {
+                terms.put(term, TYPO);
+            }
+        }
+        if (token.length() >= MIN_PREFIX_LENGTH) {
+            for (String term : this.postings.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+                terms.put(term, PREFIX);
+            }
+        }
+        if (this.postings.containsKey(token)) {
+            terms.put(token, EXACT);
+        }
+        long postings = terms.keySet().stream().mapToLong(term -> this.postings.get(term).size()).sum();
+        return new TokenMatch(terms, postings);
+    }
+
+    private Set<String> similarTerms(String token) {
+        Set<String> terms = new HashSet<>(this.deletions.getOrDefault(token, Set.of()));
+        for (String deletion : deletions(token)) {
+            terms.addAll(this.deletions.getOrDefault(deletion, Set.of()));
+        }
+        terms.remove(token);
+        return terms;
+    }
+
+    private void post(String term, String id) {
+        Set<String> ids = this.postings.computeIfAbsent(term, key -> new HashSet<>());
+        if (ids.isEmpty()) {
+            this.deletions.computeIfAbsent(term, key -> new HashSet<>()).add(term);
+            for (String deletion : deletions(term)) {
+                this.deletions.computeIfAbsent(deletion, key -> new HashSet<>()).add(term);
+            }
+        }
+        ids.add(id);
+    }
+
+    private void unpost(String term, String id) {
+        Set<String> ids = this.postings.get(term);
+        if (ids == null || !ids.remove(id) || !ids.isEmpty()) {
+            return;
+        }
+        this.postings.remove(term);
+        removeDeletion(term, term);
+        for (String deletion : deletions(term)) {
+            removeDeletion(deletion, term);
+        }
+    }
+
+    private void removeDeletion(String deletion, String term) {
+        Set<String> terms = this.deletions.get(deletion);
+        if (terms != null && terms.remove(term) && terms.isEmpty()) {
+            this.deletions.remove(deletion);
+        }
+    }
+
+    // Query terms a token matches with their score
+    private record TokenMatch(Map<String, Integer> terms, long postings) {
+
+        int score(Set<String> albumTerms) {
+            int score = 0;
+            for (String term : albumTerms) {
+                score = Math.max(score, this.terms.getOrDefault(term, 0));
+            }
+            return score;
+        }
+    }
+
+    public record Matches(List<IndexedAlbum> albums, int total) {
+    }
+
+    private static Set<String> deletions(String term) {
+        Set<String> deletions = new HashSet<>();
+        if (term.length() >= MIN_TYPO_LENGTH) {
+            for (int i = 0; i < term.length(); i++) {
+                deletions.add(term.substring(0, i) + term.substring(i + 1));
+            }
+        }
+        return deletions;
+    }
+
+    private static Set<String> tokens(IndexedAlbum album) {
+        Set<String> tokens = new HashSet<>(tokenize(album.name()));
+        tokens.addAll(tokenize(album.artistName()));
+        if (album.releaseDate() != null && album.releaseDate().length() >= 4) {
+            tokens.add(album.releaseDate().substring(0, 4));
+        }
+        return tokens;
+    }
+
+    private static boolean hasLetter(String token) {
+        return token.chars().anyMatch(Character::isLetter);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
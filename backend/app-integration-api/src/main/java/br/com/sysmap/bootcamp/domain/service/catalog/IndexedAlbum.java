@@ -0,0 +1,74 @@
+package br.com.sysmap.bootcamp.domain.service.catalog;
+
+import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.entities.CatalogAlbum;
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import com.neovisionaries.i18n.CountryCode;
+import se.michaelthelin.spotify.enums.AlbumType;
+import se.michaelthelin.spotify.enums.ModelObjectType;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+// The album fields the catalog index keeps, enough to search and to show a result
+public record IndexedAlbum(String id, String name, String artistName, String imageUrl, String releaseDate, AlbumType albumType) {
+
+    // Albums only known from a sale, read straight from ALBUM by AlbumRepository.findIndexedAlbums
+    public IndexedAlbum(String id, String name, String artistName, String imageUrl) {
+        this(id, name, artistName, imageUrl, null, null);
+    }
+
+    // Albums only known from a sale have no type or release date, so their catalog price can't be derived yet
+    public boolean isComplete() {
+        return this.albumType != null && this.releaseDate != null;
+    }
+
+    public static IndexedAlbum of(AlbumModel album) {
+        String artistName = album.getArtists() == null ? null : Arrays.stream(album.getArtists())
+                .map(ArtistSimplified::getName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.joining(", "));
+        String imageUrl = album.getImages() == null || album.getImages().length == 0 ? null : album.getImages()[0].getUrl();
+        return new IndexedAlbum(album.getId(), album.getName(), artistName, imageUrl, album.getReleaseDate(), album.getAlbumType());
+    }
+
+    public static IndexedAlbum of(CatalogAlbum album) {
+        return new IndexedAlbum(album.getIdSpotify(), album.getName(), album.getArtistName(), album.getImageUrl(),
+                album.getReleaseDate(), album.getAlbumType() == null ? null : AlbumType.valueOf(album.getAlbumType()));
+    }
+
+    public static IndexedAlbum of(Album album) {
+        return new IndexedAlbum(album.getIdSpotify(), album.getName(), album.getArtistName(), album.getImageUrl());
+    }
+
+    public CatalogAlbum toEntity(CountryCode market) {
+        return CatalogAlbum.builder()
+                .market(market.name())
+                .idSpotify(this.id)
+                .name(this.name)
+                .artistName(this.artistName)
+                .imageUrl(this.imageUrl)
+                .releaseDate(this.releaseDate)
+                .albumType(this.albumType == null ? null : this.albumType.name())
+                .build();
+    }
+
+    public AlbumModel toModel() {
+        AlbumModel album = new AlbumModel();
+        album.setId(this.id);
+        album.setName(this.name);
+        album.setReleaseDate(this.releaseDate);
+        album.setAlbumType(this.albumType);
+        album.setType(ModelObjectType.ALBUM);
+        if (this.artistName != null) {
+            album.setArtists(new ArtistSimplified[]{new ArtistSimplified.Builder().setName(this.artistName).build()});
+        }
+        if (this.imageUrl != null) {
+            album.setImages(new Image[]{new Image.Builder().setUrl(this.imageUrl).build()});
+        }
+        return album;
+    }
+}
@@ -0,0 +1,217 @@
+package br.com.sysmap.bootcamp.domain.service.catalog;
+
+import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.entities.CatalogAlbum;
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
+import br.com.sysmap.bootcamp.domain.repository.CatalogAlbumRepository;
+import br.com.sysmap.bootcamp.domain.service.integration.SearchQueries;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.neovisionaries.i18n.CountryCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Albums already seen on Spotify or sold here, searched locally before calling Spotify. Each market has its own index,
+// an album is only served to searches in the markets Spotify returned it for
+@Slf4j
+@Service
+public class LocalCatalog {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final Map<CountryCode, AlbumIndex> indexes = new ConcurrentHashMap<>();
+    // Whether a query is answered here or by Spotify, decided on its first page and kept for the next ones,
+    // so paging through it never switches source and ranking halfway
+    private final Cache<String, Boolean> sources;
+    private final CatalogAlbumRepository catalogAlbumRepository;
+    private final AlbumRepository albumRepository;
+    private final AlbumPriceCache albumPriceCache;
+    private final Counter hits;
+    private final Counter misses;
+    private final boolean enabled;
+    private final int maxAlbums;
+    private final int maxCandidates;
+    private final int minResults;
+    // Sales are priced against this market, so the albums sold here are known to be in it
+    private final CountryCode market;
+    // Albums not written to CATALOG_MARKET_ALBUM yet, keyed by market and id so an album updated twice is written once
+    private final Map<String, CatalogAlbum> pending = new LinkedHashMap<>();
+
+    public LocalCatalog(CatalogAlbumRepository catalogAlbumRepository,
+                        AlbumRepository albumRepository,
+                        AlbumPriceCache albumPriceCache,
+                        MeterRegistry meterRegistry,
+                        @Value("${catalog.index.enabled:true}") boolean enabled,
+                        @Value("${catalog.index.max-albums:200000}") int maxAlbums,
+                        @Value("${catalog.index.max-candidates:5000}") int maxCandidates,
+                        @Value("${catalog.index.min-results:30}") int minResults,
+                        @Value("${catalog.index.source-ttl:30m}") Duration sourceTtl,
+                        @Value("${spotify.market:BR}") CountryCode market) {
+        this.catalogAlbumRepository = catalogAlbumRepository;
+        this.albumRepository = albumRepository;
+        this.albumPriceCache = albumPriceCache;
+        this.enabled = enabled;
+        this.maxAlbums = maxAlbums;
+        this.maxCandidates = maxCandidates;
+        this.minResults = minResults;
+        this.market = market;
+        this.sources = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(sourceTtl)
+                .build();
+        this.hits = Counter.builder("catalog.index.searches").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("catalog.index.searches").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("catalog.index.albums", this, LocalCatalog::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!this.enabled) {
+            return;
+        }
+        // Read page by page by id and only until the index is full, the tables may hold far more albums than it keeps
+        for (String code : this.catalogAlbumRepository.findMarkets()) {
+            CountryCode market = CountryCode.getByCode(code, false);
+            String after = "";
+            while (market != null && size() < this.maxAlbums) {
+                List<CatalogAlbum> page = this.catalogAlbumRepository.findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(code, after,
+                        Limit.of(LOAD_PAGE_SIZE));
+                page.forEach(album -> marketIndex(market).add(IndexedAlbum.of(album)));
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                after = page.get(page.size() - 1).getIdSpotify();
+            }
+        }
+
+        String after = "";
+        AlbumIndex sold = marketIndex(this.market);
+        while (size() < this.maxAlbums) {
+            List<IndexedAlbum> page = this.albumRepository.findIndexedAlbums(after, Limit.of(LOAD_PAGE_SIZE));
+            for (IndexedAlbum album : page) {
+                if (!sold.contains(album.id())) {
+                    sold.add(album);
+                }
+            }
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1).id();
+        }
+        log.info("Local catalog loaded with {} albums in {} markets", size(), this.indexes.size());
+    }
+
+    // A query is answered here only when the index knows at least minResults albums for it and can price all of them.
+    // Every page of it then comes from the index and the paging ends at the index's total, otherwise every page goes to Spotify
+    public Optional<AlbumPage> search(String search, CountryCode market, int offset, int limit) {
+        if (!this.enabled) {
+            return Optional.empty();
+        }
+        AlbumIndex index = this.indexes.get(market);
+        Optional<AlbumIndex.Matches> found = index == null ? Optional.empty() : index.search(search, this.maxCandidates);
+        boolean local = this.sources.get(market + ":" + SearchQueries.normalize(search), query -> found.filter(this::coversQuery).isPresent());
+        if (!local || found.isEmpty()) {
+            this.misses.increment();
+            return Optional.empty();
+        }
+        this.hits.increment();
+
+        List<IndexedAlbum> matches = found.get().albums();
+        List<AlbumModel> albums = new ArrayList<>(limit);
+        for (IndexedAlbum match : matches.subList(Math.min(offset, matches.size()), Math.min(offset + limit, matches.size()))) {
+            AlbumModel album = match.toModel();
+            album.setValue(this.albumPriceCache.price(album));
+            albums.add(album);
+        }
+        int nextOffset = offset + albums.size();
+        return Optional.of(AlbumPage.builder()
+                .items(albums)
+                .offset(offset)
+                .limit(limit)
+                .total(matches.size())
+                .nextOffset(!albums.isEmpty() && nextOffset < matches.size() && nextOffset <= SearchQueries.MAX_OFFSET ? nextOffset : null)
+                .build());
+    }
+
+    public void index(Collection<AlbumModel> albums, CountryCode market) {
+        if (!this.enabled) {
+            return;
+        }
+        AlbumIndex index = marketIndex(market);
+        for (AlbumModel album : albums) {
+            if (album.getId() == null || album.getName() == null || (size() >= this.maxAlbums && !index.contains(album.getId()))) {
+                continue;
+            }
+            IndexedAlbum indexed = IndexedAlbum.of(album);
+            if (index.add(indexed)) {
+                synchronized (this.pending) {
+                    this.pending.put(market + ":" + indexed.id(), indexed.toEntity(market));
+                }
+            }
+        }
+    }
+
+    // A sold album becomes searchable even if it never showed up in a search here. Called once the sale committed
+    public void index(Album album) {
+        AlbumIndex index = marketIndex(this.market);
+        if (this.enabled && size() < this.maxAlbums && !index.contains(album.getIdSpotify())) {
+            index.add(IndexedAlbum.of(album));
+        }
+    }
+
+    public int size() {
+        return this.indexes.values().stream().mapToInt(AlbumIndex::size).sum();
+    }
+
+    // Written behind the searches so Spotify responses never wait on the database
+    @Scheduled(fixedDelayString = "${catalog.index.flush-interval:PT5S}")
+    public void flush() {
+        List<CatalogAlbum> albums;
+        synchronized (this.pending) {
+            if (this.pending.isEmpty()) {
+                return;
+            }
+            albums = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+        }
+        try {
+            this.catalogAlbumRepository.saveAll(albums);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't persist {} catalog albums, they stay indexed in memory only", albums.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // Albums only known from a sale can't be priced, a query matching one is left to Spotify
+    private boolean coversQuery(AlbumIndex.Matches matches) {
+        return matches.total() >= this.minResults && matches.albums().stream().allMatch(IndexedAlbum::isComplete);
+    }
+
+    private AlbumIndex marketIndex(CountryCode market) {
+        return this.indexes.computeIfAbsent(market, key -> new AlbumIndex(this.maxAlbums, this.maxCandidates));
+    }
+}
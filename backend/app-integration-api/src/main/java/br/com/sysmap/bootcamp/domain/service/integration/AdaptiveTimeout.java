@@ -0,0 +1,51 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+// Timeout derived from a percentile of recent Spotify latencies, kept between a floor and a ceiling
+public class AdaptiveTimeout {
+
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private final double multiplier;
+    private final long minNanos;
+    private final long maxNanos;
+    private final int minimumSamples;
+
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private volatile long currentNanos;
+
+    public AdaptiveTimeout(int window, double percentile, double multiplier, Duration min, Duration max) {
+        this.samples = new long[window];
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.minNanos = min.toNanos();
+        this.maxNanos = max.toNanos();
+        this.minimumSamples = Math.min(window, 20);
+        this.currentNanos = this.maxNanos;
+    }
+
+    // Until there are enough samples the ceiling is used
+    public Duration current() {
+        return Duration.ofNanos(this.currentNanos);
+    }
+
+    public synchronized void record(Duration latency) {
+        this.samples[this.next] = latency.toNanos();
+        this.next = (this.next + 1) % this.samples.length;
+        this.count = Math.min(this.count + 1, this.samples.length);
+
+        if (this.count >= this.minimumSamples && ++this.sinceRecompute >= RECOMPUTE_EVERY) {
+            this.sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(this.samples, this.count);
+            Arrays.sort(sorted);
+            long observed = sorted[Math.max(0, (int) Math.ceil(this.percentile * sorted.length) - 1)];
+            this.currentNanos = Math.max(this.minNanos, Math.min(this.maxNanos, (long) (observed * this.multiplier)));
+        }
+    }
+}
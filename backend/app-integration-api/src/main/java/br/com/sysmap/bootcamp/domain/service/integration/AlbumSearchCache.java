@@ -0,0 +1,160 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.neovisionaries.i18n.CountryCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Component
+public class AlbumSearchCache {
+
+    private final LoadingCache<SearchKey, AlbumPage> cache;
+    private final Cache<SearchKey, AlbumPage> lastKnownGood;
+    private final Counter fallbacks;
+    private final ExecutorService refreshExecutor;
+    private final CountryCode defaultMarket;
+    private final Duration ttl;
+
+    public AlbumSearchCache(SpotifyApi spotifyApi,
+                            MeterRegistry meterRegistry,
+                            @Value("${spotify.market:BR}") CountryCode defaultMarket,
+                            @Value("${catalog.search-cache.ttl:10m}") Duration ttl,
+                            @Value("${catalog.search-cache.max-stale:1h}") Duration maxStale,
+                            @Value("${catalog.search-cache.max-weight:64MB}") DataSize maxWeight,
+                            @Value("${catalog.search-cache.refresh-threads:2}") int refreshThreads,
+                            @Value("${catalog.search-cache.fallback-ttl:24h}") Duration fallbackTtl,
+                            @Value("${catalog.search-cache.fallback-max-weight:64MB}") DataSize fallbackMaxWeight) {
+        if (ttl.compareTo(maxStale) >= 0) {
+            throw new IllegalArgumentException("catalog.search-cache.ttl must be shorter than max-stale");
+        }
+        this.defaultMarket = defaultMarket;
+        this.ttl = ttl;
+        this.refreshExecutor = Executors.newFixedThreadPool(refreshThreads, runnable -> {
+            Thread thread = new Thread(runnable, "album-search-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Results kept for when Spotify can't be reached, they share the page instances with the main cache
+        this.lastKnownGood = Caffeine.newBuilder()
+                .expireAfterWrite(fallbackTtl)
+                .maximumWeight(fallbackMaxWeight.toBytes())
+                .weigher((SearchKey key, AlbumPage page) -> estimateBytes(key, page.getItems()))
+                .build();
+        this.fallbacks = Counter.builder("catalog.search.fallbacks")
+                .description("Searches answered with last known results because Spotify failed")
+                .register(meterRegistry);
+
+        // Entries older than the ttl are still served while a background reload replaces them
+        this.cache = Caffeine.newBuilder()
+                .refreshAfterWrite(ttl)
+                .expireAfterWrite(maxStale)
+                .maximumWeight(maxWeight.toBytes())
+                .weigher((SearchKey key, AlbumPage page) -> estimateBytes(key, page.getItems()))
+                .executor(this.refreshExecutor)
+                .recordStats()
+                .build(key -> {
+                    AlbumPage page = spotifyApi.getAlbums(key.query(), key.market(), key.offset(), key.limit());
+                    this.lastKnownGood.put(key, page);
+                    return page;
+                });
+
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "albumSearch");
+    }
+
+    public AlbumPage getAlbums(String search, int offset, int limit) throws IOException, ParseException, SpotifyWebApiException {
+        return getAlbums(search, this.defaultMarket, offset, limit);
+    }
+
+    public AlbumPage getAlbums(String search, CountryCode market, int offset, int limit) throws IOException, ParseException, SpotifyWebApiException {
+        SearchKey key = SearchKey.of(search, market, offset, limit);
+        try {
+            return this.cache.get(key);
+        } catch (CompletionException e) {
+            AlbumPage fallback = this.lastKnownGood.getIfPresent(key);
+            if (fallback != null) {
+                this.fallbacks.increment();
+                return fallback;
+            }
+
+            // Caffeine wraps checked exceptions thrown by the loader
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof ParseException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof SpotifyWebApiException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Loads the first page of a search unless a fresh copy is cached, returns whether Spotify had to be called
+    public boolean prefetch(String search) throws IOException, ParseException, SpotifyWebApiException {
+        SearchKey key = SearchKey.of(search, this.defaultMarket, 0, SearchQueries.DEFAULT_LIMIT);
+        Optional<Duration> age = this.cache.policy().expireAfterWrite().flatMap(expiration -> expiration.ageOf(key));
+        if (age.isPresent() && age.get().compareTo(this.ttl) < 0) {
+            return false;
+        }
+
+        // A stale entry is answered right away and reloaded in the background
+        getAlbums(search, key.offset(), key.limit());
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.refreshExecutor.shutdownNow();
+    }
+
+    // Rough heap footprint of a cached search, good enough to keep the cache inside its budget
+    static int estimateBytes(SearchKey key, List<AlbumModel> albums) {
+        long bytes = 64 + 2L * key.query().length();
+        for (AlbumModel album : albums) {
+            bytes += 96 + stringBytes(album.getId()) + stringBytes(album.getName()) + stringBytes(album.getReleaseDate());
+            if (album.getArtists() != null) {
+                for (ArtistSimplified artist : album.getArtists()) {
+                    bytes += 128 + stringBytes(artist.getId()) + stringBytes(artist.getName()) + stringBytes(artist.getUri());
+                }
+            }
+            if (album.getImages() != null) {
+                for (Image image : album.getImages()) {
+                    bytes += 48 + stringBytes(image.getUrl());
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    record SearchKey(String query, CountryCode market, int offset, int limit) {
+
+        static SearchKey of(String search, CountryCode market, int offset, int limit) {
+            return new SearchKey(SearchQueries.normalize(search), market, offset, limit);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import com.neovisionaries.i18n.CountryCode;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.credentials.ClientCredentials;
+import se.michaelthelin.spotify.model_objects.specification.Album;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+
+import java.io.IOException;
+import java.util.List;
+
+// Where album data comes from, SpotifyApi adds tokens, coalescing and pricing on top of it
+public interface CatalogBackend {
+
+    ClientCredentials requestToken() throws IOException, ParseException, SpotifyWebApiException;
+
+    Paging<AlbumSimplified> searchAlbums(String accessToken, String query, CountryCode market, int offset, int limit)
+            throws IOException, ParseException, SpotifyWebApiException;
+
+    Album getAlbum(String accessToken, String idSpotify, CountryCode market) throws IOException, ParseException, SpotifyWebApiException;
+
+    // Up to MAX_SEVERAL_ALBUMS at once, in the order asked, null where an id is unknown
+    Album[] getSeveralAlbums(String accessToken, List<String> idSpotifies, CountryCode market)
+            throws IOException, ParseException, SpotifyWebApiException;
+
+    int MAX_SEVERAL_ALBUMS = 20;
+}
@@ -0,0 +1,138 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import br.com.sysmap.bootcamp.domain.entities.TrendingSearch;
+import br.com.sysmap.bootcamp.domain.repository.TrendingSearchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+@Slf4j
+@Component
+public class CatalogWarmer {
+
+    private static final int MAX_TERM_LENGTH = 200;
+
+    private final AlbumSearchCache albumSearchCache;
+    private final TrendingSearchRepository trendingSearchRepository;
+    private final HeavyHitters heavyHitters;
+    private final Executor executor;
+    private final Counter prefetches;
+    private final boolean enabled;
+    private final int topTerms;
+    private final int maxRequests;
+
+    public CatalogWarmer(AlbumSearchCache albumSearchCache,
+                         TrendingSearchRepository trendingSearchRepository,
+                         MeterRegistry meterRegistry,
+                         @Qualifier("spotifyExecutor") Executor executor,
+                         @Value("${catalog.warmer.enabled:true}") boolean enabled,
+                         @Value("${catalog.warmer.tracked-terms:1000}") int trackedTerms,
+                         @Value("${catalog.warmer.top-terms:50}") int topTerms,
+                         @Value("${catalog.warmer.max-requests:20}") int maxRequests) {
+        this.albumSearchCache = albumSearchCache;
+        this.trendingSearchRepository = trendingSearchRepository;
+        this.heavyHitters = new HeavyHitters(trackedTerms);
+        this.executor = executor;
+        this.enabled = enabled;
+        this.topTerms = topTerms;
+        this.maxRequests = maxRequests;
+        this.prefetches = Counter.builder("catalog.warmer.prefetches")
+                .description("Searches sent to Spotify to warm the catalog cache")
+                .register(meterRegistry);
+        Gauge.builder("catalog.warmer.tracked-terms", this.heavyHitters, HeavyHitters::size).register(meterRegistry);
+    }
+
+    public void record(String search) {
+        String term = SearchQueries.normalize(search);
+        if (term.length() <= MAX_TERM_LENGTH) {
+            this.heavyHitters.offer(term);
+        }
+    }
+
+    // Terms persisted by the previous run seed the sketch so the first searches after a deploy are already cached.
+    // Runs off the startup thread, the service takes traffic while Spotify answers the prefetches
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!this.enabled) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> {
+                try {
+                    this.trendingSearchRepository.findAll()
+                            .forEach(trending -> this.heavyHitters.offer(trending.getTerm(), trending.getHits()));
+                    prefetch();
+                } catch (RuntimeException e) {
+                    log.warn("Couldn't warm the catalog cache at startup", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Skipped warming the catalog cache at startup, the Spotify executor is full");
+        }
+    }
+
+    @Scheduled(initialDelayString = "${catalog.warmer.interval:PT10M}", fixedDelayString = "${catalog.warmer.interval:PT10M}")
+    public void refresh() {
+        if (!this.enabled) {
+            return;
+        }
+        persist();
+        prefetch();
+        this.heavyHitters.decay();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!this.enabled) {
+            return;
+        }
+        try {
+            persist();
+        } catch (RuntimeException e) {
+            log.warn("Couldn't persist trending searches on shutdown", e);
+        }
+    }
+
+    public void persist() {
+        List<TrendingSearch> trending = this.heavyHitters.top(this.topTerms).stream()
+                .map(counter -> TrendingSearch.builder().term(counter.term()).hits(counter.count()).build())
+                .toList();
+        this.trendingSearchRepository.replaceAll(trending);
+    }
+
+    // Warms the most searched terms first and stops once the upstream request budget is spent
+    public int prefetch() {
+        int requests = 0;
+        for (HeavyHitters.Counter counter : this.heavyHitters.top(this.topTerms)) {
+            if (requests == this.maxRequests) {
+                break;
+            }
+            try {
+                if (this.albumSearchCache.prefetch(counter.term())) {
+                    requests++;
+                    this.prefetches.increment();
+                }
+            } catch (SpotifyCallRejectedException e) {
+                log.warn("Stopped warming the catalog cache, Spotify calls are being rejected");
+                break;
+            } catch (Exception e) {
+                requests++;
+                log.warn("Couldn't warm the catalog cache for '{}'", counter.term(), e);
+            }
+        }
+        log.info("Warmed the catalog cache with {} Spotify requests", requests);
+        return requests;
+    }
+}
@@ -0,0 +1,137 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Space-Saving sketch, keeps at most capacity terms and the counts of the frequent ones are never underestimated.
+// Terms are split by hash over stripes, each an independent sketch with its own lock, so concurrent searches rarely wait on each other
+public class HeavyHitters {
+
+    // Below this a stripe evicts too eagerly to tell frequent terms from noise
+    private static final int MIN_STRIPE_CAPACITY = 64;
+    private static final int MAX_STRIPES = 16;
+
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong(Counter::count)
+            .thenComparing(Counter::term);
+
+    private final Stripe[] stripes;
+
+    public HeavyHitters(int capacity) {
+        this(capacity, Math.max(1, Math.min(MAX_STRIPES, capacity / MIN_STRIPE_CAPACITY)));
+    }
+
+    public HeavyHitters(int capacity, int stripes) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (stripes < 1 || stripes > capacity) {
+            throw new IllegalArgumentException("Stripes must be between 1 and the capacity");
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe(capacity / stripes + (i < capacity % stripes ? 1 : 0));
+        }
+    }
+
+    public void offer(String term) {
+        offer(term, 1);
+    }
+
+    public void offer(String term, long hits) {
+        this.stripes[Math.floorMod(term.hashCode(), this.stripes.length)].offer(term, hits);
+    }
+
+    // A term lives in a single stripe, so the overall top n is among the top n of each stripe
+    public List<Counter> top(int n) {
+        List<Counter> candidates = new ArrayList<>();
+        for (Stripe stripe : this.stripes) {
+            candidates.addAll(stripe.top(n));
+        }
+        candidates.sort(BY_COUNT.reversed());
+        return candidates.size() > n ? new ArrayList<>(candidates.subList(0, n)) : candidates;
+    }
+
+    // Halves every count so terms that stopped being searched make room for new ones
+    public void decay() {
+        for (Stripe stripe : this.stripes) {
+            stripe.decay();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : this.stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+
+        private final int capacity;
+        private final Map<String, Counter> counters = new HashMap<>();
+        private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+
+        private Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized void offer(String term, long hits) {
+            Counter counter = this.counters.get(term);
+            if (counter != null) {
+                replace(counter, new Counter(term, counter.count() + hits, counter.error()));
+            } else if (this.counters.size() < this.capacity) {
+                add(new Counter(term, hits, 0));
+            } else {
+                // The new term takes over the least frequent slot, whose count becomes its possible overestimate
+                Counter evicted = this.byCount.pollFirst();
+                this.counters.remove(evicted.term());
+                add(new Counter(term, evicted.count() + hits, evicted.count()));
+            }
+        }
+
+        private synchronized List<Counter> top(int n) {
+            List<Counter> top = new ArrayList<>(Math.min(n, this.byCount.size()));
+            for (Counter counter : this.byCount.descendingSet()) {
+                if (top.size() == n) {
+                    break;
+                }
+                top.add(counter);
+            }
+            return top;
+        }
+
+        private synchronized void decay() {
+            List<Counter> decayed = new ArrayList<>(this.byCount.size());
+            for (Counter counter : this.byCount) {
+                if (counter.count() > 1) {
+                    decayed.add(new Counter(counter.term(), counter.count() / 2, counter.error() / 2));
+                }
+            }
+            this.counters.clear();
+            this.byCount.clear();
+            decayed.forEach(this::add);
+        }
+
+        private synchronized int size() {
+            return this.counters.size();
+        }
+
+        private void replace(Counter previous, Counter counter) {
+            this.byCount.remove(previous);
+            add(counter);
+        }
+
+        private void add(Counter counter) {
+            this.counters.put(counter.term(), counter);
+            this.byCount.add(counter);
+        }
+    }
+
+    public record Counter(String term, long count, long error) {
+    }
+}
@@ -0,0 +1,85 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// SpotifyHttpManager holds a single connection and fails when two requests use it at once,
+// so each call borrows a manager of its own from this pool
+public class PooledSpotifyHttpManager implements IHttpManager {
+
+    private final Supplier<IHttpManager> factory;
+    private final Queue<IHttpManager> idle = new ConcurrentLinkedQueue<>();
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+
+    public PooledSpotifyHttpManager(Supplier<IHttpManager> factory, int maxConnections, Duration acquireTimeout) {
+        this.factory = factory;
+        this.permits = new Semaphore(maxConnections, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(manager -> manager.get(uri, headers));
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(manager -> manager.post(uri, headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(manager -> manager.put(uri, headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return execute(manager -> manager.delete(uri, headers, body));
+    }
+
+    public int availableConnections() {
+        return this.permits.availablePermits();
+    }
+
+    private String execute(HttpCall call) throws IOException, SpotifyWebApiException, ParseException {
+        try {
+            if (!this.permits.tryAcquire(this.acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a free Spotify connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free Spotify connection", e);
+        }
+
+        IHttpManager manager = this.idle.poll();
+        try {
+            if (manager == null) {
+                manager = this.factory.get();
+            }
+            return call.call(manager);
+        } finally {
+            if (manager != null) {
+                this.idle.offer(manager);
+            }
+            this.permits.release();
+        }
+    }
+
+    @FunctionalInterface
+    private interface HttpCall {
+        String call(IHttpManager manager) throws IOException, SpotifyWebApiException, ParseException;
+    }
+}
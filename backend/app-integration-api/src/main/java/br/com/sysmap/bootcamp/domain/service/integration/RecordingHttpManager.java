@@ -0,0 +1,50 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.net.URI;
+
+// Saves successful catalog reads so the stand-in server can replay them later. Token responses are not recorded
+@Slf4j
+public class RecordingHttpManager implements IHttpManager {
+
+    private final IHttpManager delegate;
+    private final SpotifyFixtures fixtures;
+
+    public RecordingHttpManager(IHttpManager delegate, SpotifyFixtures fixtures) {
+        this.delegate = delegate;
+        this.fixtures = fixtures;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        String body = this.delegate.get(uri, headers);
+        try {
+            this.fixtures.write(uri, body);
+        } catch (IOException e) {
+            log.warn("Couldn't record Spotify response for {}", uri, e);
+        }
+        return body;
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.post(uri, headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.put(uri, headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.delete(uri, headers, body);
+    }
+}
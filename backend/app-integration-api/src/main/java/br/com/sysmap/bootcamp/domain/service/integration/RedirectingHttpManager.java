@@ -0,0 +1,60 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.net.URI;
+
+// Sends Spotify traffic somewhere else, e.g. the stand-in server. The token request ignores the
+// client's host settings, so the rewrite has to happen at the HTTP layer
+public class RedirectingHttpManager implements IHttpManager {
+
+    private final IHttpManager delegate;
+    private final URI apiUrl;
+    private final URI accountsUrl;
+
+    public RedirectingHttpManager(IHttpManager delegate, URI apiUrl, URI accountsUrl) {
+        this.delegate = delegate;
+        this.apiUrl = apiUrl;
+        this.accountsUrl = accountsUrl;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.get(redirect(uri), headers);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.post(redirect(uri), headers, body);
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.put(redirect(uri), headers, body);
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException, ParseException {
+        return this.delegate.delete(redirect(uri), headers, body);
+    }
+
+    URI redirect(URI uri) {
+        if (this.apiUrl != null && SpotifyApi.DEFAULT_HOST.equals(uri.getHost())) {
+            return rebase(this.apiUrl, uri);
+        } else if (this.accountsUrl != null && SpotifyApi.DEFAULT_AUTHENTICATION_HOST.equals(uri.getHost())) {
+            return rebase(this.accountsUrl, uri);
+        }
+        return uri;
+    }
+
+    private static URI rebase(URI base, URI uri) {
+        String query = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+        return URI.create(base.getScheme() + "://" + base.getRawAuthority() + uri.getRawPath() + query);
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.util.Locale;
+
+public final class SearchQueries {
+
+    public static final int DEFAULT_LIMIT = 30;
+
+    // Spotify search limits, larger values are rejected by the API
+    public static final int MAX_LIMIT = 50;
+    public static final int MAX_OFFSET = 1000;
+
+    // The most a search can be paged through, the last page starts at MAX_OFFSET
+    public static final int MAX_ITEMS = MAX_OFFSET + MAX_LIMIT;
+
+    private SearchQueries() {
+    }
+
+    // Searches that only differ by case or spacing return the same albums
+    public static String normalize(String search) {
+        return search.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isValidPage(int offset, int limit) {
+        return offset >= 0 && offset <= MAX_OFFSET && limit >= 1 && limit <= MAX_LIMIT;
+    }
+
+    public static boolean isValidMaxItems(int maxItems) {
+        return maxItems >= 1 && maxItems <= MAX_ITEMS;
+    }
+}
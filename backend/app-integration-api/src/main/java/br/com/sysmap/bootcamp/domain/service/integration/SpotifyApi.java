@@ -2,37 +2,83 @@ package br.com.sysmap.bootcamp.domain.service.integration;
 
 import br.com.sysmap.bootcamp.domain.mapper.AlbumMapper;
 import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.service.catalog.LocalCatalog;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
 import com.neovisionaries.i18n.CountryCode;
+import lombok.RequiredArgsConstructor;
 import org.apache.hc.core5.http.ParseException;
 import org.springframework.stereotype.Service;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
-import se.michaelthelin.spotify.requests.authorization.client_credentials.ClientCredentialsRequest;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 @Service
+@RequiredArgsConstructor
 public class SpotifyApi {
 
-    private se.michaelthelin.spotify.SpotifyApi spotifyApi = new se.michaelthelin.spotify.SpotifyApi.Builder()
-            .setClientId("a35ea1e18d4c4e6eb0dcbbc17a91633f")
-            .setClientSecret("9db59b735b6e4666b2447fa29ee578d4")
-            .build();
+    private final CatalogBackend catalogBackend;
+    private final SpotifyTokenManager spotifyTokenManager;
+    private final SpotifyRequestCoalescer spotifyRequestCoalescer;
+    private final AlbumPriceCache albumPriceCache;
+    private final SpotifyResilience spotifyResilience;
+    private final LocalCatalog localCatalog;
 
-    public List<AlbumModel> getAlbums(String search) throws IOException, ParseException, SpotifyWebApiException {
-        spotifyApi.setAccessToken(getToken());
-        return AlbumMapper.INSTANCE.toModel(spotifyApi.searchAlbums(search).market(CountryCode.BR)
-                .limit(30)
-                .build().execute().getItems()).stream()
-                .peek(album -> album.setValue(BigDecimal.valueOf(Math.random() * ((100.00 - 12.00) + 1) + 12.00)
-                        .setScale(2, BigDecimal.ROUND_HALF_UP))).toList();
+    public AlbumPage getAlbums(String search, CountryCode market, int offset, int limit) throws IOException, ParseException, SpotifyWebApiException {
+        String query = SearchQueries.normalize(search);
+        return spotifyRequestCoalescer.execute("search:" + market + ":" + offset + ":" + limit + ":" + query, () -> {
+            Paging<AlbumSimplified> paging = spotifyResilience.execute(
+                    () -> catalogBackend.searchAlbums(getToken(), query, market, offset, limit));
+            List<AlbumModel> albums = AlbumMapper.INSTANCE.toModel(paging.getItems()).stream()
+                    .peek(album -> album.setValue(albumPriceCache.price(album))).toList();
+            localCatalog.index(albums, market);
 
+            int nextOffset = offset + paging.getItems().length;
+            return AlbumPage.builder()
+                    .items(albums)
+                    .offset(offset)
+                    .limit(limit)
+                    .total(paging.getTotal())
+                    .nextOffset(paging.getNext() != null && !albums.isEmpty() && nextOffset <= SearchQueries.MAX_OFFSET ? nextOffset : null)
+                    .build();
+        });
     }
 
+    public AlbumModel getAlbum(String idSpotify, CountryCode market) throws IOException, ParseException, SpotifyWebApiException {
+        return spotifyRequestCoalescer.execute("album:" + market + ":" + idSpotify, () -> {
+            AlbumModel album = AlbumMapper.INSTANCE.toModel(spotifyResilience.execute(
+                    () -> catalogBackend.getAlbum(getToken(), idSpotify, market)));
+            album.setValue(albumPriceCache.price(album));
+            localCatalog.index(List.of(album), market);
+            return album;
+        });
+    }
+
+    // Several albums per request, a cart is looked up in a request or three instead of one per album. Unknown ids are left out
+    public List<AlbumModel> getSeveralAlbums(List<String> idSpotifies, CountryCode market) throws IOException, ParseException, SpotifyWebApiException {
+        List<AlbumModel> albums = new ArrayList<>(idSpotifies.size());
+        for (int from = 0; from < idSpotifies.size(); from += CatalogBackend.MAX_SEVERAL_ALBUMS) {
+            List<String> chunk = idSpotifies.subList(from, Math.min(from + CatalogBackend.MAX_SEVERAL_ALBUMS, idSpotifies.size()));
+            albums.addAll(spotifyRequestCoalescer.execute("albums:" + market + ":" + String.join(",", chunk), () -> {
+                List<AlbumModel> found = Arrays.stream(spotifyResilience.execute(() -> catalogBackend.getSeveralAlbums(getToken(), chunk, market)))
+                        .filter(Objects::nonNull)
+                        .map(AlbumMapper.INSTANCE::toModel)
+                        .peek(album -> album.setValue(albumPriceCache.price(album)))
+                        .toList();
+                localCatalog.index(found, market);
+                return found;
+            }));
+        }
+        return albums;
+    }
 
     public String getToken() throws IOException, ParseException, SpotifyWebApiException {
-        ClientCredentialsRequest clientCredentialsRequest = spotifyApi.clientCredentials().build();
-        return clientCredentialsRequest.execute().getAccessToken();
+        return spotifyTokenManager.getToken();
     }
 }
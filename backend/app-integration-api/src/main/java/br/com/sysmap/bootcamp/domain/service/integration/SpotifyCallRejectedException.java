@@ -0,0 +1,10 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.io.IOException;
+
+// The call was never sent, either the circuit is open or too many calls are already running
+public class SpotifyCallRejectedException extends IOException {
+    public SpotifyCallRejectedException(String message) {
+        super(message);
+    }
+}
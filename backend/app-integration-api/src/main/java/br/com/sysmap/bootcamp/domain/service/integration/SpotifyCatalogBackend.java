@@ -0,0 +1,64 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import com.neovisionaries.i18n.CountryCode;
+import lombok.RequiredArgsConstructor;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.credentials.ClientCredentials;
+import se.michaelthelin.spotify.model_objects.specification.Album;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.requests.data.albums.GetAlbumRequest;
+import se.michaelthelin.spotify.requests.data.albums.GetSeveralAlbumsRequest;
+import se.michaelthelin.spotify.requests.data.search.simplified.SearchAlbumsRequest;
+
+import java.io.IOException;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class SpotifyCatalogBackend implements CatalogBackend {
+
+    private final se.michaelthelin.spotify.SpotifyApi spotifyClient;
+
+    @Override
+    public ClientCredentials requestToken() throws IOException, ParseException, SpotifyWebApiException {
+        return this.spotifyClient.clientCredentials().build().execute();
+    }
+
+    // Requests carry their own token instead of setting it on the shared client
+    @Override
+    public Paging<AlbumSimplified> searchAlbums(String accessToken, String query, CountryCode market, int offset, int limit)
+            throws IOException, ParseException, SpotifyWebApiException {
+        return new SearchAlbumsRequest.Builder(accessToken)
+                .setDefaults(this.spotifyClient.getHttpManager(), this.spotifyClient.getScheme(),
+                        this.spotifyClient.getHost(), this.spotifyClient.getPort())
+                .q(query)
+                .market(market)
+                .offset(offset)
+                .limit(limit)
+                .build().execute();
+    }
+
+    @Override
+    public Album getAlbum(String accessToken, String idSpotify, CountryCode market) throws IOException, ParseException, SpotifyWebApiException {
+        return new GetAlbumRequest.Builder(accessToken)
+                .setDefaults(this.spotifyClient.getHttpManager(), this.spotifyClient.getScheme(),
+                        this.spotifyClient.getHost(), this.spotifyClient.getPort())
+                .id(idSpotify)
+                .market(market)
+                .build().execute();
+    }
+
+    @Override
+    public Album[] getSeveralAlbums(String accessToken, List<String> idSpotifies, CountryCode market)
+            throws IOException, ParseException, SpotifyWebApiException {
+        return new GetSeveralAlbumsRequest.Builder(accessToken)
+                .setDefaults(this.spotifyClient.getHttpManager(), this.spotifyClient.getScheme(),
+                        this.spotifyClient.getHost(), this.spotifyClient.getPort())
+                .ids(String.join(",", idSpotifies))
+                .market(market)
+                .build().execute();
+    }
+}
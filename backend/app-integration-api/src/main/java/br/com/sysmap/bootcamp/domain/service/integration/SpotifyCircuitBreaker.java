@@ -0,0 +1,113 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+// Count based circuit breaker: opens when too many of the last calls failed, lets a few trial calls
+// through once the open period is over and closes again when they all succeed
+public class SpotifyCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int failures;
+    private int next;
+    private long openedAt;
+    private int halfOpenStarted;
+    private int halfOpenSucceeded;
+
+    public SpotifyCircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold,
+                                 Duration openDuration, int halfOpenCalls, LongSupplier nanoTime) {
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoTime = nanoTime;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (this.state == State.OPEN) {
+            if (this.nanoTime.getAsLong() - this.openedAt < this.openNanos) {
+                return false;
+            }
+            this.state = State.HALF_OPEN;
+            this.halfOpenStarted = 0;
+            this.halfOpenSucceeded = 0;
+        }
+        if (this.state == State.HALF_OPEN) {
+            if (this.halfOpenStarted >= this.halfOpenCalls) {
+                return false;
+            }
+            this.halfOpenStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (this.state == State.HALF_OPEN) {
+            if (++this.halfOpenSucceeded >= this.halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (this.state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (this.recorded >= this.minimumCalls && this.failures * 100 >= this.failureRateThreshold * this.recorded) {
+            open();
+        }
+    }
+
+    // A call given up on without an outcome, a half open trial slot goes back for another call to take
+    public synchronized void onCancel() {
+        if (this.state == State.HALF_OPEN && this.halfOpenStarted > 0) {
+            this.halfOpenStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    private void record(boolean failed) {
+        if (this.recorded == this.outcomes.length) {
+            if (this.outcomes[this.next]) {
+                this.failures--;
+            }
+        } else {
+            this.recorded++;
+        }
+        this.outcomes[this.next] = failed;
+        if (failed) {
+            this.failures++;
+        }
+        this.next = (this.next + 1) % this.outcomes.length;
+    }
+
+    private void open() {
+        this.state = State.OPEN;
+        this.openedAt = this.nanoTime.getAsLong();
+    }
+
+    private void close() {
+        this.state = State.CLOSED;
+        this.recorded = 0;
+        this.failures = 0;
+        this.next = 0;
+    }
+}
@@ -0,0 +1,49 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Recorded Spotify responses, one file per request path and query
+public class SpotifyFixtures {
+
+    private final Path directory;
+
+    public SpotifyFixtures(Path directory) {
+        this.directory = directory;
+    }
+
+    public Optional<String> read(URI uri) throws IOException {
+        Path file = this.directory.resolve(fileName(uri));
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        return Optional.of(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    public void write(URI uri, String body) throws IOException {
+        Files.createDirectories(this.directory);
+        Files.writeString(this.directory.resolve(fileName(uri)), body, StandardCharsets.UTF_8);
+    }
+
+    // Parameters are sorted so the same request always maps to the same file, the hash keeps long queries apart
+    static String fileName(URI uri) {
+        String query = uri.getRawQuery() == null ? "" : Arrays.stream(uri.getRawQuery().split("&"))
+                .map(parameter -> URLDecoder.decode(parameter, StandardCharsets.UTF_8))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        String key = uri.getRawPath() + "?" + query;
+
+        String readable = key.replaceAll("^/", "").replaceAll("[^A-Za-z0-9=._-]+", "_");
+        if (readable.length() > 120) {
+            readable = readable.substring(0, 120);
+        }
+        return readable + "-" + String.format("%08x", key.hashCode()) + ".json";
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+public class SpotifyRequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter deduplicated;
+
+    public SpotifyRequestCoalescer(MeterRegistry meterRegistry) {
+        this.deduplicated = Counter.builder("spotify.requests.coalesced")
+                .description("Callers that waited on an identical in-flight Spotify request instead of sending their own")
+                .register(meterRegistry);
+        Gauge.builder("spotify.requests.in-flight", this.inFlight, ConcurrentMap::size).register(meterRegistry);
+    }
+
+    // The first caller for a key runs the request, callers arriving while it runs share its outcome
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, SpotifyCall<T> call) throws IOException, ParseException, SpotifyWebApiException {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            this.deduplicated.increment();
+            return (T) await(existing);
+        }
+
+        try {
+            T result = call.call();
+            created.complete(result);
+            return result;
+        } catch (Throwable e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, created);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future) throws IOException, ParseException, SpotifyWebApiException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof ParseException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof SpotifyWebApiException cause) {
+                throw cause;
+            } else if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SpotifyCall<T> {
+        T call() throws IOException, ParseException, SpotifyWebApiException;
+    }
+}
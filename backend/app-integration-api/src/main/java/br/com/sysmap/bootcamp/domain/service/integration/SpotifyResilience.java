@@ -0,0 +1,195 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Circuit breaker, bulkhead and timeout around every Spotify call. A slow Spotify costs callers at most
+// the timeout, and once it keeps failing calls are refused right away instead of piling up
+@Slf4j
+@Component
+public class SpotifyResilience {
+
+    private final SpotifyCircuitBreaker circuitBreaker;
+    private final AdaptiveTimeout adaptiveTimeout;
+    private final Semaphore bulkhead;
+    private final AsyncTaskExecutor callExecutor;
+
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+    private final Counter timeouts;
+
+    public SpotifyResilience(MeterRegistry meterRegistry,
+                             @Value("${spotify.resilience.max-concurrent-calls:24}") int maxConcurrentCalls,
+                             @Value("${spotify.resilience.circuit.sliding-window:20}") int slidingWindow,
+                             @Value("${spotify.resilience.circuit.minimum-calls:10}") int minimumCalls,
+                             @Value("${spotify.resilience.circuit.failure-rate-threshold:50}") int failureRateThreshold,
+                             @Value("${spotify.resilience.circuit.open-duration:30s}") Duration openDuration,
+                             @Value("${spotify.resilience.circuit.half-open-calls:3}") int halfOpenCalls,
+                             @Value("${spotify.resilience.timeout.percentile:0.99}") double percentile,
+                             @Value("${spotify.resilience.timeout.multiplier:1.5}") double multiplier,
+                             @Value("${spotify.resilience.timeout.min:500ms}") Duration minTimeout,
+                             @Value("${spotify.resilience.timeout.max:5s}") Duration maxTimeout,
+                             @Value("${spotify.executor.virtual-threads:false}") boolean virtualThreads) {
+        this.circuitBreaker = new SpotifyCircuitBreaker(slidingWindow, minimumCalls, failureRateThreshold,
+                openDuration, halfOpenCalls, System::nanoTime);
+        this.adaptiveTimeout = new AdaptiveTimeout(256, percentile, multiplier, minTimeout, maxTimeout);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.callExecutor = callExecutor(maxConcurrentCalls, virtualThreads);
+
+        this.circuitRejections = Counter.builder("spotify.calls.rejected").tag("reason", "circuit-open").register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("spotify.calls.rejected").tag("reason", "bulkhead-full").register(meterRegistry);
+        this.timeouts = Counter.builder("spotify.calls.timeouts").register(meterRegistry);
+        Gauge.builder("spotify.circuit.state", this.circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 closed, 1 half open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("spotify.calls.timeout", this.adaptiveTimeout, timeout -> timeout.current().toMillis())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("spotify.bulkhead.available", this.bulkhead, Semaphore::availablePermits).register(meterRegistry);
+    }
+
+    public <T> T execute(SpotifyRequestCoalescer.SpotifyCall<T> call) throws IOException, ParseException, SpotifyWebApiException {
+        if (!this.bulkhead.tryAcquire()) {
+            this.bulkheadRejections.increment();
+            throw new SpotifyCallRejectedException("Too many Spotify calls in progress");
+        }
+        if (!this.circuitBreaker.tryAcquire()) {
+            this.bulkhead.release();
+            this.circuitRejections.increment();
+            throw new SpotifyCallRejectedException("Spotify circuit is open");
+        }
+
+        // Whoever claims the call first owns its permit: the task when it starts, or the caller giving up on a task still queued
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = this.callExecutor.submit(() -> claimed.compareAndSet(false, true) ? timed(call) : null);
+        } catch (RejectedExecutionException e) {
+            this.bulkhead.release();
+            this.circuitBreaker.onCancel();
+            throw new SpotifyCallRejectedException("Spotify call executor is shut down");
+        }
+
+        Duration timeout = this.adaptiveTimeout.current();
+        try {
+            T result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            this.circuitBreaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            // A started call keeps its bulkhead permit until the HTTP client gives up on it
+            abandon(future, claimed);
+            this.timeouts.increment();
+            this.circuitBreaker.onFailure();
+            throw new SpotifyTimeoutException("Spotify didn't answer within " + timeout.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(future, claimed);
+            // Says nothing about Spotify's health, but a half open trial slot must be handed back
+            this.circuitBreaker.onCancel();
+            throw new SpotifyCallRejectedException("Interrupted while waiting for Spotify");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isCallerError(cause)) {
+                this.circuitBreaker.onSuccess();
+            } else {
+                this.circuitBreaker.onFailure();
+            }
+            rethrow(cause);
+            throw new IOException(cause);
+        }
+    }
+
+    public SpotifyCircuitBreaker.State getCircuitState() {
+        return this.circuitBreaker.getState();
+    }
+
+    public Duration getTimeout() {
+        return this.adaptiveTimeout.current();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (this.callExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (this.callExecutor instanceof SimpleAsyncTaskExecutor perCall) {
+            perCall.close();
+        }
+    }
+
+    // The call runs apart from its caller so the caller can stop waiting at the timeout. With virtual threads each call gets its own,
+    // parked while the HTTP client waits. Otherwise one platform thread per bulkhead permit, so an accepted call never waits in a queue
+    private static AsyncTaskExecutor callExecutor(int maxConcurrentCalls, boolean virtualThreads) {
+        if (virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("spotify-call-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        if (virtualThreads) {
+            log.warn("Virtual threads need Java 21, running Spotify calls on {} platform threads", maxConcurrentCalls);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("spotify-call-");
+        executor.setDaemon(true);
+        executor.setCorePoolSize(maxConcurrentCalls);
+        executor.setMaxPoolSize(maxConcurrentCalls);
+        executor.initialize();
+        return executor;
+    }
+
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        if (claimed.compareAndSet(false, true)) {
+            this.bulkhead.release();
+        }
+        future.cancel(true);
+    }
+
+    private <T> T timed(SpotifyRequestCoalescer.SpotifyCall<T> call) throws IOException, ParseException, SpotifyWebApiException {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            // Late answers are recorded too, so the timeout follows Spotify when it gets slower
+            this.adaptiveTimeout.record(Duration.ofNanos(System.nanoTime() - start));
+            return result;
+        } finally {
+            this.bulkhead.release();
+        }
+    }
+
+    // A bad request or an unknown album says nothing about Spotify's health
+    private static boolean isCallerError(Throwable error) {
+        return error instanceof BadRequestException || error instanceof NotFoundException;
+    }
+
+    private static void rethrow(Throwable cause) throws IOException, ParseException, SpotifyWebApiException {
+        if (cause instanceof IOException ioException) {
+            throw ioException;
+        } else if (cause instanceof ParseException parseException) {
+            throw parseException;
+        } else if (cause instanceof SpotifyWebApiException spotifyException) {
+            throw spotifyException;
+        } else if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (cause instanceof Error error) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import java.io.IOException;
+
+public class SpotifyTimeoutException extends IOException {
+    public SpotifyTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,132 @@
+package br.com.sysmap.bootcamp.domain.service.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.credentials.ClientCredentials;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+@Component
+public class SpotifyTokenManager {
+
+    // A token this close to its expiry is not handed out anymore
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(5);
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final CatalogBackend catalogBackend;
+    private final Duration refreshAhead;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter refreshes;
+    private final Counter refreshFailures;
+    private final Counter cacheHits;
+
+    private volatile AccessToken currentToken;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    public SpotifyTokenManager(CatalogBackend catalogBackend,
+                               MeterRegistry meterRegistry,
+                               @Value("${spotify.token.refresh-ahead:60s}") Duration refreshAhead) {
+        this.catalogBackend = catalogBackend;
+        this.refreshAhead = refreshAhead;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spotify-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshes = Counter.builder("spotify.token.refreshes").register(meterRegistry);
+        this.refreshFailures = Counter.builder("spotify.token.refresh.failures").register(meterRegistry);
+        this.cacheHits = Counter.builder("spotify.token.cache.hits").register(meterRegistry);
+    }
+
+    public String getToken() throws IOException, ParseException, SpotifyWebApiException {
+        AccessToken token = this.currentToken;
+        if (token != null && token.isUsable()) {
+            this.cacheHits.increment();
+            return token.value();
+        }
+
+        // Only one caller talks to Spotify, the others wait and reuse its token
+        this.refreshLock.lock();
+        try {
+            token = this.currentToken;
+            if (token != null && token.isUsable()) {
+                this.cacheHits.increment();
+                return token.value();
+            }
+            return refresh().value();
+        } finally {
+            this.refreshLock.unlock();
+        }
+    }
+
+    private AccessToken refresh() throws IOException, ParseException, SpotifyWebApiException {
+        ClientCredentials credentials = this.catalogBackend.requestToken();
+        Duration lifetime = Duration.ofSeconds(credentials.getExpiresIn());
+        AccessToken token = new AccessToken(credentials.getAccessToken(), Instant.now().plus(lifetime));
+
+        this.currentToken = token;
+        this.refreshes.increment();
+
+        // Short-lived tokens still get half of their lifetime before being replaced
+        Duration delay = lifetime.minus(this.refreshAhead);
+        scheduleRefresh(delay.compareTo(lifetime.dividedBy(2)) < 0 ? lifetime.dividedBy(2) : delay);
+        return token;
+    }
+
+    private synchronized void scheduleRefresh(Duration delay) {
+        if (this.scheduledRefresh != null) {
+            this.scheduledRefresh.cancel(false);
+        }
+        this.scheduledRefresh = this.scheduler.schedule(this::refreshInBackground,
+                Math.max(0, delay.toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground() {
+        // A request thread is already refreshing, it will schedule the next run
+        if (!this.refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            this.refreshFailures.increment();
+            log.warn("Couldn't refresh Spotify token in background, retrying in {}", RETRY_DELAY, e);
+
+            AccessToken token = this.currentToken;
+            if (token != null && token.isUsable()) {
+                scheduleRefresh(RETRY_DELAY);
+            }
+        } finally {
+            this.refreshLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.scheduler.shutdownNow();
+    }
+
+    private record AccessToken(String value, Instant expiresAt) {
+
+        boolean isUsable() {
+            return Instant.now().isBefore(this.expiresAt.minus(EXPIRY_MARGIN));
+        }
+    }
+}
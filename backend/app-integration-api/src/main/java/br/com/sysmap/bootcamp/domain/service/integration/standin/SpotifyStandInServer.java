@@ -0,0 +1,175 @@
+package br.com.sysmap.bootcamp.domain.service.integration.standin;
+
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyFixtures;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Speaks just enough of the Spotify Web API for the integration: token, album search and album lookup.
+// Responses come from recorded fixtures when there is one, otherwise from the synthetic catalog
+@Slf4j
+public class SpotifyStandInServer {
+
+    private final Settings settings;
+    private final SpotifyFixtures fixtures;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong issuedTokens = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private SyntheticCatalog syntheticCatalog;
+
+    public SpotifyStandInServer(Settings settings, SpotifyFixtures fixtures) {
+        this.settings = settings;
+        this.fixtures = fixtures;
+    }
+
+    public void start() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", this.settings.port()), 0);
+        this.executor = Executors.newFixedThreadPool(this.settings.threads(), runnable -> {
+            Thread thread = new Thread(runnable, "spotify-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+
+        this.syntheticCatalog = new SyntheticCatalog(this.objectMapper, "http://localhost:" + port());
+        log.info("Spotify stand-in listening on port {}", port());
+    }
+
+    public void stop() {
+        if (this.server != null) {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+        }
+    }
+
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            URI uri = exchange.getRequestURI();
+            String path = uri.getPath();
+
+            if ("POST".equals(exchange.getRequestMethod()) && "/api/token".equals(path)) {
+                respond(exchange, 200, token());
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod()) || !path.startsWith("/v1/")) {
+                respond(exchange, 404, error(404, "Not found"));
+                return;
+            }
+
+            simulateLatency();
+            if (ThreadLocalRandom.current().nextDouble() < this.settings.errorRate()) {
+                respond(exchange, this.settings.errorStatus(), error(this.settings.errorStatus(), "Injected failure"));
+                return;
+            }
+
+            Optional<String> recorded = this.fixtures == null ? Optional.empty() : this.fixtures.read(uri);
+            if (recorded.isPresent()) {
+                respond(exchange, 200, recorded.get());
+            } else if (this.settings.synthetic()) {
+                respond(exchange, 200, synthetic(path, parameters(uri)));
+            } else {
+                respond(exchange, 404, error(404, "No fixture recorded for " + uri));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String synthetic(String path, Map<String, String> parameters) throws IOException {
+        ObjectNode body;
+        if ("/v1/search".equals(path)) {
+            body = this.syntheticCatalog.search(parameters.getOrDefault("q", ""), parameters.get("market"),
+                    Integer.parseInt(parameters.getOrDefault("offset", "0")),
+                    Integer.parseInt(parameters.getOrDefault("limit", "20")));
+        } else if ("/v1/albums".equals(path)) {
+            body = this.objectMapper.createObjectNode();
+            ArrayNode albums = body.putArray("albums");
+            for (String idSpotify : parameters.getOrDefault("ids", "").split(",")) {
+                albums.add(this.syntheticCatalog.album(idSpotify, parameters.get("market")));
+            }
+        } else if (path.startsWith("/v1/albums/")) {
+            body = this.syntheticCatalog.album(path.substring("/v1/albums/".length()), parameters.get("market"));
+        } else {
+            return error(404, "Not found");
+        }
+        return this.objectMapper.writeValueAsString(body);
+    }
+
+    private String token() throws IOException {
+        ObjectNode token = this.objectMapper.createObjectNode();
+        token.put("access_token", "stand-in-" + this.issuedTokens.incrementAndGet());
+        token.put("token_type", "Bearer");
+        token.put("expires_in", this.settings.tokenLifetime().toSeconds());
+        return this.objectMapper.writeValueAsString(token);
+    }
+
+    private String error(int status, String message) throws IOException {
+        ObjectNode error = this.objectMapper.createObjectNode();
+        error.putObject("error").put("status", status).put("message", message);
+        return this.objectMapper.writeValueAsString(error);
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        long latency = this.settings.latency().toMillis();
+        long jitter = this.settings.latencyJitter().toMillis();
+        if (jitter > 0) {
+            latency += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+    }
+
+    private static Map<String, String> parameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        if (uri.getRawQuery() != null) {
+            for (String parameter : uri.getRawQuery().split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                        pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public record Settings(int port, int threads, Duration latency, Duration latencyJitter,
+                           double errorRate, int errorStatus, Duration tokenLifetime, boolean synthetic) {
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.sysmap.bootcamp.domain.service.integration.standin;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Generates Spotify-shaped album payloads, the same request always gets the same albums
+public class SyntheticCatalog {
+
+    private static final String[] ALBUM_TYPES = {"album", "album", "single", "compilation"};
+    private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+
+    public SyntheticCatalog(ObjectMapper objectMapper, String baseUrl) {
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl;
+    }
+
+    public ObjectNode search(String query, String market, int offset, int limit) {
+        int total = 200 + Math.floorMod(query.hashCode(), 800);
+        int count = Math.max(0, Math.min(limit, total - offset));
+
+        ArrayNode items = this.objectMapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            int position = offset + i;
+            items.add(album(id(query + "#" + position), query + " vol. " + (position + 1), position, market));
+        }
+
+        String page = this.baseUrl + "/v1/search?type=album&q=" + query.replace(' ', '+') + "&limit=" + limit;
+        ObjectNode paging = this.objectMapper.createObjectNode();
+        paging.put("href", page + "&offset=" + offset);
+        paging.set("items", items);
+        paging.put("limit", limit);
+        paging.put("next", offset + count < total ? page + "&offset=" + (offset + count) : null);
+        paging.put("offset", offset);
+        paging.put("previous", offset > 0 ? page + "&offset=" + Math.max(0, offset - limit) : null);
+        paging.put("total", total);
+
+        ObjectNode response = this.objectMapper.createObjectNode();
+        response.set("albums", paging);
+        return response;
+    }
+
+    public ObjectNode album(String idSpotify, String market) {
+        ObjectNode album = album(idSpotify, "Album " + idSpotify, Math.floorMod(idSpotify.hashCode(), 64), market);
+        album.put("label", "Stand-in Records");
+        album.put("popularity", Math.floorMod(idSpotify.hashCode(), 100));
+        album.set("genres", this.objectMapper.createArrayNode());
+        return album;
+    }
+
+    private ObjectNode album(String idSpotify, String name, int position, String market) {
+        String artistId = id(name.split(" vol\\. ")[0]);
+
+        ObjectNode artist = this.objectMapper.createObjectNode();
+        artist.putObject("external_urls").put("spotify", "https://open.spotify.com/artist/" + artistId);
+        artist.put("href", this.baseUrl + "/v1/artists/" + artistId);
+        artist.put("id", artistId);
+        artist.put("name", "Artist " + artistId.substring(0, 6));
+        artist.put("type", "artist");
+        artist.put("uri", "spotify:artist:" + artistId);
+
+        ObjectNode image = this.objectMapper.createObjectNode();
+        image.put("height", 640);
+        image.put("url", "https://picsum.photos/seed/" + idSpotify + "/640");
+        image.put("width", 640);
+
+        ObjectNode album = this.objectMapper.createObjectNode();
+        album.put("album_type", ALBUM_TYPES[position % ALBUM_TYPES.length]);
+        album.putArray("artists").add(artist);
+        album.putArray("available_markets").add(market == null ? "BR" : market);
+        album.putObject("external_urls").put("spotify", "https://open.spotify.com/album/" + idSpotify);
+        album.put("href", this.baseUrl + "/v1/albums/" + idSpotify);
+        album.put("id", idSpotify);
+        album.putArray("images").add(image);
+        album.put("name", name);
+        album.put("release_date", String.valueOf(1960 + position % 64));
+        album.put("release_date_precision", "year");
+        album.put("total_tracks", 8 + position % 10);
+        album.put("type", "album");
+        album.put("uri", "spotify:album:" + idSpotify);
+        return album;
+    }
+
+    // 22 base62 characters, the same shape as real Spotify ids
+    static String id(String seed) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < seed.length(); i++) {
+            hash ^= seed.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        char[] id = new char[22];
+        for (int i = 0; i < id.length; i++) {
+            hash ^= hash >>> 29;
+            hash *= 0xbf58476d1ce4e5b9L;
+            id[i] = BASE62[(int) Math.floorMod(hash >>> 7, BASE62.length)];
+        }
+        return new String(id);
+    }
+}
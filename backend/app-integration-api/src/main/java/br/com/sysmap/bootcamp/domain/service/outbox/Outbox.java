@@ -0,0 +1,39 @@
+package br.com.sysmap.bootcamp.domain.service.outbox;
+
+import br.com.sysmap.bootcamp.domain.entities.OutboxMessage;
+import br.com.sysmap.bootcamp.domain.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+// Queues a message for OutboxRelay, it's only published if the caller's transaction commits
+@Service
+@RequiredArgsConstructor
+public class Outbox {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final MessageConverter messageConverter;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String queue, Object payload) {
+        enqueue(null, queue, payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String exchange, String routingKey, Object payload) {
+        Message message = this.messageConverter.toMessage(payload, new MessageProperties());
+        this.outboxMessageRepository.save(OutboxMessage.builder()
+                .exchange(exchange)
+                .queue(routingKey)
+                .contentType(message.getMessageProperties().getContentType())
+                .body(message.getBody())
+                .createdAt(Instant.now())
+                .build());
+    }
+}
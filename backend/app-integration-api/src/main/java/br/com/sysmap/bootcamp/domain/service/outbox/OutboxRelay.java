@@ -0,0 +1,96 @@
+package br.com.sysmap.bootcamp.domain.service.outbox;
+
+import br.com.sysmap.bootcamp.common.messaging.PublisherConfirms;
+import br.com.sysmap.bootcamp.domain.entities.OutboxMessage;
+import br.com.sysmap.bootcamp.domain.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// Drains OUTBOX_MESSAGE in batches, a batch is deleted only once the broker confirmed all of it.
+// A crash between the confirm and the delete publishes the batch again, consumers must tolerate duplicates
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter published;
+    private final int batchSize;
+    private final Duration confirmTimeout;
+
+    public OutboxRelay(OutboxMessageRepository outboxMessageRepository,
+                       RabbitTemplate rabbitTemplate,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${outbox.relay.confirm-timeout:5s}") Duration confirmTimeout) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.confirmTimeout = confirmTimeout;
+        this.published = Counter.builder("outbox.relay.published")
+                .description("Outbox messages confirmed by the broker")
+                .register(meterRegistry);
+    }
+
+    // Keeps going while batches come back full, a backlog is drained in one run
+    @Scheduled(fixedDelayString = "${outbox.relay.interval:PT0.2S}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = this.transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed == this.batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't relay outbox messages, they'll be retried", e);
+        }
+    }
+
+    private int relayBatch() {
+        List<OutboxMessage> batch = this.outboxMessageRepository.findByOrderByIdAsc(Limit.of(this.batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        // One channel keeps the batch in order, the broker confirms it while it's being sent and the relay waits once at the end
+        List<CorrelationData> confirms = new ArrayList<>(batch.size());
+        this.rabbitTemplate.invoke(operations -> {
+            for (OutboxMessage outboxMessage : batch) {
+                String exchange = outboxMessage.getExchange() == null ? "" : outboxMessage.getExchange();
+                CorrelationData correlation = new CorrelationData("outbox-" + outboxMessage.getId());
+                operations.send(exchange, outboxMessage.getQueue(), toMessage(outboxMessage), correlation);
+                confirms.add(correlation);
+            }
+            return null;
+        });
+        PublisherConfirms.await(confirms, this.confirmTimeout);
+        this.outboxMessageRepository.deleteAllInBatch(batch);
+        this.published.increment(batch.size());
+        return batch.size();
+    }
+
+    private static Message toMessage(OutboxMessage outboxMessage) {
+        return MessageBuilder.withBody(outboxMessage.getBody())
+                .setContentType(outboxMessage.getContentType())
+                .setMessageId("outbox-" + outboxMessage.getId())
+                // Consumers measure their lag from when the change was written, not from when it was relayed
+                .setTimestamp(Date.from(outboxMessage.getCreatedAt()))
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package br.com.sysmap.bootcamp.domain.service.pricing;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+@Component
+public class AlbumPriceCache {
+
+    private final AlbumPricingEngine albumPricingEngine;
+    private final Cache<String, BigDecimal> prices;
+
+    public AlbumPriceCache(AlbumPricingEngine albumPricingEngine,
+                           MeterRegistry meterRegistry,
+                           @Value("${pricing.cache.max-size:100000}") long maxSize,
+                           @Value("${pricing.cache.expire-after-access:24h}") Duration expireAfterAccess) {
+        this.albumPricingEngine = albumPricingEngine;
+        this.prices = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, this.prices, "albumPrice");
+    }
+
+    public BigDecimal price(AlbumModel album) {
+        return this.prices.get(album.getId(), id -> this.albumPricingEngine.price(album));
+    }
+
+    // Price quoted for an album that was shown to a client, empty once it was evicted
+    public Optional<BigDecimal> quotedPrice(String idSpotify) {
+        return Optional.ofNullable(this.prices.getIfPresent(idSpotify));
+    }
+}
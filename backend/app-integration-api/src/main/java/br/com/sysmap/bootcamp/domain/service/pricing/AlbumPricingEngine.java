@@ -0,0 +1,11 @@
+package br.com.sysmap.bootcamp.domain.service.pricing;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+
+import java.math.BigDecimal;
+
+// Implementations must return the same price for the same album on every call
+public interface AlbumPricingEngine {
+
+    BigDecimal price(AlbumModel album);
+}
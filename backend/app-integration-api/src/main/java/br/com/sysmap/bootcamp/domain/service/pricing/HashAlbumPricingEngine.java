@@ -0,0 +1,80 @@
+package br.com.sysmap.bootcamp.domain.service.pricing;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.math.BigDecimal;
+
+@Component
+public class HashAlbumPricingEngine implements AlbumPricingEngine {
+
+    private final long seed;
+    private final long minCents;
+    private final long rangeCents;
+    private final int classicBeforeYear;
+
+    public HashAlbumPricingEngine(@Value("${pricing.seed:2024}") long seed,
+                                  @Value("${pricing.base-min:12.00}") BigDecimal baseMin,
+                                  @Value("${pricing.base-max:100.00}") BigDecimal baseMax,
+                                  @Value("${pricing.classic-before-year:1990}") int classicBeforeYear) {
+        if (baseMin.compareTo(baseMax) > 0) {
+            throw new IllegalArgumentException("pricing.base-min must not be greater than pricing.base-max");
+        }
+        this.seed = seed;
+        this.minCents = baseMin.movePointRight(2).longValueExact();
+        this.rangeCents = baseMax.movePointRight(2).longValueExact() - this.minCents;
+        this.classicBeforeYear = classicBeforeYear;
+    }
+
+    @Override
+    public BigDecimal price(AlbumModel album) {
+        long cents = this.minCents + Math.floorMod(hash(album.getId()), this.rangeCents + 1);
+        cents = cents * typePercent(album.getAlbumType()) / 100;
+        if (isClassic(album.getReleaseDate())) {
+            cents = cents * 115 / 100;
+        }
+        return BigDecimal.valueOf(Math.max(cents, this.minCents), 2);
+    }
+
+    private static int typePercent(AlbumType albumType) {
+        if (albumType == AlbumType.SINGLE) {
+            return 60;
+        } else if (albumType == AlbumType.COMPILATION) {
+            return 85;
+        }
+        return 100;
+    }
+
+    // Spotify release dates are "yyyy", "yyyy-MM" or "yyyy-MM-dd" depending on their precision
+    private boolean isClassic(String releaseDate) {
+        if (releaseDate == null || releaseDate.length() < 4) {
+            return false;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char digit = releaseDate.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return false;
+            }
+            year = year * 10 + (digit - '0');
+        }
+        return year < this.classicBeforeYear;
+    }
+
+    // FNV-1a over the id followed by a murmur3 finalizer, so close ids still land far apart
+    private long hash(String idSpotify) {
+        long hash = 0xcbf29ce484222325L ^ this.seed;
+        for (int i = 0; i < idSpotify.length(); i++) {
+            hash ^= idSpotify.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
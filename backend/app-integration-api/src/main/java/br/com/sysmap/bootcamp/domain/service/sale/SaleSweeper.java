@@ -0,0 +1,155 @@
+package br.com.sysmap.bootcamp.domain.service.sale;
+
+import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
+import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
+import br.com.sysmap.bootcamp.domain.service.outbox.Outbox;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Picks up PROCESSING sales whose debit confirmation never came. The debit is sent again with the same sale or cart id,
+// which the wallet answers without charging twice. After max-attempts the wallet is asked to cancel the debit instead:
+// it rejects the sale from then on unless it already charged it, and its answer completes or cancels the sale.
+// A sale is never canceled here while a debit of it may still be applied
+@Slf4j
+@Component
+public class SaleSweeper {
+
+    private static final String WALLET_DEBIT_EXCHANGE = "WalletDebitExchange";
+
+    private final AlbumRepository albumRepository;
+    private final Outbox outbox;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter resent;
+    private final Counter expired;
+    private final Counter abandoned;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration debitTimeout;
+
+    public SaleSweeper(AlbumRepository albumRepository,
+                       Outbox outbox,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${sale.sweeper.batch-size:500}") int batchSize,
+                       @Value("${sale.sweeper.max-attempts:3}") int maxAttempts,
+                       @Value("${sale.debit-timeout:PT2M}") Duration debitTimeout) {
+        this.albumRepository = albumRepository;
+        this.outbox = outbox;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.debitTimeout = debitTimeout;
+        this.resent = Counter.builder("sales.sweeper.resent")
+                .description("Wallet debits sent again for sales past their deadline")
+                .register(meterRegistry);
+        this.expired = Counter.builder("sales.sweeper.expired")
+                .description("Debit cancellations sent for sales whose last debit attempt went unanswered")
+                .register(meterRegistry);
+        this.abandoned = Counter.builder("sales.sweeper.abandoned")
+                .description("Sales from before sale ids canceled after their grace period")
+                .register(meterRegistry);
+        Gauge.builder("sales.in-flight", this.inFlight, AtomicLong::get)
+                .description("Sales waiting for their debit confirmation")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${sale.sweeper.interval:PT30S}", fixedDelayString = "${sale.sweeper.interval:PT30S}")
+    public void sweep() {
+        try {
+            Integer swept;
+            do {
+                swept = this.transactionTemplate.execute(status -> sweepBatch(Instant.now()));
+            } while (swept != null && swept == this.batchSize);
+            this.inFlight.set(this.albumRepository.countBySaleStatus(SaleStatus.PROCESSING));
+        } catch (RuntimeException e) {
+            log.warn("Couldn't sweep the sales past their deadline", e);
+        }
+    }
+
+    // Every sale handled here leaves the deadline range, the rest get a new deadline to wait for the wallet's answer
+    private int sweepBatch(Instant now) {
+        List<Album> stale = this.albumRepository.findBySaleStatusAndDeadlineBeforeOrderByDeadline(
+                SaleStatus.PROCESSING, now, Limit.of(this.batchSize));
+
+        List<Long> retried = new ArrayList<>();
+        List<Long> canceled = new ArrayList<>();
+        Set<UUID> carts = new LinkedHashSet<>();
+        int cancellations = 0;
+        for (Album sale : stale) {
+            if (sale.getCartId() != null) {
+                carts.add(sale.getCartId());
+            } else if (sale.getSaleId() == null) {
+                // The wallet can't tell these apart to cancel them, their grace period is all they get
+                canceled.add(sale.getId());
+            } else {
+                boolean exhausted = isExhausted(sale);
+                this.outbox.enqueue(WALLET_DEBIT_EXCHANGE, sale.getUsers().getEmail(), WalletDebitDto.builder()
+                        .email(sale.getUsers().getEmail())
+                        .value(sale.getValue())
+                        .idSpotify(sale.getIdSpotify())
+                        .saleId(sale.getSaleId())
+                        .cancel(exhausted ? Boolean.TRUE : null)
+                        .build());
+                retried.add(sale.getId());
+                cancellations += exhausted ? 1 : 0;
+            }
+        }
+        // A cart is debited for its whole total, even when only part of it came in this batch
+        for (UUID cartId : carts) {
+            List<Album> cart = this.albumRepository.findByCartIdAndSaleStatus(cartId, SaleStatus.PROCESSING);
+            if (cart.isEmpty()) {
+                continue;
+            }
+            boolean exhausted = isExhausted(cart.get(0));
+            this.outbox.enqueue(WALLET_DEBIT_EXCHANGE, cart.get(0).getUsers().getEmail(), WalletDebitDto.builder()
+                    .email(cart.get(0).getUsers().getEmail())
+                    .value(cart.stream().map(Album::getValue).reduce(BigDecimal.ZERO, BigDecimal::add))
+                    .cartId(cartId)
+                    .albumCount(cart.size())
+                    .cancel(exhausted ? Boolean.TRUE : null)
+                    .build());
+            cart.forEach(sale -> retried.add(sale.getId()));
+            cancellations += exhausted ? 1 : 0;
+        }
+
+        if (!retried.isEmpty()) {
+            this.albumRepository.retryDebit(retried, SaleStatus.PROCESSING, now.plus(this.debitTimeout));
+            this.resent.increment(retried.size());
+        }
+        if (cancellations > 0) {
+            this.expired.increment(cancellations);
+            log.warn("Asked the wallet to cancel the debit of {} sales that never got a confirmation", cancellations);
+        }
+        if (!canceled.isEmpty()) {
+            int updated = this.albumRepository.updateSaleStatus(canceled, SaleStatus.PROCESSING, SaleStatus.CANCELED);
+            this.abandoned.increment(updated);
+            log.warn("Canceled {} sales from before sale ids that never got a debit confirmation", updated);
+        }
+        return stale.size();
+    }
+
+    // Cancellations are sent again every deadline too, until the wallet's answer settles the sale
+    private boolean isExhausted(Album sale) {
+        return sale.getDebitAttempts() == null || sale.getDebitAttempts() >= this.maxAttempts;
+    }
+}
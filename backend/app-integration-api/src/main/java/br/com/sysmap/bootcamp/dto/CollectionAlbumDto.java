@@ -0,0 +1,29 @@
+package br.com.sysmap.bootcamp.dto;
+
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class CollectionAlbumDto implements Serializable {
+
+    private Long id;
+
+    private String name;
+
+    private String idSpotify;
+
+    private String artistName;
+
+    private String imageUrl;
+
+    private BigDecimal value;
+
+    private SaleStatus saleStatus;
+}
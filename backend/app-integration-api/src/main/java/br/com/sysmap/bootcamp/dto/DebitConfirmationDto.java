@@ -3,6 +3,7 @@ package br.com.sysmap.bootcamp.dto;
 import lombok.*;
 
 import java.io.Serializable;
+import java.util.UUID;
 
 @Getter
 @Setter
@@ -10,7 +11,12 @@ import java.io.Serializable;
 @AllArgsConstructor
 @NoArgsConstructor
 public class DebitConfirmationDto implements Serializable {
+    // Pinned to the value computed before saleId and cartId were added, so confirmations queued by an older release still deserialize
+    private static final long serialVersionUID = -6267583478783953089L;
+
     private String userEmail;
     private String idSpotify;
     private Boolean isDebitConfirmed;
+    private UUID saleId;
+    private UUID cartId;
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package br.com.sysmap.bootcamp.errors;
+
+public class InvalidAlbumPriceException extends RuntimeException{
+    public InvalidAlbumPriceException(String message) {
+        super(message);
+    }
+}
@@ -1,45 +1,130 @@
 package br.com.sysmap.bootcamp.web;
 
 import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionPage;
 import br.com.sysmap.bootcamp.domain.service.AlbumService;
+import br.com.sysmap.bootcamp.common.idempotency.IdempotencyStore;
+import br.com.sysmap.bootcamp.domain.service.integration.SearchQueries;
 import br.com.sysmap.bootcamp.errors.*;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-@CrossOrigin(origins = "*")
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Total-Count", "X-Total-Value", "X-Next-Offset", "X-Next-Cursor", IdempotencyStore.REPLAYED_HEADER})
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/albums")
 @Slf4j
 public class AlbumController {
     private final AlbumService albumService;
+    private final IdempotencyStore idempotencyStore;
 
     @Operation(summary = "Get all albums")
     @GetMapping("/all")
-    public ResponseEntity<Object> getAlbums(@RequestParam("search") String search){
+    public ResponseEntity<Object> getAlbums(@RequestParam("search") String search,
+                                            @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                            @RequestParam(value = "limit", defaultValue = "30") int limit){
         try {
-            return ResponseEntity.status(HttpStatus.OK).body(this.albumService.getAlbums(search));
+            AlbumPage page = this.albumService.getAlbums(search, offset, limit);
+            return ResponseEntity.status(HttpStatus.OK).headers(pageHeaders(page)).body(page.getItems());
         } catch (InvalidParameterException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Search parameter is required");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (UnavailableSpotifyApiException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Coudn't fetch albums from Spotify API");
         }
     }
 
+    @Operation(summary = "Stream albums as NDJSON, page by page")
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAlbums(@RequestParam("search") String search,
+                                                              @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                              @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                              @RequestParam(value = "maxItems", defaultValue = "1000") int maxItems) {
+        if (!SearchQueries.isValidMaxItems(maxItems)) {
+            return message(HttpStatus.BAD_REQUEST, "maxItems must be between 1 and " + SearchQueries.MAX_ITEMS);
+        }
+        // The first page is fetched up front so errors still get a proper status
+        AlbumPage firstPage;
+        try {
+            firstPage = this.albumService.getAlbums(search, offset, limit);
+        } catch (InvalidParameterException e) {
+            return message(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (UnavailableSpotifyApiException e) {
+            return message(HttpStatus.INTERNAL_SERVER_ERROR, "Coudn't fetch albums from Spotify API");
+        }
+
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .headers(pageHeaders(firstPage))
+                .body(out -> {
+                    try {
+                        this.albumService.writeAlbums(search, firstPage, maxItems, out);
+                    } catch (UnavailableSpotifyApiException e) {
+                        log.warn("Album stream for '{}' ended early, Spotify API unavailable", search);
+                    }
+                });
+    }
+
+    @Operation(summary = "Get albums from several markets")
+    @GetMapping("/all/markets")
+    public CompletableFuture<ResponseEntity<Object>> getAlbumsFromMarkets(@RequestParam("search") String search,
+                                                                          @RequestParam("markets") List<String> markets) {
+        try {
+            return this.albumService.getAlbums(search, markets)
+                    .<ResponseEntity<Object>>thenApply(albums -> ResponseEntity.status(HttpStatus.OK).body(albums))
+                    .exceptionally(e -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Coudn't fetch albums from Spotify API"));
+        } catch (InvalidParameterException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage()));
+        } catch (UnavailableSpotifyApiException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Coudn't fetch albums from Spotify API"));
+        }
+    }
+
+    private HttpHeaders pageHeaders(AlbumPage page) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Total-Count", String.valueOf(page.getTotal()));
+        if (page.getNextOffset() != null) {
+            headers.add("X-Next-Offset", String.valueOf(page.getNextOffset()));
+        }
+        return headers;
+    }
+
+    private ResponseEntity<StreamingResponseBody> message(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Operation(summary = "Sale album")
     @PostMapping("/sale")
-    public ResponseEntity<Object> saveAlbum(@RequestBody Album album) {
+    public ResponseEntity<Object> saveAlbum(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                            @RequestBody Album album) {
+        return this.idempotencyStore.execute("album-sale", idempotencyKey, album, () -> sale(album));
+    }
+
+    private ResponseEntity<Object> sale(Album album) {
         try {
             return ResponseEntity.status(HttpStatus.OK).body(this.albumService.albumSale(album));
         } catch (DuplicateAlbumException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Album already bought");
         } catch (MissingAlbumFieldsException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Missing album fields");
+        } catch (InvalidAlbumPriceException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid album price");
+        } catch (UnavailableSpotifyApiException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Coudn't fetch album from Spotify API");
         } catch (UserNotFoundException e){
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("User not found");
         } catch(WalletDebitException e) {
@@ -47,11 +132,48 @@ public class AlbumController {
         }
     }
 
-    @Operation(summary = "Get user albums")
+    @Operation(summary = "Buy every album of a cart with a single wallet debit")
+    @PostMapping("/sale/cart")
+    public ResponseEntity<Object> saveCart(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                           @RequestBody List<Album> albums) {
+        return this.idempotencyStore.execute("cart-sale", idempotencyKey, albums, () -> cartSale(albums));
+    }
+
+    private ResponseEntity<Object> cartSale(List<Album> albums) {
+        try {
+            return ResponseEntity.status(HttpStatus.OK).body(this.albumService.cartSale(albums));
+        } catch (InvalidParameterException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (DuplicateAlbumException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Album already bought");
+        } catch (MissingAlbumFieldsException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Missing album fields");
+        } catch (InvalidAlbumPriceException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid album price");
+        } catch (UnavailableSpotifyApiException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Coudn't fetch album from Spotify API");
+        } catch (UserNotFoundException e){
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("User not found");
+        }
+    }
+
+    @Operation(summary = "Get user albums, page by page")
     @GetMapping("/my-collection")
-    public ResponseEntity<Object> getUserAlbums(){
+    public ResponseEntity<Object> getUserAlbums(@RequestParam(value = "after", required = false) Long after,
+                                                @RequestParam(value = "limit", defaultValue = "50") int limit){
         try {
-            return ResponseEntity.status(HttpStatus.OK).body(this.albumService.getUserAlbums());
+            CollectionPage page = this.albumService.getUserAlbums(after, limit);
+            HttpHeaders headers = new HttpHeaders();
+            if (page.getNextCursor() != null) {
+                headers.add("X-Next-Cursor", String.valueOf(page.getNextCursor()));
+            }
+            if (page.getTotals() != null) {
+                headers.add("X-Total-Count", String.valueOf(page.getTotals().albums()));
+                headers.add("X-Total-Value", page.getTotals().value().toPlainString());
+            }
+            return ResponseEntity.status(HttpStatus.OK).headers(headers).body(page.getItems());
+        } catch (InvalidParameterException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("User not found");
         }
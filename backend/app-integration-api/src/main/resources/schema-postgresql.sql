@@ -0,0 +1,10 @@
+-- Runs after Hibernate created the tables (spring.jpa.defer-datasource-initialization)
+CREATE UNIQUE INDEX IF NOT EXISTS UX_ALBUM_ACTIVE_SALE ON ALBUM (ID_USER, ID_SPOTIFY)
+    WHERE SALE_STATUS IN ('PROCESSING', 'COMPLETED');
+
+-- ALBUM ids came from an identity column before ALBUM_SEQ, the sequence never goes back below them
+SELECT setval('ALBUM_SEQ', GREATEST((SELECT last_value FROM ALBUM_SEQ), (SELECT COALESCE(MAX(ID), 0) FROM ALBUM) + 50));
+
+-- PROCESSING sales from before deadlines existed. Without a sale id the wallet can't cancel their debit, so SaleSweeper
+-- cancels them itself, only after a day in which a debit still queued for them is applied and confirmed
+UPDATE ALBUM SET DEADLINE = CURRENT_TIMESTAMP + INTERVAL '1 day', DEBIT_ATTEMPTS = 1 WHERE SALE_STATUS = 'PROCESSING' AND DEADLINE IS NULL;
@@ -0,0 +1,74 @@
+package br.com.sysmap.bootcamp.benchmark;
+
+import br.com.sysmap.bootcamp.domain.service.catalog.AlbumIndex;
+import br.com.sysmap.bootcamp.domain.service.catalog.IndexedAlbum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Searches a 50 000 album index by artist, spelled right and with a typo. Each should stay well under a millisecond
+// Run main from the IDE, or org.openjdk.jmh.Main on the test classpath after mvn test-compile
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlbumIndexBenchmark {
+
+    private AlbumIndex index;
+    private String[] artists;
+    private String[] typos;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        String[] words = new String[20_000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = word(random);
+        }
+        artists = new String[2000];
+        typos = new String[artists.length];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = word(random) + " " + word(random);
+            typos[i] = artists[i].charAt(0) + "z" + artists[i].substring(2);
+        }
+        index = new AlbumIndex(100_000, 5000);
+        for (int i = 0; i < 50_000; i++) {
+            String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            index.add(new IndexedAlbum(String.valueOf(i), name, artists[i % artists.length],
+                    "https://i.scdn.co/image/" + i, "19" + (10 + i % 90), AlbumType.ALBUM));
+        }
+    }
+
+    @Benchmark
+    public Optional<AlbumIndex.Matches> exact() {
+        return index.search(artists[next++ % artists.length], 30);
+    }
+
+    @Benchmark
+    public Optional<AlbumIndex.Matches> typo() {
+        return index.search(typos[next++ % typos.length], 30);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 4 + random.nextInt(6); i > 0; i--) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AlbumIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
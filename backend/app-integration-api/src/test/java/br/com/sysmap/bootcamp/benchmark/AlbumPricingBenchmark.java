@@ -0,0 +1,74 @@
+package br.com.sysmap.bootcamp.benchmark;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
+import br.com.sysmap.bootcamp.domain.service.pricing.HashAlbumPricingEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Prices one page of search results, the scores are per album
+// Run main from the IDE, or org.openjdk.jmh.Main on the test classpath after mvn test-compile
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlbumPricingBenchmark {
+
+    private static final int PAGE_SIZE = 30;
+
+    private HashAlbumPricingEngine engine;
+    private AlbumPriceCache priceCache;
+    private List<AlbumModel> page;
+
+    @Setup
+    public void setUp() {
+        engine = new HashAlbumPricingEngine(2024, new BigDecimal("12.00"), new BigDecimal("100.00"), 1990);
+        priceCache = new AlbumPriceCache(engine, new SimpleMeterRegistry(), 100_000, Duration.ofHours(24));
+
+        AlbumType[] types = AlbumType.values();
+        page = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            AlbumModel album = new AlbumModel();
+            album.setId(UUID.randomUUID().toString().replace("-", "").substring(0, 22));
+            album.setAlbumType(types[i % types.length]);
+            album.setReleaseDate((1970 + i) + "-01-01");
+            page.add(album);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void engine(Blackhole blackhole) {
+        for (AlbumModel album : page) {
+            blackhole.consume(engine.price(album));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public void cached(Blackhole blackhole) {
+        for (AlbumModel album : page) {
+            blackhole.consume(priceCache.price(album));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AlbumPricingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,80 @@
+package br.com.sysmap.bootcamp.benchmark;
+
+import br.com.sysmap.bootcamp.config.RabbitConfig;
+import br.com.sysmap.bootcamp.common.messaging.VersionedJsonMessageConverter;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Encodes and decodes one wallet debit with the versioned JSON codec and with the Java serialization it replaced.
+// Run main from the IDE, or org.openjdk.jmh.Main on the test classpath after mvn test-compile. encode also reports the payload size as encode:bytes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"json", "java"})
+    public String codec;
+
+    private VersionedJsonMessageConverter converter;
+    private WalletDebitDto walletDebitDto;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        converter = converter(codec);
+        walletDebitDto = walletDebit();
+        message = converter.toMessage(walletDebitDto, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message encode(Payload payload) {
+        Message encoded = converter.toMessage(walletDebitDto, new MessageProperties());
+        payload.bytes = encoded.getBody().length;
+        return encoded;
+    }
+
+    @Benchmark
+    public Object decode() {
+        return converter.fromMessage(message);
+    }
+
+    // Size of the last encoded body, an events counter is summed rather than divided by time, so with one thread it is the size itself
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+
+        public long bytes;
+    }
+
+    private static VersionedJsonMessageConverter converter(String codec) {
+        return new RabbitConfig().converter(new ObjectMapper(), "java".equals(codec));
+    }
+
+    private static WalletDebitDto walletDebit() {
+        return WalletDebitDto.builder()
+                .email("benchmark@email.com")
+                .value(new BigDecimal("42.90"))
+                .idSpotify("4aawyAB9vmqN3uQ7FjRGTy")
+                .saleId(UUID.randomUUID())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
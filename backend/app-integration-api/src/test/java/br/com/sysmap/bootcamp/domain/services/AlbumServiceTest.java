@@ -2,31 +2,51 @@ package br.com.sysmap.bootcamp.domain.services;
 
 import br.com.sysmap.bootcamp.domain.entities.Album;
 import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
 import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionTotals;
 import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
 import br.com.sysmap.bootcamp.domain.repository.UserRepository;
 import br.com.sysmap.bootcamp.domain.service.AlbumService;
 import br.com.sysmap.bootcamp.domain.service.integration.SpotifyApi;
+import br.com.sysmap.bootcamp.domain.service.outbox.Outbox;
+import br.com.sysmap.bootcamp.dto.CollectionAlbumDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
 import br.com.sysmap.bootcamp.errors.*;
+import com.neovisionaries.i18n.CountryCode;
 import org.apache.hc.core5.http.ParseException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 // ALL TESTS PASSINGS
@@ -42,6 +62,12 @@ class AlbumServiceTest {
     @MockBean
     private UserRepository usersRepository;
 
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @MockBean
+    private Outbox outbox;
+
     @Autowired
     private AlbumService albumService;
 
@@ -50,12 +76,12 @@ class AlbumServiceTest {
     public void shouldReturnAlbumModelListFromSearch() throws IOException, SpotifyWebApiException, ParseException {
         String search = "test";
         List<AlbumModel> expectedAlbums = Collections.singletonList(new AlbumModel());
-        when(spotifyApi.getAlbums(search)).thenReturn(expectedAlbums);
+        when(spotifyApi.getAlbums(search, CountryCode.BR, 0, 30)).thenReturn(page(expectedAlbums, null));
 
-        List<AlbumModel> actualAlbums = albumService.getAlbums(search);
+        List<AlbumModel> actualAlbums = albumService.getAlbums(search, 0, 30).getItems();
 
         assertEquals(expectedAlbums, actualAlbums);
-        verify(spotifyApi).getAlbums(search);
+        verify(spotifyApi).getAlbums(search, CountryCode.BR, 0, 30);
     }
 
     @Test
@@ -63,38 +89,80 @@ class AlbumServiceTest {
     public void shouldReturnInvalidParameterExceptionFromEmptySearch() throws IOException, SpotifyWebApiException, ParseException {
         String search = "";
 
-        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums(search));
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums(search, 0, 30));
+    }
+
+    @Test
+    @DisplayName("Should invalid parameter exception from page out of spotify limits")
+    public void shouldReturnInvalidParameterExceptionFromInvalidPage() {
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums("test", -1, 30));
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums("test", 0, 51));
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums("test", 1001, 30));
+    }
+
+    @Test
+    @DisplayName("Should write every page as NDJSON")
+    public void shouldWriteEveryPageAsNdjson() throws Exception {
+        AlbumPage firstPage = page(List.of(albumModel("1"), albumModel("2")), 2);
+        when(spotifyApi.getAlbums("stream", CountryCode.BR, 2, 2)).thenReturn(page(List.of(albumModel("3"), albumModel("4")), 4));
+        when(spotifyApi.getAlbums("stream", CountryCode.BR, 4, 2)).thenReturn(page(List.of(albumModel("5")), null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        albumService.writeAlbums("stream", firstPage, 4, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].contains("\"id\":\"1\""));
+        assertTrue(lines[3].contains("\"id\":\"4\""));
+        verify(spotifyApi, never()).getAlbums("stream", CountryCode.BR, 4, 2);
     }
 
     @Test
     @DisplayName("Should unavailable spotify api exception from spotify integration")
     public void shouldReturnUnavailableSpotifyApiException() throws IOException, SpotifyWebApiException, ParseException {
         String search = "a";
-        when(spotifyApi.getAlbums(search)).thenThrow(new SpotifyWebApiException(""));
-        assertThrows(UnavailableSpotifyApiException.class, () -> albumService.getAlbums(search));
+        when(spotifyApi.getAlbums(search, CountryCode.BR, 0, 30)).thenThrow(new SpotifyWebApiException(""));
+        assertThrows(UnavailableSpotifyApiException.class, () -> albumService.getAlbums(search, 0, 30));
     }
 
     @Test
-    @DisplayName("Should return user albums")
+    @DisplayName("Should return user albums page by page")
     public void shouldReturnUserAlbums() {
         Users user = Users.builder()
+                .id(7L)
                 .email("testuser@email.com")
                 .password("123")
                 .build();
 
-        Album album = Album.builder().users(user).build();
-        List<Album> albums = Collections.singletonList(album);
-
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken("usertest@email.com", null);
         SecurityContextHolder.getContext().setAuthentication(authenticationToken);
 
         when(usersRepository.findByEmail(any())).thenReturn(Optional.of(user));
-        when(albumRepository.findAllByUsers(any())).thenReturn(albums);
-
-        List<Album> result = albumService.getUserAlbums();
+        when(albumRepository.findCollectionPage(7L, 0L, SaleStatus.ACTIVE, Limit.of(3))).thenReturn(List.of(
+                CollectionAlbumDto.builder().id(10L).build(),
+                CollectionAlbumDto.builder().id(11L).build(),
+                CollectionAlbumDto.builder().id(15L).build()));
+        when(albumRepository.findCollectionPage(7L, 11L, SaleStatus.ACTIVE, Limit.of(3))).thenReturn(List.of(
+                CollectionAlbumDto.builder().id(15L).build()));
+        when(albumRepository.findCollectionTotals(7L, SaleStatus.ACTIVE)).thenReturn(new CollectionTotals(3, BigDecimal.valueOf(30)));
+
+        CollectionPage first = albumService.getUserAlbums(null, 2);
+        CollectionPage last = albumService.getUserAlbums(first.getNextCursor(), 2);
+
+        assertEquals(List.of(10L, 11L), first.getItems().stream().map(CollectionAlbumDto::getId).toList());
+        assertEquals(11L, first.getNextCursor());
+        assertEquals(List.of(15L), last.getItems().stream().map(CollectionAlbumDto::getId).toList());
+        assertNull(last.getNextCursor());
+        assertEquals(new CollectionTotals(3, BigDecimal.valueOf(30)), first.getTotals());
+        assertNull(last.getTotals());
+    }
 
-        assertEquals(1, result.size());
-        assertEquals(album, result.get(0));
+    @Test
+    @DisplayName("Should reject collection pages out of range")
+    public void shouldThrowInvalidParameterFromCollectionPage() {
+        assertThrows(InvalidParameterException.class, () -> albumService.getUserAlbums(null, 0));
+        assertThrows(InvalidParameterException.class, () -> albumService.getUserAlbums(null, 201));
+        assertThrows(InvalidParameterException.class, () -> albumService.getUserAlbums(-1L, 50));
     }
 
     @Test
@@ -213,4 +281,286 @@ class AlbumServiceTest {
 
         assertThrows(MissingAlbumFieldsException.class, () -> albumService.validateAlbumFields(album));
     }
+
+    @Test
+    @DisplayName("Should reject album sold with a price different from the catalog")
+    public void shouldThrowInvalidAlbumPrice() throws IOException, SpotifyWebApiException, ParseException {
+        AlbumModel catalogAlbum = new AlbumModel();
+        catalogAlbum.setValue(new BigDecimal("50.00"));
+        when(spotifyApi.getAlbum("price-12345", CountryCode.BR)).thenReturn(catalogAlbum);
+
+        Album album = Album.builder()
+                .name("Test Album")
+                .idSpotify("price-12345")
+                .artistName("Test Artist")
+                .imageUrl("http://example.com/image.jpg")
+                .value(BigDecimal.valueOf(10.0))
+                .build();
+
+        assertThrows(InvalidAlbumPriceException.class, () -> albumService.albumSale(album));
+        verify(albumRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should accept album price matching the catalog")
+    public void shouldNotThrowWhenPriceMatchesCatalog() throws IOException, SpotifyWebApiException, ParseException {
+        AlbumModel catalogAlbum = new AlbumModel();
+        catalogAlbum.setValue(new BigDecimal("50.00"));
+        when(spotifyApi.getAlbum("price-67890", CountryCode.BR)).thenReturn(catalogAlbum);
+
+        Album album = Album.builder()
+                .idSpotify("price-67890")
+                .value(new BigDecimal("50.0"))
+                .build();
+
+        assertDoesNotThrow(() -> albumService.validateAlbumPrice(album));
+    }
+
+    @Test
+    @DisplayName("Should reject an album the user already bought without loading their collection")
+    public void shouldThrowDuplicateAlbumFromExistenceQuery() throws IOException, SpotifyWebApiException, ParseException {
+        Users user = saleUser();
+        Album album = saleAlbum("dup-12345");
+        when(albumRepository.existsByUsersAndIdSpotifyAndSaleStatusIn(user, "dup-12345", SaleStatus.ACTIVE)).thenReturn(true);
+
+        assertThrows(DuplicateAlbumException.class, () -> albumService.albumSale(album));
+        verify(albumRepository, never()).saveAndFlush(any());
+        verify(outbox, never()).enqueue(any(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should reject a duplicate sale caught by the unique index and not debit the wallet")
+    public void shouldThrowDuplicateAlbumFromUniqueIndex() throws IOException, SpotifyWebApiException, ParseException {
+        saleUser();
+        Album album = saleAlbum("race-12345");
+        when(albumRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("UX_ALBUM_ACTIVE_SALE"));
+
+        assertThrows(DuplicateAlbumException.class, () -> albumService.albumSale(album));
+        verify(outbox, never()).enqueue(any(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should save the sale and queue the wallet debit in the outbox without calling the broker")
+    public void shouldSaveSaleBeforeDebit() throws IOException, SpotifyWebApiException, ParseException {
+        saleUser();
+        Album album = saleAlbum("sale-12345");
+        when(albumRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Album sold = albumService.albumSale(album);
+
+        assertEquals(SaleStatus.PROCESSING, sold.getSaleStatus());
+        assertEquals(1, sold.getDebitAttempts());
+        assertTrue(sold.getDeadline().isAfter(sold.getCreatedAt()));
+        assertNotNull(sold.getSaleId());
+        InOrder inOrder = inOrder(albumRepository, outbox);
+        inOrder.verify(albumRepository).saveAndFlush(any());
+        inOrder.verify(outbox).enqueue(eq("WalletDebitExchange"), eq("buyer@email.com"),
+                argThat(debit -> sold.getSaleId().equals(((WalletDebitDto) debit).getSaleId())));
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Should save a cart in one batch and debit the wallet once")
+    public void shouldSaveCartWithOneDebit() throws IOException, SpotifyWebApiException, ParseException {
+        Users user = saleUser();
+        List<Album> cart = List.of(saleAlbum("cart-1"), saleAlbum("cart-2"), saleAlbum("cart-3"));
+        when(albumRepository.findBoughtIdSpotifies(eq(user), any(), eq(SaleStatus.ACTIVE))).thenReturn(List.of());
+        when(albumRepository.saveAllAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Album> sold = albumService.cartSale(cart);
+
+        assertEquals(3, sold.size());
+        UUID cartId = sold.get(0).getCartId();
+        assertNotNull(cartId);
+        assertTrue(sold.stream().allMatch(album -> cartId.equals(album.getCartId()) && album.getSaleStatus() == SaleStatus.PROCESSING));
+        assertEquals(3, sold.stream().map(Album::getSaleId).distinct().count());
+        verify(albumRepository, times(1)).findBoughtIdSpotifies(any(), any(), any());
+        verify(albumRepository, never()).saveAndFlush(any());
+        verify(outbox, times(1)).enqueue(eq("WalletDebitExchange"), anyString(), argThat(debit -> {
+            WalletDebitDto walletDebit = (WalletDebitDto) debit;
+            return cartId.equals(walletDebit.getCartId()) && walletDebit.getAlbumCount() == 3
+                    && walletDebit.getValue().compareTo(new BigDecimal("150.00")) == 0;
+        }));
+    }
+
+    @Test
+    @DisplayName("Should look up a cart's prices together and before the sale transaction")
+    public void shouldLookUpCartPricesTogetherOutsideTransaction() throws IOException, SpotifyWebApiException, ParseException {
+        Users user = saleUser();
+        List<Album> cart = List.of(saleAlbum("lookup-1"), saleAlbum("lookup-2"), saleAlbum("lookup-3"));
+        when(spotifyApi.getSeveralAlbums(any(), eq(CountryCode.BR))).thenAnswer(invocation -> {
+            assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.<List<String>>getArgument(0).stream().map(AlbumServiceTest::catalogAlbum).toList();
+        });
+        when(albumRepository.findBoughtIdSpotifies(eq(user), any(), eq(SaleStatus.ACTIVE))).thenReturn(List.of());
+        when(albumRepository.saveAllAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        albumService.cartSale(cart);
+
+        verify(spotifyApi, times(1)).getSeveralAlbums(List.of("lookup-1", "lookup-2", "lookup-3"), CountryCode.BR);
+        verify(spotifyApi, never()).getAlbum(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should reject a cart priced differently from the catalog")
+    public void shouldRejectCartWithWrongPrice() throws IOException, SpotifyWebApiException, ParseException {
+        saleUser();
+        List<Album> cart = List.of(saleAlbum("priced-1"), saleAlbum("priced-2").toBuilder().value(new BigDecimal("1.00")).build());
+
+        assertThrows(InvalidAlbumPriceException.class, () -> albumService.cartSale(cart));
+        verify(albumRepository, never()).saveAllAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Should reject a cart with an album the user already bought")
+    public void shouldRejectCartWithBoughtAlbum() throws IOException, SpotifyWebApiException, ParseException {
+        Users user = saleUser();
+        List<Album> cart = List.of(saleAlbum("cart-new"), saleAlbum("cart-owned"));
+        when(albumRepository.findBoughtIdSpotifies(eq(user), any(), any())).thenReturn(List.of("cart-owned"));
+
+        assertThrows(DuplicateAlbumException.class, () -> albumService.cartSale(cart));
+        verify(albumRepository, never()).saveAllAndFlush(any());
+        verify(outbox, never()).enqueue(any(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Should reject empty, oversized and repeated carts")
+    public void shouldRejectInvalidCarts() throws IOException, SpotifyWebApiException, ParseException {
+        saleUser();
+        Album album = saleAlbum("cart-twice");
+
+        assertThrows(InvalidParameterException.class, () -> albumService.cartSale(List.of()));
+        assertThrows(InvalidParameterException.class, () -> albumService.cartSale(Collections.nCopies(AlbumService.MAX_CART_SIZE + 1, album)));
+        assertThrows(DuplicateAlbumException.class, () -> albumService.cartSale(List.of(album, album)));
+        verify(albumRepository, never()).saveAllAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Should complete or cancel a whole cart on its debit confirmation")
+    public void shouldUpdateWholeCart() {
+        UUID confirmed = UUID.randomUUID();
+        UUID rejected = UUID.randomUUID();
+
+        albumService.updateCartSale(true, confirmed);
+        albumService.updateCartSale(false, rejected);
+
+        verify(albumRepository).updateCartSaleStatus(confirmed, SaleStatus.PROCESSING, SaleStatus.COMPLETED);
+        verify(albumRepository).updateCartSaleStatus(rejected, SaleStatus.PROCESSING, SaleStatus.CANCELED);
+    }
+
+    @Test
+    @DisplayName("Should complete the sale the debit confirmation refers to")
+    public void shouldCompleteSaleBySaleId() {
+        UUID saleId = UUID.randomUUID();
+        Album sale = Album.builder().id(5L).idSpotify("shared-album").saleStatus(SaleStatus.PROCESSING).saleId(saleId).build();
+        when(albumRepository.findBySaleId(saleId)).thenReturn(Optional.of(sale));
+
+        albumService.updateAlbumSale(true, "buyer@email.com", "shared-album", saleId);
+
+        verify(albumRepository).save(argThat(album -> album.getId() == 5L && album.getSaleStatus() == SaleStatus.COMPLETED));
+        verify(usersRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    @DisplayName("Should ignore a redelivered debit confirmation")
+    public void shouldIgnoreRedeliveredConfirmation() {
+        UUID saleId = UUID.randomUUID();
+        when(albumRepository.findBySaleId(saleId)).thenReturn(Optional.of(
+                Album.builder().id(5L).saleStatus(SaleStatus.COMPLETED).saleId(saleId).build()));
+
+        albumService.updateAlbumSale(false, "buyer@email.com", "shared-album", saleId);
+
+        verify(albumRepository, never()).save(any());
+        verify(albumRepository, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("Should cancel the buyer's processing sale on a rejected confirmation without a sale id")
+    public void shouldFallBackToBuyersProcessingSale() {
+        Users user = saleUser();
+        Album sale = Album.builder().id(6L).idSpotify("legacy-album").saleStatus(SaleStatus.PROCESSING).users(user).build();
+        when(albumRepository.findFirstByUsersAndIdSpotifyAndSaleStatus(user, "legacy-album", SaleStatus.PROCESSING)).thenReturn(Optional.of(sale));
+
+        albumService.updateAlbumSale(false, "buyer@email.com", "legacy-album", null);
+
+        verify(albumRepository).save(argThat(album -> album.getId() == 6L && album.getSaleStatus() == SaleStatus.CANCELED));
+        verify(albumRepository, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("Should merge albums from several markets without duplicates")
+    public void shouldMergeAlbumsFromSeveralMarkets() throws Exception {
+        when(spotifyApi.getAlbums("fan out", CountryCode.BR, 0, 30)).thenReturn(page(List.of(albumModel("1"), albumModel("2")), null));
+        when(spotifyApi.getAlbums("fan out", CountryCode.US, 0, 30)).thenReturn(page(List.of(albumModel("2"), albumModel("3")), null));
+
+        List<AlbumModel> albums = albumService.getAlbums("fan out", List.of("br", "US", "BR")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("1", "2", "3"), albums.stream().map(AlbumModel::getId).toList());
+        verify(spotifyApi, times(1)).getAlbums("fan out", CountryCode.BR, 0, 30);
+    }
+
+    @Test
+    @DisplayName("Should leave out markets that failed")
+    public void shouldLeaveOutFailedMarkets() throws Exception {
+        when(spotifyApi.getAlbums("partial", CountryCode.BR, 0, 30)).thenReturn(page(List.of(albumModel("1")), null));
+        when(spotifyApi.getAlbums("partial", CountryCode.US, 0, 30)).thenThrow(new SpotifyWebApiException(""));
+
+        List<AlbumModel> albums = albumService.getAlbums("partial", List.of("BR", "US")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("1"), albums.stream().map(AlbumModel::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should fail when every market failed")
+    public void shouldFailWhenEveryMarketFailed() throws Exception {
+        when(spotifyApi.getAlbums("unavailable", CountryCode.BR, 0, 30)).thenThrow(new SpotifyWebApiException(""));
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> albumService.getAlbums("unavailable", List.of("BR")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UnavailableSpotifyApiException.class, error.getCause());
+    }
+
+    @Test
+    @DisplayName("Should invalid parameter exception from unknown market")
+    public void shouldThrowInvalidParameterFromUnknownMarket() {
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums("rock", List.of("BR", "XX")));
+        assertThrows(InvalidParameterException.class, () -> albumService.getAlbums("rock", List.of()));
+    }
+
+    private Users saleUser() {
+        Users user = Users.builder().email("buyer@email.com").build();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("buyer@email.com", null));
+        when(usersRepository.findByEmail("buyer@email.com")).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private Album saleAlbum(String idSpotify) throws IOException, SpotifyWebApiException, ParseException {
+        when(spotifyApi.getAlbum(idSpotify, CountryCode.BR)).thenReturn(catalogAlbum(idSpotify));
+        when(spotifyApi.getSeveralAlbums(any(), eq(CountryCode.BR))).thenAnswer(invocation ->
+                invocation.<List<String>>getArgument(0).stream().map(AlbumServiceTest::catalogAlbum).toList());
+        return Album.builder()
+                .name("Test Album")
+                .idSpotify(idSpotify)
+                .artistName("Test Artist")
+                .imageUrl("http://example.com/image.jpg")
+                .value(new BigDecimal("50.00"))
+                .build();
+    }
+
+    private static AlbumModel catalogAlbum(String idSpotify) {
+        AlbumModel catalogAlbum = new AlbumModel();
+        catalogAlbum.setId(idSpotify);
+        catalogAlbum.setValue(new BigDecimal("50.00"));
+        return catalogAlbum;
+    }
+
+    private AlbumPage page(List<AlbumModel> albums, Integer nextOffset) {
+        return AlbumPage.builder().items(albums).limit(2).total(5).nextOffset(nextOffset).build();
+    }
+
+    private AlbumModel albumModel(String id) {
+        AlbumModel album = new AlbumModel();
+        album.setId(id);
+        return album;
+    }
 }
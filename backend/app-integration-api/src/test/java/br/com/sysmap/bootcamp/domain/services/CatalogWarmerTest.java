@@ -0,0 +1,121 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.TrendingSearch;
+import br.com.sysmap.bootcamp.domain.repository.TrendingSearchRepository;
+import br.com.sysmap.bootcamp.domain.service.integration.AlbumSearchCache;
+import br.com.sysmap.bootcamp.domain.service.integration.CatalogWarmer;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyCallRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class CatalogWarmerTest {
+
+    private AlbumSearchCache albumSearchCache;
+    private TrendingSearchRepository trendingSearchRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogWarmer catalogWarmer;
+
+    @BeforeEach
+    public void setUp() {
+        albumSearchCache = mock(AlbumSearchCache.class);
+        trendingSearchRepository = mock(TrendingSearchRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        catalogWarmer = new CatalogWarmer(albumSearchCache, trendingSearchRepository, meterRegistry, Runnable::run, true, 100, 3, 2);
+    }
+
+    @Test
+    @DisplayName("Should prefetch the most searched terms within the request budget")
+    public void shouldPrefetchTopTermsWithinBudget() throws Exception {
+        search("rock", 5);
+        search("Samba", 4);
+        search("jazz", 3);
+        search("forró", 2);
+        when(albumSearchCache.prefetch(anyString())).thenReturn(true);
+
+        assertEquals(2, catalogWarmer.prefetch());
+
+        verify(albumSearchCache).prefetch("rock");
+        verify(albumSearchCache).prefetch("samba");
+        verifyNoMoreInteractions(albumSearchCache);
+        assertEquals(2, meterRegistry.counter("catalog.warmer.prefetches").count());
+    }
+
+    @Test
+    @DisplayName("Should not spend the budget on searches that are still cached")
+    public void shouldSkipFreshSearches() throws Exception {
+        search("rock", 5);
+        search("samba", 4);
+        search("jazz", 3);
+        when(albumSearchCache.prefetch("rock")).thenReturn(false);
+        when(albumSearchCache.prefetch("samba")).thenReturn(true);
+        when(albumSearchCache.prefetch("jazz")).thenReturn(true);
+
+        assertEquals(2, catalogWarmer.prefetch());
+        verify(albumSearchCache).prefetch("jazz");
+    }
+
+    @Test
+    @DisplayName("Should stop warming while Spotify calls are rejected")
+    public void shouldStopWhenCallsAreRejected() throws Exception {
+        search("rock", 5);
+        search("samba", 4);
+        when(albumSearchCache.prefetch("rock")).thenThrow(new SpotifyCallRejectedException("Circuit is open"));
+
+        assertEquals(0, catalogWarmer.prefetch());
+        verify(albumSearchCache, never()).prefetch("samba");
+    }
+
+    @Test
+    @DisplayName("Should persist the top terms and seed them back at startup")
+    @SuppressWarnings("unchecked")
+    public void shouldPersistAndRestoreTopTerms() throws Exception {
+        search("rock", 5);
+        search("samba", 4);
+        search("jazz", 3);
+        search("forró", 2);
+
+        catalogWarmer.persist();
+
+        ArgumentCaptor<List<TrendingSearch>> saved = ArgumentCaptor.forClass(List.class);
+        verify(trendingSearchRepository).replaceAll(saved.capture());
+        assertEquals(List.of("rock", "samba", "jazz"), saved.getValue().stream().map(TrendingSearch::getTerm).toList());
+
+        CatalogWarmer restarted = new CatalogWarmer(albumSearchCache, trendingSearchRepository, meterRegistry, Runnable::run, true, 100, 3, 2);
+        when(trendingSearchRepository.findAll()).thenReturn(saved.getValue());
+        when(albumSearchCache.prefetch(anyString())).thenReturn(true);
+
+        restarted.warmUp();
+
+        verify(albumSearchCache).prefetch("rock");
+        verify(albumSearchCache).prefetch("samba");
+    }
+
+    @Test
+    @DisplayName("Should warm up on its executor instead of the startup thread")
+    public void shouldWarmUpAsynchronously() {
+        List<Runnable> submitted = new ArrayList<>();
+        CatalogWarmer warmer = new CatalogWarmer(albumSearchCache, trendingSearchRepository, meterRegistry, submitted::add, true, 100, 3, 2);
+
+        warmer.warmUp();
+
+        verifyNoInteractions(trendingSearchRepository, albumSearchCache);
+        assertEquals(1, submitted.size());
+    }
+
+    private void search(String term, int times) {
+        for (int i = 0; i < times; i++) {
+            catalogWarmer.record(term);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.HeavyHitters;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class HeavyHittersTest {
+
+    @Test
+    @DisplayName("Should find the frequent terms within a bounded number of counters")
+    public void shouldFindFrequentTerms() {
+        HeavyHitters heavyHitters = new HeavyHitters(20);
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int roll = random.nextInt(100);
+            if (roll < 30) {
+                heavyHitters.offer("rock");
+            } else if (roll < 50) {
+                heavyHitters.offer("samba");
+            } else if (roll < 60) {
+                heavyHitters.offer("jazz");
+            } else {
+                heavyHitters.offer("rare " + random.nextInt(5000));
+            }
+        }
+
+        List<String> top = heavyHitters.top(3).stream().map(HeavyHitters.Counter::term).toList();
+        assertEquals(List.of("rock", "samba", "jazz"), top);
+        assertEquals(20, heavyHitters.size());
+        HeavyHitters.Counter rock = heavyHitters.top(1).get(0);
+        assertTrue(rock.count() >= 3000 - 200 && rock.count() - rock.error() <= 3200);
+    }
+
+    @Test
+    @DisplayName("Should count every concurrent offer and rank terms across stripes")
+    public void shouldCountConcurrentOffersAcrossStripes() throws Exception {
+        HeavyHitters heavyHitters = new HeavyHitters(64, 4);
+        List<String> terms = List.of("rock", "samba", "jazz", "forró", "pagode", "axé");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> offers = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            offers.add(executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    for (int t = 0; t < terms.size(); t++) {
+                        if (i % (t + 1) == 0) {
+                            heavyHitters.offer(terms.get(t));
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> offer : offers) {
+            offer.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<HeavyHitters.Counter> top = heavyHitters.top(3);
+        assertEquals(List.of("rock", "samba", "jazz"), top.stream().map(HeavyHitters.Counter::term).toList());
+        assertEquals(8_000, top.get(0).count());
+        assertEquals(4_000, top.get(1).count());
+        assertEquals(6, heavyHitters.size());
+    }
+
+    @Test
+    @DisplayName("Should let decayed terms make room for new ones")
+    public void shouldDecayOldTerms() {
+        HeavyHitters heavyHitters = new HeavyHitters(10);
+        heavyHitters.offer("rock", 8);
+        heavyHitters.offer("samba", 1);
+
+        heavyHitters.decay();
+
+        assertEquals(List.of(new HeavyHitters.Counter("rock", 4, 0)), heavyHitters.top(10));
+    }
+}
@@ -0,0 +1,145 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.IdempotentRequest;
+import br.com.sysmap.bootcamp.domain.repository.IdempotentRequestRepository;
+import br.com.sysmap.bootcamp.common.idempotency.IdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class IdempotencyStoreTest {
+
+    private IdempotentRequestRepository idempotentRequestRepository;
+    private IdempotencyStore idempotencyStore;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    public void setUp() {
+        idempotentRequestRepository = mock(IdempotentRequestRepository.class);
+        idempotencyStore = new IdempotencyStore(idempotentRequestRepository, new ObjectMapper(), Duration.ofHours(1), 100, Duration.ofSeconds(30));
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Should run the request once and replay its response for the same key")
+    public void shouldReplayResponseForSameKey() {
+        ResponseEntity<Object> first = idempotencyStore.execute("sale", "key-1", "album-1", request(HttpStatus.OK));
+        ResponseEntity<Object> retry = idempotencyStore.execute("sale", "key-1", "album-1", request(HttpStatus.OK));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals("{\"call\":1}", retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        verify(idempotentRequestRepository, times(1)).claim(anyString(), any(), any());
+        verify(idempotentRequestRepository).complete(anyString(), eq(200), eq("application/json"), eq("{\"call\":1}"));
+    }
+
+    @Test
+    @DisplayName("Should replay a response stored by another instance")
+    public void shouldReplayResponseFromDatabase() {
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(idempotentRequestRepository).claim(anyString(), any(), any());
+        when(idempotentRequestRepository.findById("sale:anonymous:key-2")).thenReturn(Optional.of(IdempotentRequest.builder()
+                .requestKey("sale:anonymous:key-2")
+                .createdAt(Instant.now())
+                .status(400)
+                .contentType("text/plain")
+                .body("Album already bought")
+                .build()));
+
+        ResponseEntity<Object> retry = idempotencyStore.execute("sale", "key-2", "album-1", request(HttpStatus.OK));
+
+        assertEquals(0, calls.get());
+        assertEquals(HttpStatus.BAD_REQUEST, retry.getStatusCode());
+        assertEquals("Album already bought", retry.getBody());
+    }
+
+    @Test
+    @DisplayName("Should refuse a key reused for a different request instead of replaying its response")
+    public void shouldRefuseKeyReusedForDifferentPayload() {
+        idempotencyStore.execute("sale", "key-5", "album-1", request(HttpStatus.OK));
+        ResponseEntity<Object> reused = idempotencyStore.execute("sale", "key-5", "album-2", request(HttpStatus.OK));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+        assertNull(reused.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    @DisplayName("Should refuse a key another instance stored for a different request")
+    public void shouldRefuseKeyReusedForDifferentPayloadFromDatabase() {
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(idempotentRequestRepository).claim(anyString(), any(), any());
+        when(idempotentRequestRepository.findById("sale:anonymous:key-6")).thenReturn(Optional.of(IdempotentRequest.builder()
+                .requestKey("sale:anonymous:key-6")
+                .createdAt(Instant.now())
+                .status(200)
+                .contentType("application/json")
+                .body("{\"call\":1}")
+                .requestHash("another request")
+                .build()));
+
+        ResponseEntity<Object> reused = idempotencyStore.execute("sale", "key-6", "album-1", request(HttpStatus.OK));
+
+        assertEquals(0, calls.get());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should answer conflict while the first attempt is still running")
+    public void shouldConflictWhileInProgress() {
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(idempotentRequestRepository).claim(anyString(), any(), any());
+        when(idempotentRequestRepository.findById(anyString())).thenReturn(Optional.of(IdempotentRequest.builder()
+                .requestKey("sale:anonymous:key-3")
+                .createdAt(Instant.now())
+                .build()));
+        when(idempotentRequestRepository.reclaim(anyString(), any(), any())).thenReturn(0);
+
+        ResponseEntity<Object> retry = idempotencyStore.execute("sale", "key-3", "album-1", request(HttpStatus.OK));
+
+        assertEquals(0, calls.get());
+        assertEquals(HttpStatus.CONFLICT, retry.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should give the key back when the request failed on the server")
+    public void shouldReleaseKeyOnServerError() {
+        idempotencyStore.execute("sale", "key-4", "album-1", request(HttpStatus.INTERNAL_SERVER_ERROR));
+        idempotencyStore.execute("sale", "key-4", "album-1", request(HttpStatus.OK));
+
+        assertEquals(2, calls.get());
+        verify(idempotentRequestRepository).deleteById("sale:anonymous:key-4");
+        verify(idempotentRequestRepository, times(1)).complete(anyString(), eq(200), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should run requests without a key and reject malformed keys")
+    public void shouldHandleMissingAndInvalidKeys() {
+        idempotencyStore.execute("sale", null, "album-1", request(HttpStatus.OK));
+        idempotencyStore.execute("sale", null, "album-1", request(HttpStatus.OK));
+        ResponseEntity<Object> invalid = idempotencyStore.execute("sale", "x".repeat(101), "album-1", request(HttpStatus.OK));
+
+        assertEquals(2, calls.get());
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+        verifyNoInteractions(idempotentRequestRepository);
+    }
+
+    private Supplier<ResponseEntity<Object>> request(HttpStatus status) {
+        return () -> ResponseEntity.status(status).body(Map.of("call", calls.incrementAndGet()));
+    }
+}
@@ -0,0 +1,156 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.entities.CatalogAlbum;
+import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
+import br.com.sysmap.bootcamp.domain.repository.CatalogAlbumRepository;
+import br.com.sysmap.bootcamp.domain.service.catalog.IndexedAlbum;
+import br.com.sysmap.bootcamp.domain.service.catalog.LocalCatalog;
+import br.com.sysmap.bootcamp.domain.service.pricing.AlbumPriceCache;
+import com.neovisionaries.i18n.CountryCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import se.michaelthelin.spotify.enums.AlbumType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class LocalCatalogTest {
+
+    private CatalogAlbumRepository catalogAlbumRepository;
+    private AlbumRepository albumRepository;
+    private LocalCatalog localCatalog;
+
+    @BeforeEach
+    public void setUp() {
+        catalogAlbumRepository = mock(CatalogAlbumRepository.class);
+        albumRepository = mock(AlbumRepository.class);
+        AlbumPriceCache albumPriceCache = mock(AlbumPriceCache.class);
+        when(albumPriceCache.price(any())).thenReturn(new BigDecimal("25.90"));
+        localCatalog = new LocalCatalog(catalogAlbumRepository, albumRepository, albumPriceCache, new SimpleMeterRegistry(), true, 1000, 1000, 2, Duration.ofMinutes(30), CountryCode.BR);
+    }
+
+    @Test
+    @DisplayName("Should answer every page of a query from albums seen on Spotify and end the paging at the index's total")
+    public void shouldAnswerEveryPageFromIndex() {
+        localCatalog.index(List.of(albumModel("1", "Rock Songs"), albumModel("2", "Rock Hits"), albumModel("3", "Rock Live")), CountryCode.BR);
+
+        AlbumPage first = localCatalog.search("rock", CountryCode.BR, 0, 2).orElseThrow();
+        assertEquals(List.of("2", "3"), first.getItems().stream().map(AlbumModel::getId).toList());
+        assertEquals(new BigDecimal("25.90"), first.getItems().get(0).getValue());
+        assertEquals(3, first.getTotal());
+        assertEquals(2, first.getNextOffset());
+
+        AlbumPage last = localCatalog.search("Rock", CountryCode.BR, 2, 2).orElseThrow();
+        assertEquals(List.of("1"), last.getItems().stream().map(AlbumModel::getId).toList());
+        assertEquals(3, last.getTotal());
+        assertNull(last.getNextOffset());
+    }
+
+    @Test
+    @DisplayName("Should leave the search to Spotify when the index knows too few albums for it")
+    public void shouldMissWhenIndexKnowsTooFewAlbums() {
+        localCatalog.index(List.of(albumModel("1", "Rock Songs")), CountryCode.BR);
+
+        assertTrue(localCatalog.search("rock", CountryCode.BR, 0, 2).isEmpty());
+        assertTrue(localCatalog.search("samba", CountryCode.BR, 0, 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep a query on Spotify for its later pages once its first page went there")
+    public void shouldKeepSourceAcrossPages() {
+        localCatalog.index(List.of(albumModel("1", "Rock Songs")), CountryCode.BR);
+        assertTrue(localCatalog.search("rock", CountryCode.BR, 0, 2).isEmpty());
+
+        localCatalog.index(List.of(albumModel("2", "Rock Hits"), albumModel("3", "Rock Live")), CountryCode.BR);
+
+        assertTrue(localCatalog.search("rock", CountryCode.BR, 2, 2).isEmpty());
+        assertTrue(localCatalog.search("rock hits", CountryCode.BR, 0, 2).isEmpty());
+        assertTrue(localCatalog.search("live", CountryCode.BR, 0, 2).isEmpty());
+        assertTrue(localCatalog.search("rock", CountryCode.US, 0, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should only answer from albums seen in the market searched")
+    public void shouldKeepMarketsApart() {
+        localCatalog.index(List.of(albumModel("1", "Rock Songs"), albumModel("2", "Rock Hits")), CountryCode.US);
+
+        assertTrue(localCatalog.search("rock", CountryCode.BR, 0, 2).isEmpty());
+        assertEquals(2, localCatalog.search("rock", CountryCode.US, 0, 2).orElseThrow().getTotal());
+    }
+
+    @Test
+    @DisplayName("Should not price albums only known from a sale")
+    public void shouldMissOnAlbumsKnownOnlyFromSales() {
+        localCatalog.index(Album.builder().idSpotify("1").name("Rock Songs").artistName("Band").imageUrl("url").build());
+        localCatalog.index(List.of(albumModel("2", "Rock Hits")), CountryCode.BR);
+
+        assertTrue(localCatalog.search("rock", CountryCode.BR, 0, 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should persist new albums in the background and load them back")
+    @SuppressWarnings("unchecked")
+    public void shouldPersistAndReloadAlbums() {
+        localCatalog.index(List.of(albumModel("1", "Rock Songs"), albumModel("2", "Rock Hits")), CountryCode.BR);
+        localCatalog.index(List.of(albumModel("1", "Rock Songs")), CountryCode.BR);
+        verifyNoInteractions(catalogAlbumRepository);
+
+        localCatalog.flush();
+        localCatalog.flush();
+
+        ArgumentCaptor<List<CatalogAlbum>> saved = ArgumentCaptor.forClass(List.class);
+        verify(catalogAlbumRepository, times(1)).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+
+        LocalCatalog restarted = new LocalCatalog(catalogAlbumRepository, albumRepository, mock(AlbumPriceCache.class),
+                new SimpleMeterRegistry(), true, 1000, 1000, 2, Duration.ofMinutes(30), CountryCode.BR);
+        when(catalogAlbumRepository.findMarkets()).thenReturn(List.of("BR"));
+        when(catalogAlbumRepository.findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(eq("BR"), eq(""), any())).thenReturn(saved.getValue());
+        restarted.load();
+
+        assertEquals(List.of("2", "1"), restarted.search("rock", CountryCode.BR, 0, 2).orElseThrow().getItems().stream().map(AlbumModel::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should load the catalog page by page and stop reading once the index is full")
+    public void shouldLoadPagesUntilIndexIsFull() {
+        LocalCatalog bounded = new LocalCatalog(catalogAlbumRepository, albumRepository, mock(AlbumPriceCache.class),
+                new SimpleMeterRegistry(), true, 1500, 1000, 2, Duration.ofMinutes(30), CountryCode.BR);
+        when(catalogAlbumRepository.findMarkets()).thenReturn(List.of("BR", "US"));
+        when(catalogAlbumRepository.findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(any(), any(), any()))
+                .thenAnswer(invocation -> catalogPage(invocation.getArgument(1)));
+
+        bounded.load();
+
+        verify(catalogAlbumRepository).findMarkets();
+        verify(catalogAlbumRepository).findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(eq("BR"), eq(""), any());
+        verify(catalogAlbumRepository).findByMarketAndIdSpotifyGreaterThanOrderByIdSpotify(eq("BR"), eq("0999"), any());
+        verifyNoMoreInteractions(catalogAlbumRepository);
+        verifyNoInteractions(albumRepository);
+    }
+
+    // 3000 albums with ids 0000 to 2999, a thousand at a time
+    private static List<CatalogAlbum> catalogPage(String after) {
+        int from = after.isEmpty() ? 0 : Integer.parseInt(after) + 1;
+        return IntStream.range(from, Math.min(from + 1000, 3000))
+                .mapToObj(i -> new IndexedAlbum(String.format("%04d", i), "Album " + i, "Band", null, "2001-01-01", AlbumType.ALBUM).toEntity(CountryCode.BR))
+                .toList();
+    }
+
+    private AlbumModel albumModel(String id, String name) {
+        return new IndexedAlbum(id, name, "Band", "https://i.scdn.co/image/" + id, "2001-01-01", AlbumType.ALBUM).toModel();
+    }
+}
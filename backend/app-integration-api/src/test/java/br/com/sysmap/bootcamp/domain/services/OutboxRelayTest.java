@@ -0,0 +1,140 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.OutboxMessage;
+import br.com.sysmap.bootcamp.domain.repository.OutboxMessageRepository;
+import br.com.sysmap.bootcamp.domain.service.outbox.OutboxRelay;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class OutboxRelayTest {
+
+    private OutboxMessageRepository outboxMessageRepository;
+    private RabbitTemplate rabbitTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    public void setUp() {
+        outboxMessageRepository = mock(OutboxMessageRepository.class);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                .thenAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitTemplate));
+        confirmWith(true);
+        outboxRelay = new OutboxRelay(outboxMessageRepository, rabbitTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry, 3, Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Should publish a batch over one channel and delete it once all of it is confirmed")
+    public void shouldPublishBatchWithOneConfirm() {
+        List<OutboxMessage> batch = messages(1, 2);
+        when(outboxMessageRepository.findByOrderByIdAsc(Limit.of(3))).thenReturn(batch);
+
+        outboxRelay.relay();
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        ArgumentCaptor<CorrelationData> correlations = ArgumentCaptor.forClass(CorrelationData.class);
+        verify(rabbitTemplate, times(2)).send(eq(""), eq("WalletDebitQueue"), sent.capture(), correlations.capture());
+        assertEquals("outbox-1", sent.getAllValues().get(0).getMessageProperties().getMessageId());
+        assertEquals("debit-2", new String(sent.getAllValues().get(1).getBody(), StandardCharsets.UTF_8));
+        assertEquals("outbox-2", correlations.getAllValues().get(1).getId());
+        verify(rabbitTemplate, times(1)).invoke(any(RabbitOperations.OperationsCallback.class));
+        verify(rabbitTemplate, never()).waitForConfirmsOrDie(anyLong());
+        verify(outboxMessageRepository).deleteAllInBatch(batch);
+        assertEquals(2, meterRegistry.counter("outbox.relay.published").count());
+    }
+
+    @Test
+    @DisplayName("Should publish to the message exchange with its routing key and creation time")
+    public void shouldPublishToExchange() {
+        Instant createdAt = Instant.parse("2026-10-17T12:00:00Z");
+        OutboxMessage message = OutboxMessage.builder()
+                .id(9L)
+                .exchange("WalletDebitExchange")
+                .queue("user@email.com")
+                .body("debit-9".getBytes(StandardCharsets.UTF_8))
+                .createdAt(createdAt)
+                .build();
+        when(outboxMessageRepository.findByOrderByIdAsc(Limit.of(3))).thenReturn(List.of(message));
+
+        outboxRelay.relay();
+
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate).send(eq("WalletDebitExchange"), eq("user@email.com"), sent.capture(), any(CorrelationData.class));
+        assertEquals(createdAt.toEpochMilli(), sent.getValue().getMessageProperties().getTimestamp().getTime());
+    }
+
+    @Test
+    @DisplayName("Should keep draining while batches come back full")
+    public void shouldDrainBacklog() {
+        when(outboxMessageRepository.findByOrderByIdAsc(Limit.of(3)))
+                .thenReturn(messages(1, 3), messages(4, 6), messages(7, 7));
+
+        outboxRelay.relay();
+
+        verify(outboxMessageRepository, times(3)).findByOrderByIdAsc(Limit.of(3));
+        verify(rabbitTemplate, times(3)).invoke(any(RabbitOperations.OperationsCallback.class));
+        assertEquals(7, meterRegistry.counter("outbox.relay.published").count());
+    }
+
+    @Test
+    @DisplayName("Should keep the batch when the broker doesn't confirm it")
+    public void shouldKeepUnconfirmedBatch() {
+        when(outboxMessageRepository.findByOrderByIdAsc(Limit.of(3))).thenReturn(messages(1, 2));
+        confirmWith(false);
+
+        assertDoesNotThrow(() -> outboxRelay.relay());
+
+        verify(outboxMessageRepository, never()).deleteAllInBatch(any());
+        assertEquals(0, meterRegistry.counter("outbox.relay.published").count());
+    }
+
+    @Test
+    @DisplayName("Should not touch the broker when the outbox is empty")
+    public void shouldSkipEmptyOutbox() {
+        when(outboxMessageRepository.findByOrderByIdAsc(Limit.of(3))).thenReturn(List.of());
+
+        outboxRelay.relay();
+
+        verify(rabbitTemplate, never()).invoke(any(RabbitOperations.OperationsCallback.class));
+    }
+
+    private void confirmWith(boolean ack) {
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(3).getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack")))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    private static List<OutboxMessage> messages(long from, long to) {
+        return LongStream.rangeClosed(from, to)
+                .mapToObj(id -> OutboxMessage.builder()
+                        .id(id)
+                        .queue("WalletDebitQueue")
+                        .contentType("application/x-java-serialized-object")
+                        .body(("debit-" + id).getBytes(StandardCharsets.UTF_8))
+                        .createdAt(Instant.now())
+                        .build())
+                .toList();
+    }
+}
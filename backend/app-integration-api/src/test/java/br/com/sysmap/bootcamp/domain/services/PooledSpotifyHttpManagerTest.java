@@ -0,0 +1,99 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.PooledSpotifyHttpManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.IHttpManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class PooledSpotifyHttpManagerTest {
+
+    private static final URI SEARCH_URI = URI.create("https://api.spotify.com/v1/search");
+
+    @Test
+    @DisplayName("Should run concurrent requests on separate connections")
+    public void shouldRunConcurrentRequests() throws Exception {
+        CyclicBarrier allInFlight = new CyclicBarrier(8);
+        AtomicInteger created = new AtomicInteger();
+        PooledSpotifyHttpManager pool = new PooledSpotifyHttpManager(() -> {
+            created.incrementAndGet();
+            IHttpManager manager = mock(IHttpManager.class);
+            try {
+                when(manager.get(any(), any())).thenAnswer(invocation -> {
+                    // Only passes when all eight requests are running at the same time
+                    allInFlight.await(5, TimeUnit.SECONDS);
+                    return "{}";
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return manager;
+        }, 8, Duration.ofSeconds(5));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> pool.get(SEARCH_URI, null)));
+        }
+        for (Future<String> result : results) {
+            assertEquals("{}", result.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(8, created.get());
+        assertEquals(8, pool.availableConnections());
+    }
+
+    @Test
+    @DisplayName("Should reuse idle connections")
+    public void shouldReuseIdleConnections() throws Exception {
+        IHttpManager manager = mock(IHttpManager.class);
+        when(manager.get(any(), any())).thenReturn("{}");
+        AtomicInteger created = new AtomicInteger();
+        PooledSpotifyHttpManager pool = new PooledSpotifyHttpManager(() -> {
+            created.incrementAndGet();
+            return manager;
+        }, 4, Duration.ofSeconds(1));
+
+        pool.get(SEARCH_URI, null);
+        pool.get(SEARCH_URI, null);
+
+        assertEquals(1, created.get());
+        verify(manager, times(2)).get(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should fail when no connection frees up in time")
+    public void shouldTimeOutWhenPoolIsExhausted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IHttpManager manager = mock(IHttpManager.class);
+        when(manager.get(any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "{}";
+        });
+        PooledSpotifyHttpManager pool = new PooledSpotifyHttpManager(() -> manager, 1, Duration.ofMillis(100));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> busy = executor.submit(() -> pool.get(SEARCH_URI, null));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThrows(IOException.class, () -> pool.get(SEARCH_URI, null));
+        release.countDown();
+        assertEquals("{}", busy.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
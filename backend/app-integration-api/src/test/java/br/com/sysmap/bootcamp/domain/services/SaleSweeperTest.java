@@ -0,0 +1,121 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.Album;
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
+import br.com.sysmap.bootcamp.domain.repository.AlbumRepository;
+import br.com.sysmap.bootcamp.domain.service.outbox.Outbox;
+import br.com.sysmap.bootcamp.domain.service.sale.SaleSweeper;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class SaleSweeperTest {
+
+    private AlbumRepository albumRepository;
+    private Outbox outbox;
+    private SimpleMeterRegistry meterRegistry;
+    private SaleSweeper saleSweeper;
+
+    @BeforeEach
+    public void setUp() {
+        albumRepository = mock(AlbumRepository.class);
+        outbox = mock(Outbox.class);
+        meterRegistry = new SimpleMeterRegistry();
+        saleSweeper = new SaleSweeper(albumRepository, outbox, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                meterRegistry, 10, 3, Duration.ofMinutes(2));
+    }
+
+    @Test
+    @DisplayName("Should send the debit again for a sale past its deadline")
+    public void shouldResendStaleSale() {
+        Album sale = sale(1L, 1, null);
+        when(albumRepository.findBySaleStatusAndDeadlineBeforeOrderByDeadline(eq(SaleStatus.PROCESSING), any(), any())).thenReturn(List.of(sale));
+        when(albumRepository.countBySaleStatus(SaleStatus.PROCESSING)).thenReturn(1L);
+
+        saleSweeper.sweep();
+
+        verify(outbox).enqueue(eq("WalletDebitExchange"), anyString(), argThat(debit -> sale.getSaleId().equals(((WalletDebitDto) debit).getSaleId())));
+        verify(albumRepository).retryDebit(eq(List.of(1L)), eq(SaleStatus.PROCESSING), argThat(deadline -> deadline.isAfter(Instant.now())));
+        verify(albumRepository, never()).updateSaleStatus(any(), any(), any());
+        assertEquals(1, meterRegistry.counter("sales.sweeper.resent").count());
+        assertEquals(1, meterRegistry.get("sales.in-flight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should ask the wallet to cancel the debit of a sale whose last attempt went unanswered")
+    public void shouldCancelExhaustedSales() {
+        Album exhausted = sale(1L, 3, null);
+        Album legacy = sale(2L, 1, null).toBuilder().saleId(null).build();
+        when(albumRepository.findBySaleStatusAndDeadlineBeforeOrderByDeadline(eq(SaleStatus.PROCESSING), any(), any())).thenReturn(List.of(exhausted, legacy));
+        when(albumRepository.updateSaleStatus(List.of(2L), SaleStatus.PROCESSING, SaleStatus.CANCELED)).thenReturn(1);
+
+        saleSweeper.sweep();
+
+        // The exhausted sale stays processing until the wallet answers the cancellation
+        verify(outbox).enqueue(eq("WalletDebitExchange"), anyString(), argThat(debit -> {
+            WalletDebitDto walletDebit = (WalletDebitDto) debit;
+            return exhausted.getSaleId().equals(walletDebit.getSaleId()) && Boolean.TRUE.equals(walletDebit.getCancel());
+        }));
+        verify(albumRepository).retryDebit(eq(List.of(1L)), eq(SaleStatus.PROCESSING), any());
+        verify(albumRepository).updateSaleStatus(List.of(2L), SaleStatus.PROCESSING, SaleStatus.CANCELED);
+        assertEquals(1, meterRegistry.counter("sales.sweeper.expired").count());
+        assertEquals(1, meterRegistry.counter("sales.sweeper.abandoned").count());
+    }
+
+    @Test
+    @DisplayName("Should debit a stale cart again for its whole total")
+    public void shouldResendWholeCart() {
+        UUID cartId = UUID.randomUUID();
+        List<Album> cart = List.of(sale(1L, 1, cartId), sale(2L, 1, cartId), sale(3L, 1, cartId));
+        when(albumRepository.findBySaleStatusAndDeadlineBeforeOrderByDeadline(eq(SaleStatus.PROCESSING), any(), any())).thenReturn(cart.subList(0, 2));
+        when(albumRepository.findByCartIdAndSaleStatus(cartId, SaleStatus.PROCESSING)).thenReturn(cart);
+
+        saleSweeper.sweep();
+
+        verify(outbox, times(1)).enqueue(eq("WalletDebitExchange"), anyString(), argThat(debit -> {
+            WalletDebitDto walletDebit = (WalletDebitDto) debit;
+            return cartId.equals(walletDebit.getCartId()) && walletDebit.getAlbumCount() == 3
+                    && walletDebit.getValue().compareTo(new BigDecimal("30")) == 0;
+        }));
+        verify(albumRepository).retryDebit(eq(List.of(1L, 2L, 3L)), eq(SaleStatus.PROCESSING), any());
+    }
+
+    @Test
+    @DisplayName("Should only let a processing sale complete or cancel")
+    public void shouldOnlyLeaveProcessing() {
+        assertTrue(SaleStatus.PROCESSING.canTransitionTo(SaleStatus.COMPLETED));
+        assertTrue(SaleStatus.PROCESSING.canTransitionTo(SaleStatus.CANCELED));
+        assertFalse(SaleStatus.COMPLETED.canTransitionTo(SaleStatus.CANCELED));
+        assertFalse(SaleStatus.CANCELED.canTransitionTo(SaleStatus.COMPLETED));
+    }
+
+    private static Album sale(Long id, int debitAttempts, UUID cartId) {
+        return Album.builder()
+                .id(id)
+                .idSpotify("stale-" + id)
+                .value(BigDecimal.TEN)
+                .users(Users.builder().email("buyer@email.com").build())
+                .saleStatus(SaleStatus.PROCESSING)
+                .saleId(UUID.randomUUID())
+                .cartId(cartId)
+                .deadline(Instant.now().minusSeconds(60))
+                .debitAttempts(debitAttempts)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyCircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class SpotifyCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private SpotifyCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    public void setUp() {
+        circuitBreaker = new SpotifyCircuitBreaker(10, 4, 50, Duration.ofSeconds(30), 2, now::get);
+    }
+
+    @Test
+    @DisplayName("Should stay closed below the failure rate")
+    public void shouldStayClosedBelowFailureRate() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            if (i % 4 == 0) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+        }
+
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Should open, probe and close again")
+    public void shouldOpenProbeAndClose() {
+        fail(4);
+        assertEquals(SpotifyCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(SpotifyCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("Should open again when a probe fails")
+    public void shouldReopenWhenProbeFails() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+
+        assertEquals(SpotifyCircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Should hand a probe's slot back when its caller gives up on it")
+    public void shouldReleaseProbeOnCancel() {
+        fail(4);
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onCancel();
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(SpotifyCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.onFailure();
+        }
+    }
+}
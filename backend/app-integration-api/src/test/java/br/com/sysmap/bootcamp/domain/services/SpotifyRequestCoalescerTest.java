@@ -0,0 +1,114 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyRequestCoalescer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class SpotifyRequestCoalescerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SpotifyRequestCoalescer coalescer;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new SpotifyRequestCoalescer(meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should run a single request for concurrent identical calls")
+    public void shouldRunSingleRequestForConcurrentCalls() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> coalescer.execute("search:BR:rock", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            awaitQuietly(release);
+            return "albums";
+        })));
+        started.await(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 7; i++) {
+            results.add(executor.submit(() -> coalescer.execute("search:BR:rock", () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+        }
+
+        // Followers register before the leader is released
+        while (meterRegistry.counter("spotify.requests.coalesced").count() < 7) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("albums", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1, calls.get());
+        assertEquals(7, meterRegistry.counter("spotify.requests.coalesced").count());
+    }
+
+    @Test
+    @DisplayName("Should share the failure with waiting callers")
+    public void shouldShareFailureWithWaitingCallers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<String> leader = executor.submit(() -> coalescer.execute("search:BR:rock", () -> {
+            started.countDown();
+            awaitQuietly(release);
+            throw new SpotifyWebApiException("unavailable");
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<String> follower = executor.submit(() -> coalescer.execute("search:BR:rock", () -> "albums"));
+
+        while (meterRegistry.counter("spotify.requests.coalesced").count() < 1) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SpotifyWebApiException.class, leaderError.getCause());
+        assertInstanceOf(SpotifyWebApiException.class, followerError.getCause());
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should run a new request once the previous one finished")
+    public void shouldRunNewRequestAfterPreviousFinished() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        coalescer.execute("search:BR:rock", calls::incrementAndGet);
+        coalescer.execute("search:BR:rock", calls::incrementAndGet);
+
+        assertEquals(2, calls.get());
+        assertEquals(0, meterRegistry.counter("spotify.requests.coalesced").count());
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.AdaptiveTimeout;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyCallRejectedException;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyCircuitBreaker;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyResilience;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class SpotifyResilienceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SpotifyResilience resilience;
+
+    @AfterEach
+    public void tearDown() {
+        if (resilience != null) {
+            resilience.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should give up on a slow call after the timeout")
+    public void shouldTimeOutSlowCalls() {
+        resilience = resilience(4, Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        assertThrows(SpotifyTimeoutException.class, () -> resilience.execute(() -> {
+            sleepQuietly(Duration.ofSeconds(5));
+            return "albums";
+        }));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2000);
+        assertEquals(1, meterRegistry.counter("spotify.calls.timeouts").count());
+    }
+
+    @Test
+    @DisplayName("Should refuse calls once the bulkhead is full")
+    public void shouldRefuseCallsWhenBulkheadIsFull() throws Exception {
+        resilience = resilience(1, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<String> busy = executor.submit(() -> resilience.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "albums";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThrows(SpotifyCallRejectedException.class, () -> resilience.execute(() -> "other"));
+        release.countDown();
+        assertEquals("albums", busy.get(5, TimeUnit.SECONDS));
+        assertEquals("again", resilience.execute(() -> "again"));
+        executor.shutdown();
+
+        assertEquals(1, meterRegistry.get("spotify.calls.rejected").tag("reason", "bulkhead-full").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should give every bulkhead permit back once calls given up on are over")
+    public void shouldReleasePermitsOfAbandonedCalls() throws Exception {
+        resilience = resilience(2, Duration.ofMillis(100));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SpotifyTimeoutException.class, () -> resilience.execute(() -> {
+                sleepQuietly(Duration.ofSeconds(5));
+                return "albums";
+            }));
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread caller = new Thread(() -> assertThrows(SpotifyCallRejectedException.class, () -> resilience.execute(() -> {
+            started.countDown();
+            sleepQuietly(Duration.ofSeconds(5));
+            return "albums";
+        })));
+        caller.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000);
+
+        // Cancelling interrupts the calls still running, they give their permits back as they end
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("spotify.bulkhead.available").gauge().value() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, meterRegistry.get("spotify.bulkhead.available").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should fail fast once the circuit opened")
+    public void shouldFailFastWhenCircuitIsOpen() {
+        resilience = resilience(4, Duration.ofSeconds(5));
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ServiceUnavailableException.class, () -> resilience.execute(() -> {
+                throw new ServiceUnavailableException("unavailable");
+            }));
+        }
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(SpotifyCallRejectedException.class, () -> resilience.execute(calls::incrementAndGet));
+
+        assertEquals(0, calls.get());
+        assertEquals(SpotifyCircuitBreaker.State.OPEN, resilience.getCircuitState());
+    }
+
+    @Test
+    @DisplayName("Should not count unknown albums against Spotify")
+    public void shouldNotOpenCircuitOnCallerErrors() {
+        resilience = resilience(4, Duration.ofSeconds(5));
+        for (int i = 0; i < 10; i++) {
+            assertThrows(NotFoundException.class, () -> resilience.execute(() -> {
+                throw new NotFoundException("unknown album");
+            }));
+        }
+
+        assertEquals(SpotifyCircuitBreaker.State.CLOSED, resilience.getCircuitState());
+    }
+
+    @Test
+    @DisplayName("Should derive the timeout from the latency percentile")
+    public void shouldDeriveTimeoutFromLatencyPercentile() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(100, 0.99, 2.0, Duration.ofMillis(100), Duration.ofSeconds(5));
+        assertEquals(Duration.ofSeconds(5), timeout.current());
+
+        // A single outlier sits above the 99th percentile
+        for (int i = 0; i < 116; i++) {
+            timeout.record(Duration.ofMillis(i == 110 ? 4000 : 200));
+        }
+        assertEquals(Duration.ofMillis(400), timeout.current());
+
+        for (int i = 0; i < 150; i++) {
+            timeout.record(Duration.ofMillis(10));
+        }
+        assertEquals(Duration.ofMillis(100), timeout.current());
+    }
+
+    private void sleepQuietly(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SpotifyResilience resilience(int maxConcurrentCalls, Duration timeout) {
+        return new SpotifyResilience(meterRegistry, maxConcurrentCalls, 10, 4, 50, Duration.ofSeconds(30), 2,
+                0.99, 1.5, timeout, timeout, false);
+    }
+}
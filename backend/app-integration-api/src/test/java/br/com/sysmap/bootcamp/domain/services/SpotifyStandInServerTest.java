@@ -0,0 +1,114 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.*;
+import br.com.sysmap.bootcamp.domain.service.integration.standin.SpotifyStandInServer;
+import com.neovisionaries.i18n.CountryCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.Album;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ALL TESTS PASSING
+public class SpotifyStandInServerTest {
+
+    @TempDir
+    private Path fixturesDir;
+
+    private SpotifyStandInServer server;
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    @DisplayName("Should serve token, search and albums through the Spotify client")
+    public void shouldServeSpotifyRequests() throws Exception {
+        CatalogBackend backend = backendFor(start(0, null), null);
+
+        String token = backend.requestToken().getAccessToken();
+        Paging<AlbumSimplified> firstPage = backend.searchAlbums(token, "michel telo", CountryCode.BR, 0, 30);
+        Paging<AlbumSimplified> samePage = backend.searchAlbums(token, "michel telo", CountryCode.BR, 0, 30);
+        Paging<AlbumSimplified> secondPage = backend.searchAlbums(token, "michel telo", CountryCode.BR, 30, 30);
+        Album album = backend.getAlbum(token, firstPage.getItems()[0].getId(), CountryCode.BR);
+        Album[] several = backend.getSeveralAlbums(token, List.of(firstPage.getItems()[1].getId(), firstPage.getItems()[2].getId()), CountryCode.BR);
+
+        assertTrue(token.startsWith("stand-in-"));
+        assertEquals(30, firstPage.getItems().length);
+        assertNotNull(firstPage.getNext());
+        assertEquals(22, firstPage.getItems()[0].getId().length());
+        assertEquals(firstPage.getItems()[0].getId(), samePage.getItems()[0].getId());
+        assertNotEquals(firstPage.getItems()[0].getId(), secondPage.getItems()[0].getId());
+        assertEquals(firstPage.getItems()[0].getId(), album.getId());
+        assertEquals(firstPage.getItems()[2].getId(), several[1].getId());
+    }
+
+    @Test
+    @DisplayName("Should inject failures")
+    public void shouldInjectFailures() throws Exception {
+        CatalogBackend backend = backendFor(start(1, null), null);
+
+        String token = backend.requestToken().getAccessToken();
+
+        assertThrows(SpotifyWebApiException.class, () -> backend.searchAlbums(token, "rock", CountryCode.BR, 0, 30));
+    }
+
+    @Test
+    @DisplayName("Should replay recorded responses")
+    public void shouldReplayRecordedResponses() throws Exception {
+        // Record against a synthetic server, then replay with synthetic data turned off
+        SpotifyStandInServer recordingServer = start(0, null);
+        CatalogBackend recordingBackend = backendFor(recordingServer, new SpotifyFixtures(fixturesDir));
+        String recordedId = recordingBackend.searchAlbums(recordingBackend.requestToken().getAccessToken(),
+                "rock", CountryCode.BR, 0, 10).getItems()[0].getId();
+        recordingServer.stop();
+
+        try (var files = Files.list(fixturesDir)) {
+            assertEquals(1, files.count());
+        }
+
+        CatalogBackend replayBackend = backendFor(start(0, new SpotifyFixtures(fixturesDir), false), null);
+        String token = replayBackend.requestToken().getAccessToken();
+
+        assertEquals(recordedId, replayBackend.searchAlbums(token, "rock", CountryCode.BR, 0, 10).getItems()[0].getId());
+        assertThrows(SpotifyWebApiException.class, () -> replayBackend.searchAlbums(token, "jazz", CountryCode.BR, 0, 10));
+    }
+
+    private SpotifyStandInServer start(double errorRate, SpotifyFixtures fixtures) throws Exception {
+        return start(errorRate, fixtures, true);
+    }
+
+    private SpotifyStandInServer start(double errorRate, SpotifyFixtures fixtures, boolean synthetic) throws Exception {
+        server = new SpotifyStandInServer(new SpotifyStandInServer.Settings(0, 4, Duration.ZERO, Duration.ZERO,
+                errorRate, 503, Duration.ofHours(1), synthetic), fixtures);
+        server.start();
+        return server;
+    }
+
+    private CatalogBackend backendFor(SpotifyStandInServer standIn, SpotifyFixtures recordTo) {
+        URI url = URI.create("http://localhost:" + standIn.port());
+        IHttpManager httpManager = new SpotifyHttpManager.Builder().build();
+        if (recordTo != null) {
+            httpManager = new RecordingHttpManager(httpManager, recordTo);
+        }
+        return new SpotifyCatalogBackend(new se.michaelthelin.spotify.SpotifyApi.Builder()
+                .setClientId("client")
+                .setClientSecret("secret")
+                .setHttpManager(new RedirectingHttpManager(httpManager, url, url))
+                .build());
+    }
+}
@@ -0,0 +1,108 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.service.integration.CatalogBackend;
+import br.com.sysmap.bootcamp.domain.service.integration.SpotifyTokenManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.credentials.ClientCredentials;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// ALL TESTS PASSING
+public class SpotifyTokenManagerTest {
+
+    private CatalogBackend catalogBackend;
+    private SimpleMeterRegistry meterRegistry;
+    private SpotifyTokenManager tokenManager;
+
+    @BeforeEach
+    public void setUp() {
+        catalogBackend = mock(CatalogBackend.class);
+
+        meterRegistry = new SimpleMeterRegistry();
+        tokenManager = new SpotifyTokenManager(catalogBackend, meterRegistry, Duration.ofSeconds(60));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tokenManager.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should reuse the token until it expires")
+    public void shouldReuseTokenUntilItExpires() throws Exception {
+        when(catalogBackend.requestToken()).thenReturn(credentials("token", 3600));
+
+        assertEquals("token", tokenManager.getToken());
+        assertEquals("token", tokenManager.getToken());
+        assertEquals("token", tokenManager.getToken());
+
+        verify(catalogBackend, times(1)).requestToken();
+        assertEquals(1, meterRegistry.counter("spotify.token.refreshes").count());
+        assertEquals(2, meterRegistry.counter("spotify.token.cache.hits").count());
+    }
+
+    @Test
+    @DisplayName("Should fetch a single token for concurrent callers")
+    public void shouldFetchSingleTokenForConcurrentCallers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(catalogBackend.requestToken()).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return credentials("token", 3600);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tokens.add(executor.submit(() -> tokenManager.getToken()));
+        }
+        release.countDown();
+
+        for (Future<String> token : tokens) {
+            assertEquals("token", token.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        verify(catalogBackend, times(1)).requestToken();
+    }
+
+    @Test
+    @DisplayName("Should refresh the token in background before it expires")
+    public void shouldRefreshTokenInBackground() throws Exception {
+        when(catalogBackend.requestToken())
+                .thenReturn(credentials("first", 8))
+                .thenReturn(credentials("second", 3600));
+
+        assertEquals("first", tokenManager.getToken());
+
+        // Half of the first token lifetime, the refresh ahead window is larger than the token itself
+        verify(catalogBackend, timeout(6000).times(2)).requestToken();
+        assertEquals("second", tokenManager.getToken());
+    }
+
+    @Test
+    @DisplayName("Should propagate errors when no token can be fetched")
+    public void shouldPropagateErrorWhenNoTokenCanBeFetched() throws Exception {
+        when(catalogBackend.requestToken()).thenThrow(new SpotifyWebApiException("unavailable"));
+
+        assertThrows(SpotifyWebApiException.class, () -> tokenManager.getToken());
+    }
+
+    private ClientCredentials credentials(String token, int expiresIn) {
+        return new ClientCredentials.Builder()
+                .setAccessToken(token)
+                .setTokenType("Bearer")
+                .setExpiresIn(expiresIn)
+                .build();
+    }
+}
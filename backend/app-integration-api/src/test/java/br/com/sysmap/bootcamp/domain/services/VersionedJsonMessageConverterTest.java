@@ -0,0 +1,111 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.config.RabbitConfig;
+import br.com.sysmap.bootcamp.common.messaging.VersionedJsonMessageConverter;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VersionedJsonMessageConverterTest {
+
+    private final VersionedJsonMessageConverter converter = new RabbitConfig().converter(new ObjectMapper(), false);
+
+    private final WalletDebitDto walletDebitDto = WalletDebitDto.builder()
+            .email("test@email.com")
+            .value(new BigDecimal("42.90"))
+            .idSpotify("4aawyAB9vmqN3uQ7FjRGTy")
+            .saleId(UUID.randomUUID())
+            .build();
+
+    @Test
+    @DisplayName("Should write a wallet debit as versioned JSON and read it back")
+    public void shouldRoundTripWalletDebit() {
+        Message message = converter.toMessage(walletDebitDto, new MessageProperties());
+
+        assertEquals("application/vnd.sysmap.wallet-debit.v1+json", message.getMessageProperties().getContentType());
+        WalletDebitDto read = (WalletDebitDto) converter.fromMessage(message);
+        assertEquals(walletDebitDto.getEmail(), read.getEmail());
+        assertEquals(0, walletDebitDto.getValue().compareTo(read.getValue()));
+        assertEquals(walletDebitDto.getIdSpotify(), read.getIdSpotify());
+        assertEquals(walletDebitDto.getSaleId(), read.getSaleId());
+        assertNull(read.getCartId());
+    }
+
+    @Test
+    @DisplayName("Should be smaller on the wire than Java serialization")
+    public void shouldBeSmallerThanJavaSerialization() {
+        VersionedJsonMessageConverter javaSerialization = new RabbitConfig().converter(new ObjectMapper(), true);
+
+        int json = converter.toMessage(walletDebitDto, new MessageProperties()).getBody().length;
+        int java = javaSerialization.toMessage(walletDebitDto, new MessageProperties()).getBody().length;
+
+        assertTrue(json * 2 < java, json + " bytes of JSON against " + java + " bytes of Java serialization");
+    }
+
+    @Test
+    @DisplayName("Should still read Java-serialized messages")
+    public void shouldReadJavaSerializedMessages() {
+        Message message = new RabbitConfig().converter(new ObjectMapper(), true)
+                .toMessage(DebitConfirmationDto.builder().userEmail("test@email.com").isDebitConfirmed(true).build(), new MessageProperties());
+
+        assertEquals(MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT, message.getMessageProperties().getContentType());
+        DebitConfirmationDto read = assertInstanceOf(DebitConfirmationDto.class, converter.fromMessage(message));
+        assertTrue(read.getIsDebitConfirmed());
+    }
+
+    @Test
+    @DisplayName("Should read messages Java-serialized before the sale ids were added")
+    public void shouldReadMessagesSerializedByTheFirstRelease() {
+        // Written by the DTOs as they were before saleId, cartId and albumCount
+        String confirmation = "rO0ABXNyAC9ici5jb20uc3lzbWFwLmJvb3RjYW1wLmR0by5EZWJpdENvbmZpcm1hdGlvbkR0b6kFEgh6+bc/AgADTAAJaWRTcG90aWZ5dAASTGphdmEvbGFuZy9TdHJpbmc7TAAQaXNEZWJpdENvbmZpcm1lZHQAE0xqYXZhL2xhbmcvQm9vbGVhbjtMAAl1c2VyRW1haWxxAH4AAXhwdAAWNGFhd3lBQjl2bXFOM3VRN0ZqUkdUeXNyABFqYXZhLmxhbmcuQm9vbGVhbs0gcoDVnPruAgABWgAFdmFsdWV4cAF0ABBsZWdhY3lAZW1haWwuY29t";
+        String debit = "rO0ABXNyAClici5jb20uc3lzbWFwLmJvb3RjYW1wLmR0by5XYWxsZXREZWJpdER0b79GQGmjJdQTAgADTAAFZW1haWx0ABJMamF2YS9sYW5nL1N0cmluZztMAAlpZFNwb3RpZnlxAH4AAUwABXZhbHVldAAWTGphdmEvbWF0aC9CaWdEZWNpbWFsO3hwdAAQbGVnYWN5QGVtYWlsLmNvbXQAFjRhYXd5QUI5dm1xTjN1UTdGalJHVHlzcgAUamF2YS5tYXRoLkJpZ0RlY2ltYWxUxxVX+YEoTwMAAkkABXNjYWxlTAAGaW50VmFsdAAWTGphdmEvbWF0aC9CaWdJbnRlZ2VyO3hyABBqYXZhLmxhbmcuTnVtYmVyhqyVHQuU4IsCAAB4cAAAAAJzcgAUamF2YS5tYXRoLkJpZ0ludGVnZXKM/J8fqTv7HQMABkkACGJpdENvdW50SQAJYml0TGVuZ3RoSQATZmlyc3ROb256ZXJvQnl0ZU51bUkADGxvd2VzdFNldEJpdEkABnNpZ251bVsACW1hZ25pdHVkZXQAAltCeHEAfgAI///////////////+/////gAAAAF1cgACW0Ks8xf4BghU4AIAAHhwAAAAAhDCeHg=";
+
+        DebitConfirmationDto readConfirmation = assertInstanceOf(DebitConfirmationDto.class, converter.fromMessage(serialized(confirmation)));
+        WalletDebitDto readDebit = assertInstanceOf(WalletDebitDto.class, converter.fromMessage(serialized(debit)));
+
+        assertEquals("legacy@email.com", readConfirmation.getUserEmail());
+        assertTrue(readConfirmation.getIsDebitConfirmed());
+        assertNull(readConfirmation.getSaleId());
+        assertEquals(new BigDecimal("42.90"), readDebit.getValue());
+        assertNull(readDebit.getSaleId());
+    }
+
+    @Test
+    @DisplayName("Should ignore unknown fields and reject newer schema versions")
+    public void shouldHandleSchemaVersions() {
+        Message withNewField = json("application/vnd.sysmap.debit-confirmation.v1+json", "{\"userEmail\":\"test@email.com\",\"isDebitConfirmed\":false,\"reason\":\"balance\"}");
+        Message newer = json("application/vnd.sysmap.debit-confirmation.v2+json", "{\"userEmail\":\"test@email.com\"}");
+
+        assertEquals("test@email.com", ((DebitConfirmationDto) converter.fromMessage(withNewField)).getUserEmail());
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(newer));
+        assertThrows(MessageConversionException.class, () -> converter.fromMessage(json("application/json", "{}")));
+    }
+
+    private static Message serialized(String base64) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_SERIALIZED_OBJECT);
+        return new Message(Base64.getDecoder().decode(base64), properties);
+    }
+
+    private static Message json(String contentType, String body) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(contentType);
+        return new Message(body.getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
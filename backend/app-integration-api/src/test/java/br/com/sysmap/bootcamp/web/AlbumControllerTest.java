@@ -2,9 +2,14 @@ package br.com.sysmap.bootcamp.web;
 
 import br.com.sysmap.bootcamp.domain.entities.Album;
 import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.enums.SaleStatus;
 import br.com.sysmap.bootcamp.domain.model.AlbumModel;
+import br.com.sysmap.bootcamp.domain.model.AlbumPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionPage;
+import br.com.sysmap.bootcamp.domain.model.CollectionTotals;
 import br.com.sysmap.bootcamp.domain.service.AlbumService;
 import br.com.sysmap.bootcamp.domain.service.UsersServices;
+import br.com.sysmap.bootcamp.dto.CollectionAlbumDto;
 import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
 import br.com.sysmap.bootcamp.errors.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,14 +23,22 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 // ALL TESTS PASSING
@@ -57,11 +70,14 @@ public class AlbumControllerTest {
         expectedAlbum.setReleaseDate("2021-01-01");
         expectedAlbum.setValue(BigDecimal.valueOf(97.10));
 
-        when(albumService.getAlbums(any())).thenReturn(List.of(expectedAlbum));
+        when(albumService.getAlbums(any(), anyInt(), anyInt())).thenReturn(AlbumPage.builder()
+                .items(List.of(expectedAlbum)).offset(0).limit(30).total(31).nextOffset(30).build());
 
         mockMvc.perform(MockMvcRequestBuilders.get("/albums/all?search=TEST ARTIST")
                         .contentType(MediaType.APPLICATION_JSON))
                         .andExpect(status().isOk())
+                        .andExpect(header().string("X-Total-Count", "31"))
+                        .andExpect(header().string("X-Next-Offset", "30"))
                         .andExpect(jsonPath("$[0].id").value("123"))
                         .andExpect(jsonPath("$[0].releaseDate").value("2021-01-01"))
                         .andExpect(jsonPath("$[0].value").value(BigDecimal.valueOf(97.10)));
@@ -70,7 +86,7 @@ public class AlbumControllerTest {
     @Test
     @DisplayName("Should bad request on empty search")
     public void shouldReturnBadRequestOnEmptySearch() throws Exception {
-        when(albumService.getAlbums(any())).thenThrow(new InvalidParameterException("Search parameter is required"));
+        when(albumService.getAlbums(any(), anyInt(), anyInt())).thenThrow(new InvalidParameterException("Search parameter is required"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/albums/all?search="))
                         .andExpect(status().isBadRequest());
@@ -79,12 +95,76 @@ public class AlbumControllerTest {
     @Test
     @DisplayName("Should internal server error when spotify api not available")
     public void shouldReturnInternalServerErrorOnUnavailableSpotifyApi() throws Exception {
-        when(albumService.getAlbums(any())).thenThrow(new UnavailableSpotifyApiException("Search parameter is required"));
+        when(albumService.getAlbums(any(), anyInt(), anyInt())).thenThrow(new UnavailableSpotifyApiException("Search parameter is required"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/albums/all?search=Andryev dos teclados"))
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    @DisplayName("Should stream albums as NDJSON")
+    public void shouldStreamAlbumsAsNdjson() throws Exception {
+        AlbumModel expectedAlbum = new AlbumModel();
+        expectedAlbum.setId("123");
+        AlbumPage firstPage = AlbumPage.builder().items(List.of(expectedAlbum)).offset(0).limit(50).total(1).build();
+
+        when(albumService.getAlbums(any(), anyInt(), anyInt())).thenReturn(firstPage);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(3);
+            out.write("{\"id\":\"123\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(albumService).writeAlbums(any(), eq(firstPage), anyInt(), any());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/albums/all/stream?search=TEST ARTIST"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string("{\"id\":\"123\"}\n"));
+    }
+
+    @Test
+    @DisplayName("Should bad request on a stream limit outside 1 to the searchable albums")
+    public void shouldReturnBadRequestOnInvalidMaxItems() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/albums/all/stream?search=TEST ARTIST&maxItems=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/albums/all/stream?search=TEST ARTIST&maxItems=1051"))
+                .andExpect(status().isBadRequest());
+
+        verify(albumService, never()).writeAlbums(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should return albums from several markets")
+    public void shouldReturnAlbumsFromSeveralMarkets() throws Exception {
+        AlbumModel expectedAlbum = new AlbumModel();
+        expectedAlbum.setId("123");
+
+        when(albumService.getAlbums(any(), anyList())).thenReturn(CompletableFuture.completedFuture(List.of(expectedAlbum)));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/albums/all/markets?search=TEST ARTIST&markets=BR,US"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("123"));
+    }
+
+    @Test
+    @DisplayName("Should bad request on unknown market")
+    public void shouldReturnBadRequestOnUnknownMarket() throws Exception {
+        when(albumService.getAlbums(any(), anyList())).thenThrow(new InvalidParameterException("Unknown market XX"));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/albums/all/markets?search=TEST&markets=XX"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Should return album with its user")
     public void shouldReturnAlbumByIdWhenAuthenticated() throws Exception {
@@ -188,10 +268,66 @@ public class AlbumControllerTest {
                         .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @DisplayName("Should replay a sale retried with the same idempotency key")
+    public void shouldReplaySaleWithSameIdempotencyKey() throws Exception {
+        Album album = Album.builder()
+                .name("Na Balada (Ao Vivo)")
+                .idSpotify("4AYFuW0")
+                .artistName("Michel Teló")
+                .imageUrl("https://i.scdn.co/image/ab67616d0000b273c55a2d31ef4b957aaf4f3a9b")
+                .value(BigDecimal.valueOf(97.10))
+                .build();
+
+        when(albumService.albumSale(any())).thenReturn(album.toBuilder().saleStatus(SaleStatus.PROCESSING).build());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/albums/sale")
+                            .header("Idempotency-Key", "retry-4AYFuW0")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(album)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.saleStatus").value("PROCESSING"));
+        }
+        verify(albumService, times(1)).albumSale(any());
+    }
+
+    @Test
+    @DisplayName("Should buy a cart of albums")
+    public void shouldBuyCart() throws Exception {
+        Album album = Album.builder()
+                .name("Na Balada (Ao Vivo)")
+                .idSpotify("4AYFuW0")
+                .artistName("Michel Teló")
+                .imageUrl("https://i.scdn.co/image/ab67616d0000b273c55a2d31ef4b957aaf4f3a9b")
+                .value(BigDecimal.valueOf(97.10))
+                .build();
+
+        when(albumService.cartSale(any())).thenReturn(List.of(album));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/albums/sale/cart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(album))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].idSpotify").value("4AYFuW0"));
+    }
+
+    @Test
+    @DisplayName("Should return bad request for an invalid cart")
+    public void shouldReturnBadRequestForInvalidCart() throws Exception {
+        when(albumService.cartSale(any())).thenThrow(new InvalidParameterException("A cart must have between 1 and 50 albums"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/albums/sale/cart")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Should return album list of authenticated user")
     public void shouldReturnAlbumListOfAuthenticatedUser() throws Exception {
-        Album album = Album.builder()
+        CollectionAlbumDto album = CollectionAlbumDto.builder()
+                .id(12L)
                 .name("Na Balada (Ao Vivo)")
                 .idSpotify("4AYFuW0")
                 .artistName("Michel Teló")
@@ -199,22 +335,39 @@ public class AlbumControllerTest {
                 .value(BigDecimal.valueOf(97.10))
                 .build();
 
-        when(albumService.getUserAlbums()).thenReturn(List.of(album));
+        when(albumService.getUserAlbums(null, 50)).thenReturn(CollectionPage.builder().items(List.of(album)).nextCursor(12L)
+                .totals(new CollectionTotals(1, BigDecimal.valueOf(97.10))).build());
 
         mockMvc.perform(MockMvcRequestBuilders.get("/albums/my-collection")
                         .contentType(MediaType.APPLICATION_JSON))
                         .andExpect(status().isOk())
+                        .andExpect(header().string("X-Next-Cursor", "12"))
+                        .andExpect(header().string("X-Total-Count", "1"))
+                        .andExpect(header().string("X-Total-Value", "97.1"))
                         .andExpect(jsonPath("$[0].name").value("Na Balada (Ao Vivo)"))
                         .andExpect(jsonPath("$[0].idSpotify").value("4AYFuW0"))
                         .andExpect(jsonPath("$[0].artistName").value("Michel Teló"))
                         .andExpect(jsonPath("$[0].imageUrl").value("https://i.scdn.co/image/ab67616d0000b273c55a2d31ef4b957aaf4f3a9b"))
-                        .andExpect(jsonPath("$[0].value").value(97.10));
+                        .andExpect(jsonPath("$[0].value").value(97.10))
+                        .andExpect(jsonPath("$[0].users").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should return the collection page after the cursor")
+    public void shouldReturnCollectionPageAfterCursor() throws Exception {
+        when(albumService.getUserAlbums(12L, 20)).thenReturn(CollectionPage.builder().items(List.of()).build());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/albums/my-collection?after=12&limit=20"))
+                        .andExpect(status().isOk())
+                        .andExpect(header().doesNotExist("X-Next-Cursor"))
+                        .andExpect(header().doesNotExist("X-Total-Count"))
+                        .andExpect(jsonPath("$").isEmpty());
     }
 
     @Test
     @DisplayName("Should return bad request when getting user not found albums")
     public void shouldReturnBadRequestWhenGettingUserNotFoundAlbums() throws Exception {
-        when(albumService.getUserAlbums()).thenThrow(new UserNotFoundException("User not found"));
+        when(albumService.getUserAlbums(any(), anyInt())).thenThrow(new UserNotFoundException("User not found"));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/albums/my-collection")
                         .contentType(MediaType.APPLICATION_JSON))
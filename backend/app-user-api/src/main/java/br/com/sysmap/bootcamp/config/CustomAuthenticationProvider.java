@@ -4,23 +4,37 @@ package br.com.sysmap.bootcamp.config;
 import br.com.sysmap.bootcamp.domain.services.UsersServices;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
 @Component
 public class CustomAuthenticationProvider implements AuthenticationProvider {
 
     @Autowired
     private UsersServices usersServices;
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Override
     public Authentication authenticate(Authentication authentication) throws AuthenticationException {
         try{
             UserDetails userDetails = usersServices.loadUserByUsername(authentication.getName());
+            // Clients send either the password or the /users/auth token, which carries the stored hash
+            String password = authentication.getCredentials() == null ? "" : authentication.getCredentials().toString();
+            if (!MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), userDetails.getPassword().getBytes(StandardCharsets.UTF_8))
+                    && !passwordEncoder.matches(password, userDetails.getPassword())) {
+                throw new BadCredentialsException("Invalid password");
+            }
             return new UsernamePasswordAuthenticationToken(userDetails.getUsername(), userDetails.getPassword(), userDetails.getAuthorities());
         } catch (UsernameNotFoundException e){
             throw new UsernameNotFoundException("User not found");
@@ -1,19 +1,45 @@
 package br.com.sysmap.bootcamp.config;
 
+import br.com.sysmap.bootcamp.common.messaging.BackoffMessageRecoverer;
+import br.com.sysmap.bootcamp.common.messaging.DeadLetterReplayEndpoint;
+import br.com.sysmap.bootcamp.common.messaging.ListenerUtilization;
+import br.com.sysmap.bootcamp.common.messaging.PublisherConfirms;
+import br.com.sysmap.bootcamp.common.messaging.VersionedJsonMessageConverter;
 import br.com.sysmap.bootcamp.domain.listeners.WalletCreationListener;
+import br.com.sysmap.bootcamp.domain.listeners.WalletDebitBatchListener;
 import br.com.sysmap.bootcamp.domain.listeners.WalletDebitListener;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.WalletCreationDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateCustomizer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 
+@Slf4j
 @Configuration
 public class RabbitConfig {
 
@@ -23,21 +49,144 @@ public class RabbitConfig {
     @Bean
     public Queue walletCreationQueue() { return new Queue("WalletCreationQueue"); }
 
+    @Bean
+    public Queue walletCreationDeadLetterQueue() { return new Queue(BackoffMessageRecoverer.deadLetterQueue("WalletCreationQueue")); }
+
     @Bean
     public WalletCreationListener walletCreationListener() {
         return new WalletCreationListener();
     }
 
+    // Debits are published to the WalletDebitExchange shards now, this queue is still consumed to drain what was left on it
     @Bean
     public Queue walletDebitQueue() { return new Queue("WalletDebitQueue"); }
 
     @Bean
+    public Queue walletDebitDeadLetterQueue() { return new Queue(BackoffMessageRecoverer.deadLetterQueue("WalletDebitQueue")); }
+
+    @Bean
+    @ConditionalOnProperty(name = "wallet.debit.batch.enabled", havingValue = "false")
     public WalletDebitListener walletDebitListener() {
         return new WalletDebitListener();
     }
 
     @Bean
-    public SimpleMessageConverter converter() {
+    @ConditionalOnProperty(name = "wallet.debit.batch.enabled", havingValue = "true", matchIfMissing = true)
+    public WalletDebitBatchListener walletDebitBatchListener() {
+        return new WalletDebitBatchListener();
+    }
+
+    // Hands WalletDebitBatchListener up to batch.size debits at once, or what came in until batch.receive-timeout passed without another
+    @Bean
+    public SimpleRabbitListenerContainerFactory walletDebitBatchContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                                 ConnectionFactory connectionFactory,
+                                                                                 ListenerUtilization listenerUtilization,
+                                                                                 @Value("${wallet.debit.batch.size:100}") int batchSize,
+                                                                                 @Value("${wallet.debit.batch.receive-timeout:50ms}") Duration receiveTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        listenerUtilization.measure(factory);
+        return factory;
+    }
+
+    @Bean
+    public ListenerUtilization listenerUtilization(MeterRegistry meterRegistry, RabbitListenerEndpointRegistry endpointRegistry) {
+        return new ListenerUtilization(meterRegistry, endpointRegistry);
+    }
+
+    // Takes the place of Boot's default factory so every listener is measured, sized by spring.rabbitmq.listener.simple
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                               ConnectionFactory connectionFactory,
+                                                                               ListenerUtilization listenerUtilization) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        listenerUtilization.measure(factory);
+        return factory;
+    }
+
+    // Wallets of different users are created independently, consumers are added up to max-concurrency while the queue is busy
+    @Bean
+    public SimpleRabbitListenerContainerFactory walletCreationContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                               ConnectionFactory connectionFactory,
+                                                                               ListenerUtilization listenerUtilization,
+                                                                               @Value("${messaging.listener.wallet-creation.concurrency:1}") int concurrency,
+                                                                               @Value("${messaging.listener.wallet-creation.max-concurrency:1}") int maxConcurrency,
+                                                                               @Value("${messaging.listener.wallet-creation.prefetch:250}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        listenerUtilization.measure(factory);
+        return factory;
+    }
+
+    // Every publish is confirmed by the broker in the background and counted here. Each sender correlates its publishes
+    // and waits for their confirms with PublisherConfirms, failing on a nack or timeout
+    @Bean
+    public RabbitTemplateCustomizer publisherConfirmCallback(MeterRegistry meterRegistry) {
+        Counter acked = Counter.builder("messaging.publish.confirms").description("Publishes confirmed by the broker")
+                .tag("result", "ack").register(meterRegistry);
+        Counter nacked = Counter.builder("messaging.publish.confirms").description("Publishes confirmed by the broker")
+                .tag("result", "nack").register(meterRegistry);
+        return rabbitTemplate -> rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
+            if (ack) {
+                acked.increment();
+                return;
+            }
+            nacked.increment();
+            log.warn("The broker didn't take {}: {}", correlationData == null ? "a message" : correlationData.getId(), cause);
+        });
+    }
+
+    // Picked up by spring.rabbitmq.listener.simple.retry for every listener, batches included.
+    // A failed message waits in a retry stage instead of being requeued at the head of its queue
+    @Bean
+    public BackoffMessageRecoverer messageRecoverer(RabbitTemplate rabbitTemplate,
+                                                    MeterRegistry meterRegistry,
+                                                    @Value("${messaging.retry.initial-interval:1s}") Duration initialInterval,
+                                                    @Value("${messaging.retry.multiplier:4}") double multiplier,
+                                                    @Value("${messaging.retry.max-retries:4}") int maxRetries,
+                                                    @Value("${messaging.retry.confirm-timeout:5s}") Duration confirmTimeout) {
+        return new BackoffMessageRecoverer(rabbitTemplate, meterRegistry, initialInterval, multiplier, maxRetries, confirmTimeout);
+    }
+
+    @Bean
+    public Declarables retryStages(BackoffMessageRecoverer messageRecoverer) {
+        return messageRecoverer.retryStages();
+    }
+
+    @Bean
+    public DeadLetterReplayEndpoint deadLetterReplayEndpoint(RabbitTemplate rabbitTemplate,
+                                                             AmqpAdmin amqpAdmin,
+                                                             @Value("${wallet.debit.shards:4}") int shards,
+                                                             @Value("${messaging.retry.confirm-timeout:5s}") Duration confirmTimeout) {
+        List<String> queues = new ArrayList<>(List.of("WalletCreationQueue", "WalletDebitQueue"));
+        for (int shard = 0; shard < shards; shard++) {
+            queues.add(WalletDebitShardingConfig.shardQueue(shard));
+        }
+        return new DeadLetterReplayEndpoint(rabbitTemplate, amqpAdmin, queues, confirmTimeout);
+    }
+
+    // Schema names and versions have to match the ones registered in app-integration-api
+    @Bean
+    public VersionedJsonMessageConverter converter(ObjectMapper objectMapper,
+                                                   @Value("${messaging.write-java-serialization:false}") boolean writeJavaSerialization) {
+        VersionedJsonMessageConverter converter = new VersionedJsonMessageConverter(objectMapper, javaSerialization())
+                .register("wallet-debit", 1, WalletDebitDto.class)
+                .register("wallet-creation", 1, WalletCreationDto.class)
+                .register("debit-confirmation", 1, DebitConfirmationDto.class);
+        converter.setWriteJavaSerialization(writeJavaSerialization);
+        return converter;
+    }
+
+    private static SimpleMessageConverter javaSerialization() {
         SimpleMessageConverter converter = new SimpleMessageConverter();
         converter.setAllowedListPatterns(List.of("org.springframework.amqp.core.Message", "br.com.sysmap.bootcamp.dto.*", "java.util.*", "java.time.*", "java.math.*", "java.lang.Boolean"));
         return converter;
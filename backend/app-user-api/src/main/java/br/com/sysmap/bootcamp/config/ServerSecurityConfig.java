@@ -1,5 +1,7 @@
 package br.com.sysmap.bootcamp.config;
 
+import br.com.sysmap.bootcamp.common.messaging.DeadLetterReplayEndpoint;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -28,6 +30,8 @@ public class ServerSecurityConfig {
                         "/v3/api-docs/**",
                         "/v2/api-docs.yaml",
                         "/swagger-ui/**", "/swagger-ui.html").permitAll())
+                // Replaying dead letters moves messages between queues, only admins may list or replay them
+                .authorizeHttpRequests(authorize->authorize.requestMatchers(EndpointRequest.to(DeadLetterReplayEndpoint.class)).hasRole("ADMIN"))
                 .authorizeHttpRequests(authorize->authorize.anyRequest().authenticated())
                 .httpBasic(Customizer.withDefaults())
                 .build();
@@ -0,0 +1,112 @@
+package br.com.sysmap.bootcamp.config;
+
+import br.com.sysmap.bootcamp.common.messaging.BackoffMessageRecoverer;
+import br.com.sysmap.bootcamp.domain.listeners.WalletDebitShardListener;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.BatchMessageListener;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Wallet debits come through WalletDebitExchange, a consistent-hash exchange routing on the user email, so every debit of a user
+// lands on the same WalletDebitQueue.<shard>. Different users are debited in parallel, one user's debits stay in order
+@Configuration
+public class WalletDebitShardingConfig implements RabbitListenerConfigurer {
+
+    public static final String WALLET_DEBIT_EXCHANGE = "WalletDebitExchange";
+
+    private final WalletServices walletServices;
+    private final MessageConverter messageConverter;
+    private final BackoffMessageRecoverer messageRecoverer;
+    private final MeterRegistry meterRegistry;
+    private final SimpleRabbitListenerContainerFactory walletDebitBatchContainerFactory;
+    private final int shards;
+    private final boolean batchEnabled;
+    private final Duration lagWarning;
+
+    public WalletDebitShardingConfig(@Lazy WalletServices walletServices,
+                                     @Qualifier("converter") MessageConverter messageConverter,
+                                     BackoffMessageRecoverer messageRecoverer,
+                                     MeterRegistry meterRegistry,
+                                     @Qualifier("walletDebitBatchContainerFactory") SimpleRabbitListenerContainerFactory walletDebitBatchContainerFactory,
+                                     @Value("${wallet.debit.shards:4}") int shards,
+                                     @Value("${wallet.debit.batch.enabled:true}") boolean batchEnabled,
+                                     @Value("${wallet.debit.shard.lag-warning:30s}") Duration lagWarning) {
+        this.walletServices = walletServices;
+        this.messageConverter = messageConverter;
+        this.messageRecoverer = messageRecoverer;
+        this.meterRegistry = meterRegistry;
+        this.walletDebitBatchContainerFactory = walletDebitBatchContainerFactory;
+        this.shards = shards;
+        this.batchEnabled = batchEnabled;
+        this.lagWarning = lagWarning;
+    }
+
+    public static String shardQueue(int shard) {
+        return "WalletDebitQueue." + shard;
+    }
+
+    // Needs the rabbitmq_consistent_hash_exchange plugin. Changing the shard count only moves about 1/shards of the users,
+    // queues left over after lowering it have to be drained and deleted by hand
+    @Bean
+    public Declarables walletDebitShards() {
+        CustomExchange exchange = new CustomExchange(WALLET_DEBIT_EXCHANGE, "x-consistent-hash", true, false);
+        List<Declarable> declarables = new ArrayList<>();
+        declarables.add(exchange);
+        for (int shard = 0; shard < this.shards; shard++) {
+            // A second instance of the app stands by on each shard instead of consuming it out of order
+            Queue queue = QueueBuilder.durable(shardQueue(shard)).singleActiveConsumer().build();
+            declarables.add(queue);
+            // The routing key of a consistent-hash binding is its weight, every shard gets the same share
+            Binding binding = BindingBuilder.bind(queue).to(exchange).with("1").noargs();
+            declarables.add(binding);
+            declarables.add(new Queue(BackoffMessageRecoverer.deadLetterQueue(shardQueue(shard))));
+        }
+        return new Declarables(declarables);
+    }
+
+    @Bean
+    public WalletDebitShardListener walletDebitShardListener() {
+        return new WalletDebitShardListener(this.walletServices, this.messageConverter, this.messageRecoverer,
+                this.meterRegistry, this.shards, this.lagWarning);
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        WalletDebitShardListener listener = walletDebitShardListener();
+        for (int shard = 0; shard < this.shards; shard++) {
+            int current = shard;
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("walletDebitShard-" + shard);
+            endpoint.setQueueNames(shardQueue(shard));
+            endpoint.setConcurrency("1");
+            if (this.batchEnabled) {
+                endpoint.setBatchListener(true);
+                endpoint.setMessageListener((BatchMessageListener) messages -> listener.onMessages(current, messages));
+                registrar.registerEndpoint(endpoint, this.walletDebitBatchContainerFactory);
+            } else {
+                endpoint.setMessageListener(message -> listener.onMessage(current, message));
+                registrar.registerEndpoint(endpoint);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import br.com.sysmap.bootcamp.common.idempotency.IdempotentRequests;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+// A request sent with an Idempotency-Key, status stays null while the first attempt is still running
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "IDEMPOTENT_REQUESTS", indexes = @Index(name = "ix_idempotent_requests_created_at", columnList = "created_at"))
+public class IdempotentRequest implements IdempotentRequests.Request {
+
+    // Operation, user and the client's key
+    @Id
+    @Column(name = "request_key", updatable = false, nullable = false, length = 400)
+    private String requestKey;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "status")
+    private Integer status;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "body", length = 65535)
+    private String body;
+
+    // SHA-256 of the request payload, the key can't be reused for a different request. Null on keys stored before it existed
+    @Column(name = "request_hash", updatable = false, length = 64)
+    private String requestHash;
+}
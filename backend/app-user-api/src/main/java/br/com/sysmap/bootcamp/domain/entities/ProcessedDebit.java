@@ -0,0 +1,39 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A sale or cart debit already answered, the same debit sent again gets the same answer without charging twice
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "PROCESSED_DEBITS")
+public class ProcessedDebit implements Persistable<UUID> {
+
+    @Id
+    @Column(name = "reference_id", updatable = false, nullable = false)
+    private UUID referenceId;
+
+    @Column(name = "confirmed", nullable = false)
+    private Boolean confirmed;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+    @Override
+    public UUID getId() {
+        return this.referenceId;
+    }
+
+    // Only ever inserted, so saveAll persists in one JDBC batch instead of selecting every id first
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.sysmap.bootcamp.domain.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,7 +11,7 @@ import java.io.Serializable;
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Entity
-@Table(name = "USERS")
+@Table(name = "USERS", indexes = @Index(name = "ix_users_email", columnList = "email"))
 public class Users{
 
     @Id
@@ -24,6 +25,8 @@ public class Users{
     @Column(name = "email")
     private String email;
 
+    // The bcrypt hash doubles as the Basic token's secret, it never leaves the service in a response
+    @JsonIgnore
     @Column(name = "password")
     private String password;
 
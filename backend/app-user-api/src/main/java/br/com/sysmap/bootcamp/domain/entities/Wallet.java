@@ -20,6 +20,7 @@ public class Wallet{
     @Column(name = "id", updatable = false, nullable = false)
     private Long id;
 
+    // Snapshot of the ledger up to ledgerSeq, WalletSnapshotter moves it forward
     @Column(name = "balance")
     private BigDecimal balance;
 
@@ -29,6 +30,10 @@ public class Wallet{
     @Column(name = "last_update")
     private LocalDateTime lastUpdate;
 
+    @Builder.Default
+    @Column(name = "ledger_seq")
+    private Long ledgerSeq = 0L;
+
     @OneToOne
     @JoinColumn(name = "user_id")
     private Users user;
@@ -0,0 +1,51 @@
+package br.com.sysmap.bootcamp.domain.entities;
+
+import br.com.sysmap.bootcamp.domain.enums.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// One change of a wallet, never updated or deleted. The balance is the wallet snapshot plus the entries after its ledgerSeq
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(name = "WALLET_LEDGER", uniqueConstraints = @UniqueConstraint(name = "ux_wallet_ledger_user_seq", columnNames = {"user_id", "seq"}))
+public class WalletLedgerEntry {
+
+    // Ids come in blocks of 50, so appends don't wait on the sequence and can go out as one batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "wallet_ledger_seq")
+    @SequenceGenerator(name = "wallet_ledger_seq", sequenceName = "WALLET_LEDGER_SEQ", allocationSize = 50)
+    @Column(name = "id", updatable = false, nullable = false)
+    private Long id;
+
+    @Column(name = "user_id", updatable = false, nullable = false)
+    private Long userId;
+
+    // Position in the wallet's history, the last one + 1. Of two appends that read the same last one, the unique key lets one in
+    @Column(name = "seq", updatable = false, nullable = false)
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", updatable = false, nullable = false)
+    private LedgerEntryType type;
+
+    // Signed, debits are negative
+    @Column(name = "amount", updatable = false, nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "points", updatable = false, nullable = false)
+    private Long points;
+
+    // Sale or cart of a debit
+    @Column(name = "reference_id", updatable = false)
+    private UUID referenceId;
+
+    @Column(name = "created_at", updatable = false, nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package br.com.sysmap.bootcamp.domain.enums;
+
+public enum LedgerEntryType {
+    CREDIT,
+    DEBIT
+}
@@ -8,7 +8,7 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Slf4j
-@RabbitListener(queues = "WalletCreationQueue")
+@RabbitListener(queues = "WalletCreationQueue", containerFactory = "walletCreationContainerFactory")
 public class WalletCreationListener {
 
     @Autowired
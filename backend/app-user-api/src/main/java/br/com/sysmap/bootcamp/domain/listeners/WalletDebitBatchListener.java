@@ -0,0 +1,20 @@
+package br.com.sysmap.bootcamp.domain.listeners;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+@Slf4j
+public class WalletDebitBatchListener {
+    @Autowired
+    private WalletDebitShardListener walletDebitShardListener;
+
+    // Same handling as the shards, a failing debit doesn't hold back the rest of its batch
+    @RabbitListener(queues = "WalletDebitQueue", containerFactory = "walletDebitBatchContainerFactory")
+    public void walletDebitListener(List<Message> messages) {
+        walletDebitShardListener.debit(messages);
+    }
+}
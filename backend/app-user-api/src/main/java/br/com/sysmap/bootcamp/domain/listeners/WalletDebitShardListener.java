@@ -0,0 +1,162 @@
+package br.com.sysmap.bootcamp.domain.listeners;
+
+import br.com.sysmap.bootcamp.common.messaging.BackoffMessageRecoverer;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Consumes one WalletDebitQueue shard. Each shard has a single active consumer, so a user's debits are applied in the order they were published
+@Slf4j
+public class WalletDebitShardListener {
+
+    private final WalletServices walletServices;
+    private final MessageConverter messageConverter;
+    private final BackoffMessageRecoverer messageRecoverer;
+    private final List<Duration> retryDelays;
+    private final Duration lagWarning;
+    private final List<Timer> lag = new ArrayList<>();
+
+    public WalletDebitShardListener(WalletServices walletServices, MessageConverter messageConverter, BackoffMessageRecoverer messageRecoverer,
+                                    MeterRegistry meterRegistry, int shards, Duration lagWarning) {
+        this.walletServices = walletServices;
+        this.messageConverter = messageConverter;
+        this.messageRecoverer = messageRecoverer;
+        this.retryDelays = messageRecoverer.delays();
+        this.lagWarning = lagWarning;
+        for (int shard = 0; shard < shards; shard++) {
+            this.lag.add(Timer.builder("wallet.debit.shard.lag")
+                    .description("Time between a wallet debit being published and its shard consuming it")
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry));
+        }
+    }
+
+    public void onMessages(int shard, List<Message> messages) {
+        Duration maxLag = Duration.ZERO;
+        for (Message message : messages) {
+            Duration messageLag = recordLag(shard, message);
+            if (messageLag.compareTo(maxLag) > 0) {
+                maxLag = messageLag;
+            }
+        }
+        if (maxLag.compareTo(this.lagWarning) > 0) {
+            log.warn("Wallet debit shard {} is {} behind", shard, maxLag);
+        }
+        debit(messages);
+    }
+
+    // A debit that fails would fail its whole batch, so the batch is applied again one debit at a time.
+    // A debit that fails there is retried in place, a retry stage would bring it back behind its user's later debits.
+    // One that still fails is dead-lettered and so are its user's later debits in the batch, right behind it,
+    // so a replay applies them in order. A batch that failed before its commit confirmed nothing,
+    // one whose confirmations the broker refused gets the same answers again from the processed debits.
+    // The confirmations of the debits applied one at a time go out back to back and their confirms are waited for together
+    public void debit(List<Message> messages) {
+        List<Message> readable = new ArrayList<>(messages.size());
+        List<WalletDebitDto> walletDebitDtos = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                walletDebitDtos.add((WalletDebitDto) this.messageConverter.fromMessage(message));
+                readable.add(message);
+            } catch (MessageConversionException e) {
+                this.messageRecoverer.recover(message, e);
+            }
+        }
+        if (walletDebitDtos.isEmpty()) {
+            return;
+        }
+        try {
+            this.walletServices.debitWallets(walletDebitDtos);
+        } catch (RuntimeException batchFailure) {
+            log.warn("Wallet debit batch of {} failed, debiting them one at a time: {}", walletDebitDtos.size(), batchFailure.toString());
+            List<List<CorrelationData>> confirms = new ArrayList<>(walletDebitDtos.size());
+            Set<String> held = new HashSet<>();
+            for (int i = 0; i < walletDebitDtos.size(); i++) {
+                WalletDebitDto walletDebitDto = walletDebitDtos.get(i);
+                confirms.add(List.of());
+                if (held.contains(walletDebitDto.getEmail())) {
+                    this.messageRecoverer.deadLetter(readable.get(i),
+                            new IllegalStateException("Held behind a dead-lettered debit of " + walletDebitDto.getEmail()));
+                    continue;
+                }
+                try {
+                    confirms.set(i, debitInPlace(walletDebitDto));
+                } catch (RuntimeException e) {
+                    held.add(walletDebitDto.getEmail());
+                    this.messageRecoverer.deadLetter(readable.get(i), e);
+                }
+            }
+            for (int i = 0; i < confirms.size(); i++) {
+                try {
+                    this.walletServices.awaitConfirms(confirms.get(i));
+                } catch (RuntimeException e) {
+                    this.messageRecoverer.recover(readable.get(i), e);
+                }
+            }
+        }
+    }
+
+    public void onMessage(int shard, Message message) {
+        Duration messageLag = recordLag(shard, message);
+        if (messageLag.compareTo(this.lagWarning) > 0) {
+            log.warn("Wallet debit shard {} is {} behind", shard, messageLag);
+        }
+        WalletDebitDto walletDebitDto = (WalletDebitDto) this.messageConverter.fromMessage(message);
+        List<CorrelationData> confirms;
+        try {
+            confirms = debitInPlace(walletDebitDto);
+        } catch (RuntimeException e) {
+            this.messageRecoverer.deadLetter(message, e);
+            return;
+        }
+        this.walletServices.awaitConfirms(confirms);
+    }
+
+    // Retried on the recoverer's delays while the shard waits, whatever fails a debit here most likely fails the next ones too
+    private List<CorrelationData> debitInPlace(WalletDebitDto walletDebitDto) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return this.walletServices.debitWalletUnconfirmed(walletDebitDto);
+            } catch (RuntimeException e) {
+                if (attempt >= this.retryDelays.size()) {
+                    throw e;
+                }
+                log.warn("Wallet debit of {} failed, retrying it in {}: {}", walletDebitDto.getEmail(), this.retryDelays.get(attempt), e.toString());
+                sleep(this.retryDelays.get(attempt));
+            }
+        }
+    }
+
+    private static void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a wallet debit", e);
+        }
+    }
+
+    // Messages published without a timestamp count as no lag
+    private Duration recordLag(int shard, Message message) {
+        Date timestamp = message.getMessageProperties().getTimestamp();
+        if (timestamp == null) {
+            return Duration.ZERO;
+        }
+        Duration messageLag = Duration.ofMillis(Math.max(0, System.currentTimeMillis() - timestamp.getTime()));
+        this.lag.get(shard).record(messageLag);
+        return messageLag;
+    }
+}
@@ -0,0 +1,18 @@
+package br.com.sysmap.bootcamp.domain.repositories;
+
+import br.com.sysmap.bootcamp.domain.entities.ProcessedDebit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface ProcessedDebitRepository extends JpaRepository<ProcessedDebit, UUID> {
+
+    // A plain insert, save would look the id up first to decide between insert and merge
+    @Modifying
+    @Query(value = "insert into PROCESSED_DEBITS (reference_id, confirmed, processed_at) values (:referenceId, :confirmed, :processedAt)", nativeQuery = true)
+    int record(@Param("referenceId") UUID referenceId, @Param("confirmed") boolean confirmed, @Param("processedAt") LocalDateTime processedAt);
+}
@@ -0,0 +1,23 @@
+package br.com.sysmap.bootcamp.domain.repositories;
+
+import br.com.sysmap.bootcamp.domain.entities.WalletLedgerEntry;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface WalletLedgerRepository extends JpaRepository<WalletLedgerEntry, Long> {
+
+    // Entries after the snapshot, a range scan on (user_id, seq) as short as the time since the last snapshot
+    @Query("select new br.com.sysmap.bootcamp.dto.LedgerTailDto(coalesce(sum(e.amount), 0), coalesce(sum(e.points), 0), coalesce(max(e.seq), :seq)) "
+            + "from WalletLedgerEntry e where e.userId = :userId and e.seq > :seq")
+    LedgerTailDto findTail(@Param("userId") Long userId, @Param("seq") Long seq);
+
+    // Tails of many wallets at once, wallets with nothing after their snapshot aren't returned
+    @Query("select new br.com.sysmap.bootcamp.dto.LedgerTailDto(e.userId, sum(e.amount), sum(e.points), max(e.seq)) "
+            + "from WalletLedgerEntry e, Wallet w where w.user.id = e.userId and e.userId in :userIds and e.seq > w.ledgerSeq group by e.userId")
+    List<LedgerTailDto> findTails(@Param("userIds") Collection<Long> userIds);
+}
@@ -2,12 +2,46 @@ package br.com.sysmap.bootcamp.domain.repositories;
 
 import br.com.sysmap.bootcamp.domain.entities.Users;
 import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
 
     Optional<Wallet> findByUser(Users user);
 
+    // Credits don't lock the wallet, two appends of the same seq are told apart by the (user_id, seq) unique key
+    @EntityGraph(attributePaths = "user")
+    @Query("select w from Wallet w where w.user.email = :email")
+    Optional<Wallet> findForCredit(@Param("email") String email);
+
+    // Debits of a user already come one at a time from their shard, the lock keeps the batch and the redelivered
+    // single debits from checking the same balance together. Credits never wait on it
+    @EntityGraph(attributePaths = "user")
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.user.email = :email")
+    Optional<Wallet> lockForDebit(@Param("email") String email);
+
+    // The batch form of lockForDebit, in id order so two batches never wait on each other's wallets in a cycle
+    @EntityGraph(attributePaths = "user")
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select w from Wallet w where w.user.email in :emails order by w.id")
+    List<Wallet> lockAllForDebit(@Param("emails") Collection<String> emails);
+
+    // Wallets with entries after their snapshot, the ones busy with a debit are left for the next round
+    @EntityGraph(attributePaths = "user")
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select w from Wallet w where exists (select e.id from WalletLedgerEntry e where e.userId = w.user.id and e.seq > w.ledgerSeq)")
+    List<Wallet> findWithLedgerTail(Limit limit);
 }
@@ -1,5 +1,6 @@
 package br.com.sysmap.bootcamp.domain.services;
 
+import br.com.sysmap.bootcamp.common.messaging.PublisherConfirms;
 import br.com.sysmap.bootcamp.domain.entities.Users;
 import br.com.sysmap.bootcamp.domain.mapper.UserMapper;
 import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
@@ -13,8 +14,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import br.com.sysmap.bootcamp.errors.UserAlreadyExistsException;
 import org.apache.coyote.BadRequestException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -26,11 +30,13 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -42,6 +48,13 @@ public class UsersServices implements UserDetailsService {
 
     private final RabbitTemplate rabbitTemplate;
 
+    // Users allowed onto the management endpoints that change state, like replaying dead letters
+    @Value("${security.admins:}")
+    private Set<String> admins;
+
+    @Value("${messaging.retry.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
     @Transactional(propagation = Propagation.REQUIRED)
     public Users save(Users user){
         return this.usersRepository.save(user);
@@ -63,7 +76,10 @@ public class UsersServices implements UserDetailsService {
                 .user(userDto)
                 .build();
 
-        this.rabbitTemplate.convertAndSend("WalletCreationQueue", walletDto);
+        // A wallet the broker didn't take fails the sign-up instead of leaving the user without one unnoticed
+        CorrelationData correlation = new CorrelationData();
+        this.rabbitTemplate.convertAndSend("WalletCreationQueue", walletDto, correlation);
+        PublisherConfirms.await(List.of(correlation), this.confirmTimeout);
 
         return walletDto;
     }
@@ -88,7 +104,15 @@ public class UsersServices implements UserDetailsService {
             // Update the UserDto with the generated ID
             userDto = userDto.toBuilder().id(savedUser.getId()).build();
 
-            this.createWallet(userDto);
+            // The user is committed before its wallet creation is published, so the listener always finds it.
+            // A wallet creation the broker refused or didn't confirm in time removes the user again,
+            // the sign-up can be sent again instead of failing on an existing user without a wallet
+            try {
+                this.createWallet(userDto);
+            } catch (RuntimeException e) {
+                this.usersRepository.deleteById(savedUser.getId());
+                throw e;
+            }
 
             return savedUser;
 
@@ -120,10 +144,18 @@ public class UsersServices implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         Optional<Users> optionalUser = this.usersRepository.findByEmail(username);
-        return optionalUser.map(user -> new User(user.getEmail(), user.getPassword(), new ArrayList<GrantedAuthority>()))
+        return optionalUser.map(user -> new User(user.getEmail(), user.getPassword(), authorities(user.getEmail())))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
 
+    private List<GrantedAuthority> authorities(String email) {
+        return this.admins.contains(email) ? List.of(new SimpleGrantedAuthority("ROLE_ADMIN")) : new ArrayList<>();
+    }
+
+    public boolean exists(Long id) {
+        return this.usersRepository.existsById(id);
+    }
+
     public Users findByEmail(String email){
        Optional<Users> user = this.usersRepository.findByEmail(email);
 
@@ -0,0 +1,53 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.config.WalletDebitShardingConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Publishes how many debits wait on each WalletDebitQueue shard, a shard growing alone points at a hot user
+@Slf4j
+@Component
+public class WalletDebitShardMonitor {
+
+    private final AmqpAdmin amqpAdmin;
+    private final List<AtomicLong> depth = new ArrayList<>();
+
+    public WalletDebitShardMonitor(AmqpAdmin amqpAdmin,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${wallet.debit.shards:4}") int shards) {
+        this.amqpAdmin = amqpAdmin;
+        for (int shard = 0; shard < shards; shard++) {
+            AtomicLong shardDepth = new AtomicLong();
+            Gauge.builder("wallet.debit.shard.depth", shardDepth, AtomicLong::get)
+                    .description("Wallet debits waiting on the shard queue")
+                    .tag("shard", String.valueOf(shard))
+                    .register(meterRegistry);
+            this.depth.add(shardDepth);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.debit.shard.depth-interval:PT10S}")
+    public void poll() {
+        for (int shard = 0; shard < this.depth.size(); shard++) {
+            try {
+                QueueInformation information = this.amqpAdmin.getQueueInfo(WalletDebitShardingConfig.shardQueue(shard));
+                if (information != null) {
+                    this.depth.get(shard).set(information.getMessageCount());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Couldn't read the depth of wallet debit shard {}", shard, e);
+                return;
+            }
+        }
+    }
+}
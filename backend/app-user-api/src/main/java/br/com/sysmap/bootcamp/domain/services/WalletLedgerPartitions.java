@@ -0,0 +1,115 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+// Keeps WALLET_LEDGER partitioned by month on PostgreSQL, so old months can be detached or archived without touching new appends.
+// Hibernate creates the table as a plain one, the first run turns it into a partitioned table with the same columns.
+// A unique key of a partitioned table has to include created_at, so (user_id, seq) is unique per partition instead
+
+@Slf4j
+@Component
+public class WalletLedgerPartitions {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+
+    public WalletLedgerPartitions(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${wallet.ledger.partition-months-ahead:2}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${wallet.ledger.partition-cron:0 0 3 * * *}")
+    public void maintain() {
+        try {
+            if (!isPostgres()) {
+                return;
+            }
+            this.transactionTemplate.executeWithoutResult(status -> {
+                if (!isPartitioned()) {
+                    partition();
+                }
+                createPartitions(YearMonth.now(), YearMonth.now().plusMonths(this.monthsAhead));
+            });
+        } catch (RuntimeException e) {
+            log.warn("Couldn't maintain the wallet ledger partitions", e);
+            return;
+        }
+        uniqueSeq("wallet_ledger_default");
+        for (YearMonth month = YearMonth.now(); !month.isAfter(YearMonth.now().plusMonths(this.monthsAhead)); month = month.plusMonths(1)) {
+            uniqueSeq(partition(month));
+        }
+    }
+
+    // Outside the partitioning transaction, a month with the duplicate seqs credits appended before they locked the wallet
+    // exclusively keeps only the plain index
+    private void uniqueSeq(String partition) {
+        try {
+            this.jdbcTemplate.execute("create unique index if not exists ux_" + partition + "_user_seq on " + partition + " (user_id, seq)");
+        } catch (DataAccessException e) {
+            log.warn("Couldn't make (user_id, seq) unique on {}: {}", partition, e.getMessage());
+        }
+    }
+
+    private boolean isPostgres() {
+        return "PostgreSQL".equals(this.jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+    }
+
+    private boolean isPartitioned() {
+        Integer partitioned = this.jdbcTemplate.queryForObject(
+                "select count(*) from pg_partitioned_table p join pg_class c on c.oid = p.partrelid where c.relname = 'wallet_ledger'",
+                Integer.class);
+        return partitioned != null && partitioned > 0;
+    }
+
+    // The primary key of a partitioned table has to include the partition key
+    private void partition() {
+        this.jdbcTemplate.execute("alter table wallet_ledger rename to wallet_ledger_unpartitioned");
+        this.jdbcTemplate.execute("alter index if exists ix_wallet_ledger_user_seq rename to ix_wallet_ledger_unpartitioned_user_seq");
+        this.jdbcTemplate.execute("create table wallet_ledger (like wallet_ledger_unpartitioned including defaults including constraints) "
+                + "partition by range (created_at)");
+        this.jdbcTemplate.execute("alter table wallet_ledger add primary key (id, created_at)");
+        this.jdbcTemplate.execute("create index ix_wallet_ledger_user_seq on wallet_ledger (user_id, seq)");
+        // Entries past the last monthly partition land here until their month is created
+        this.jdbcTemplate.execute("create table wallet_ledger_default partition of wallet_ledger default");
+
+        Timestamp oldest = this.jdbcTemplate.queryForObject("select min(created_at) from wallet_ledger_unpartitioned", Timestamp.class);
+        if (oldest != null) {
+            createPartitions(YearMonth.from(oldest.toLocalDateTime()), YearMonth.now());
+        }
+        this.jdbcTemplate.execute("insert into wallet_ledger select * from wallet_ledger_unpartitioned");
+        this.jdbcTemplate.execute("drop table wallet_ledger_unpartitioned");
+        log.info("Partitioned wallet_ledger by month");
+    }
+
+    private void createPartitions(YearMonth from, YearMonth to) {
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            this.jdbcTemplate.execute("create table if not exists " + partition(month)
+                    + " partition of wallet_ledger for values from ('" + month.atDay(1) + "') to ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+    }
+
+    private static String partition(YearMonth month) {
+        return "wallet_ledger_" + month.format(PARTITION_SUFFIX);
+    }
+}
@@ -1,40 +1,110 @@
 package br.com.sysmap.bootcamp.domain.services;
 
+import br.com.sysmap.bootcamp.common.messaging.PublisherConfirms;
+import br.com.sysmap.bootcamp.domain.entities.ProcessedDebit;
 import br.com.sysmap.bootcamp.domain.entities.Users;
 import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.entities.WalletLedgerEntry;
+import br.com.sysmap.bootcamp.domain.enums.LedgerEntryType;
 import br.com.sysmap.bootcamp.domain.enums.WeekDayPoints;
 import br.com.sysmap.bootcamp.domain.mapper.WalletMapper;
+import br.com.sysmap.bootcamp.domain.repositories.ProcessedDebitRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
 import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
 import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
 import br.com.sysmap.bootcamp.dto.WalletCreationDto;
 import br.com.sysmap.bootcamp.dto.WalletDebitDto;
 import br.com.sysmap.bootcamp.errors.InvalidValueException;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
 import br.com.sysmap.bootcamp.errors.WalletWasNotFoundException;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class WalletServices {
 
     private final WalletRepository walletRepository;
 
+    private final ProcessedDebitRepository processedDebitRepository;
+
     private final UsersServices usersServices;
 
     private final RabbitTemplate rabbitTemplate;
 
+    private final WalletLedgerRepository walletLedgerRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int creditMaxAttempts;
+
+    private final Duration creditBackoff;
+
+    private final Counter creditsCommitted;
+
+    private final Counter creditConflicts;
+
+    private final Counter creditsExhausted;
+
+    private final Counter debitConflicts;
+
+    @Value("${messaging.retry.confirm-timeout:5s}")
+    private Duration confirmTimeout;
+
+    public WalletServices(WalletRepository walletRepository,
+                          ProcessedDebitRepository processedDebitRepository,
+                          UsersServices usersServices,
+                          RabbitTemplate rabbitTemplate,
+                          WalletLedgerRepository walletLedgerRepository,
+                          TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${wallet.credit.max-attempts:5}") int creditMaxAttempts,
+                          @Value("${wallet.credit.backoff:10ms}") Duration creditBackoff) {
+        this.walletRepository = walletRepository;
+        this.processedDebitRepository = processedDebitRepository;
+        this.usersServices = usersServices;
+        this.rabbitTemplate = rabbitTemplate;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.creditMaxAttempts = creditMaxAttempts;
+        this.creditBackoff = creditBackoff;
+        // Conflict rate is wallet.credit.conflicts over wallet.credit.committed plus wallet.credit.conflicts
+        this.creditsCommitted = meterRegistry.counter("wallet.credit.committed");
+        this.creditConflicts = meterRegistry.counter("wallet.credit.conflicts");
+        this.creditsExhausted = meterRegistry.counter("wallet.credit.exhausted");
+        this.debitConflicts = meterRegistry.counter("wallet.debit.conflicts");
+    }
+
     public Optional<Wallet> getAuthenticatedUserWallet() throws RuntimeException {
         String username = SecurityContextHolder.getContext().getAuthentication()
                 .getPrincipal().toString();
@@ -51,7 +121,7 @@ public class WalletServices {
             throw new WalletWasNotFoundException("Wallet not found");
         }
 
-        return wallet;
+        return wallet.map(snapshot -> materialize(snapshot, this.walletLedgerRepository.findTail(user.getId(), snapshot.getLedgerSeq())));
     }
 
     @Transactional(propagation = Propagation.REQUIRED)
@@ -66,6 +136,11 @@ public class WalletServices {
     }
 
     public Wallet createWallet(WalletCreationDto walletDto){
+        // A sign-up removes its user when the wallet creation wasn't confirmed in time, one the broker took after all creates nothing
+        if (walletDto.getUser() != null && walletDto.getUser().getId() != null && !this.usersServices.exists(walletDto.getUser().getId())) {
+            log.warn("Skipped the wallet of user {}, the user no longer exists", walletDto.getUser().getId());
+            return null;
+        }
         try {
             Wallet wallet = WalletMapper.INSTANCE.toEntity(walletDto);
 
@@ -82,44 +157,285 @@ public class WalletServices {
             throw new InvalidValueException("Value has to be a number");
         }
 
-        Optional<Wallet> wallet = this.getAuthenticatedUserWallet();
+        String username = SecurityContextHolder.getContext().getAuthentication()
+                .getPrincipal().toString();
+        BigDecimal amount = new BigDecimal(value);
+
+        // A credit that lost its seq to another append of the wallet reads the tail again and retries, each attempt in its own transaction
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Wallet credited = this.transactionTemplate.execute(status -> appendCredit(username, amount));
+                this.creditsCommitted.increment();
+                return credited;
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                this.creditConflicts.increment();
+                if (attempt >= this.creditMaxAttempts) {
+                    this.creditsExhausted.increment();
+                    log.warn("Credit of wallet of {} gave up after {} conflicts", username, attempt);
+                    throw new WalletUpdateConflictException("Wallet is being updated, try again");
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    // A credit is an append, the wallet row is neither locked nor rewritten
+    private Wallet appendCredit(String username, BigDecimal amount) {
+        Wallet wallet = this.walletRepository.findForCredit(username).orElseThrow(() -> walletNotFound(username));
+        LedgerTailDto tail = this.walletLedgerRepository.findTail(wallet.getUser().getId(), wallet.getLedgerSeq());
+        this.walletLedgerRepository.saveAndFlush(ledgerEntry(wallet, tail, LedgerEntryType.CREDIT, amount, 0L, null,
+                LocalDateTime.now(ZoneId.of("America/Sao_Paulo"))));
 
-        Wallet newWallet = wallet.get().toBuilder().balance(wallet.get().getBalance().add(new BigDecimal(value))).build();
+        Wallet credited = materialize(wallet, tail);
+        return credited.toBuilder().balance(credited.getBalance().add(amount)).build();
+    }
 
-        return save(newWallet);
+    // Full jitter, a random wait up to backoff * 2^(attempt - 1), so the retries of a hot wallet spread out
+    private void backOff(int attempt) {
+        long maxWait = this.creditBackoff.toMillis() << Math.min(attempt - 1, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxWait + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WalletUpdateConflictException("Wallet is being updated, try again");
+        }
     }
 
     public void debitWallet(WalletDebitDto walletDebitDto) {
-        Users user = usersServices.findByEmail(walletDebitDto.getEmail());
-        Optional<Wallet> wallet = walletRepository.findByUser(user);
-        Wallet returnedWallet = wallet.orElseThrow(() -> new WalletWasNotFoundException("Wallet not found"));
+        awaitConfirms(debitWalletUnconfirmed(walletDebitDto));
+    }
+
+    // debitWallet without waiting for the broker to confirm the debit's confirmation. Its confirm is returned once the debit
+    // committed, so the debits of a failed batch can be applied one at a time and have their confirms waited for together
+    public List<CorrelationData> debitWalletUnconfirmed(WalletDebitDto walletDebitDto) {
+        List<CorrelationData> confirms = new ArrayList<>(1);
+        retryConflicts(() -> applyDebit(walletDebitDto, confirms));
+        return confirms;
+    }
 
-        Long pointsToAdd = (long) WeekDayPoints.valueOf(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")).getDayOfWeek().name()).getPoints();
-        BigDecimal value = walletDebitDto.getValue();
+    // Fails on the first confirmation the broker refused or didn't confirm within messaging.retry.confirm-timeout
+    public void awaitConfirms(List<CorrelationData> confirms) {
+        PublisherConfirms.await(confirms, this.confirmTimeout);
+    }
 
-        if(returnedWallet.getBalance().compareTo(value) < 0){
-            DebitConfirmationDto debitConfirmationDto = DebitConfirmationDto.builder()
-                    .userEmail(user.getEmail())
-                    .isDebitConfirmed(false)
-                    .idSpotify(walletDebitDto.getIdSpotify())
-                    .build();
+    private void applyDebit(WalletDebitDto walletDebitDto, List<CorrelationData> confirms) {
+        // Sales waiting too long for their confirmation are debited again, the first answer is repeated.
+        // That holds for a cancellation too: one arriving after its debit was charged gets the confirmation
+        UUID referenceId = referenceId(walletDebitDto);
+        Optional<ProcessedDebit> processed = referenceId == null ? Optional.empty() : this.processedDebitRepository.findById(referenceId);
+        if (processed.isPresent()) {
+            confirmDebit(walletDebitDto, walletDebitDto.getEmail(), processed.get().getConfirmed(), confirms);
+            return;
+        }
+        if (isCancellation(walletDebitDto, referenceId)) {
+            this.processedDebitRepository.record(referenceId, false, LocalDateTime.now(ZoneId.of("America/Sao_Paulo")));
+            confirmDebit(walletDebitDto, walletDebitDto.getEmail(), false, confirms);
+            return;
+        }
 
-            rabbitTemplate.convertAndSend("DebitConfirmationQueue", debitConfirmationDto);
+        // The debit holds the wallet lock from the balance check until its entry is appended
+        Optional<Wallet> locked = this.walletRepository.lockForDebit(walletDebitDto.getEmail());
+        boolean confirmed = false;
+        if (locked.isEmpty()) {
+            // Rejected like in a batch, retrying can't make the wallet appear
+            log.warn("Rejected a debit of {}, no wallet was found", walletDebitDto.getEmail());
         } else {
-            returnedWallet = returnedWallet.toBuilder()
-                    .balance(returnedWallet.getBalance().subtract(value))
-                    .points(returnedWallet.getPoints() + pointsToAdd)
-                    .build();
+            Wallet wallet = locked.get();
+            LedgerTailDto tail = this.walletLedgerRepository.findTail(wallet.getUser().getId(), wallet.getLedgerSeq());
+            confirmed = wallet.getBalance().add(tail.getBalance()).compareTo(walletDebitDto.getValue()) >= 0;
+            if (confirmed) {
+                append(wallet, tail, LedgerEntryType.DEBIT, walletDebitDto.getValue().negate(), pointsFor(walletDebitDto), referenceId);
+            }
+        }
+        if (referenceId != null) {
+            this.processedDebitRepository.record(referenceId, confirmed, LocalDateTime.now(ZoneId.of("America/Sao_Paulo")));
+        }
+        confirmDebit(walletDebitDto, walletDebitDto.getEmail(), confirmed, confirms);
+    }
 
-            this.save(returnedWallet);
+    // debitWallet for a batch of debits in one transaction: one query locks the wallets with their users, one more reads
+    // their ledger tails, entries and processed debits go out in JDBC batches and the confirmations over one channel
+    public void debitWallets(List<WalletDebitDto> walletDebitDtos) {
+        retryConflicts(() -> applyDebits(walletDebitDtos));
+    }
 
-            DebitConfirmationDto debitConfirmationDto = DebitConfirmationDto.builder()
-                    .userEmail(user.getEmail())
-                    .isDebitConfirmed(true)
-                    .idSpotify(walletDebitDto.getIdSpotify())
-                    .build();
+    private void applyDebits(List<WalletDebitDto> walletDebitDtos) {
+        Map<UUID, Boolean> answered = new HashMap<>();
+        Set<UUID> referenceIds = walletDebitDtos.stream().map(this::referenceId).filter(Objects::nonNull).collect(Collectors.toSet());
+        this.processedDebitRepository.findAllById(referenceIds)
+                .forEach(processed -> answered.put(processed.getReferenceId(), processed.getConfirmed()));
 
-            rabbitTemplate.convertAndSend("DebitConfirmationQueue", debitConfirmationDto);
+        Set<String> emails = walletDebitDtos.stream()
+                .filter(walletDebitDto -> !answered.containsKey(referenceId(walletDebitDto)))
+                .filter(walletDebitDto -> !isCancellation(walletDebitDto, referenceId(walletDebitDto)))
+                .map(WalletDebitDto::getEmail)
+                .collect(Collectors.toSet());
+        Map<String, Wallet> wallets = new HashMap<>();
+        Map<Long, LedgerTailDto> tails = new HashMap<>();
+        if (!emails.isEmpty()) {
+            this.walletRepository.lockAllForDebit(emails).forEach(wallet -> wallets.put(wallet.getUser().getEmail(), wallet));
         }
+        if (!wallets.isEmpty()) {
+            this.walletLedgerRepository.findTails(wallets.values().stream().map(wallet -> wallet.getUser().getId()).toList())
+                    .forEach(tail -> tails.put(tail.getUserId(), tail));
+        }
+
+        LocalDateTime now = LocalDateTime.now(ZoneId.of("America/Sao_Paulo"));
+        List<WalletLedgerEntry> entries = new ArrayList<>();
+        List<ProcessedDebit> processedDebits = new ArrayList<>();
+        List<DebitConfirmationDto> confirmations = new ArrayList<>();
+        for (WalletDebitDto walletDebitDto : walletDebitDtos) {
+            UUID referenceId = referenceId(walletDebitDto);
+            if (referenceId != null && answered.containsKey(referenceId)) {
+                confirmations.add(confirmation(walletDebitDto, walletDebitDto.getEmail(), answered.get(referenceId)));
+                continue;
+            }
+
+            boolean confirmed = false;
+            Wallet wallet = wallets.get(walletDebitDto.getEmail());
+            if (isCancellation(walletDebitDto, referenceId)) {
+                log.info("Canceled the debit of {} before it was charged", referenceId);
+            } else if (wallet == null) {
+                // One unknown wallet doesn't fail the batch, its sale gets a rejection
+                log.warn("Rejected a debit of {}, no wallet was found", walletDebitDto.getEmail());
+            } else {
+                LedgerTailDto tail = tails.computeIfAbsent(wallet.getUser().getId(),
+                        userId -> new LedgerTailDto(userId, BigDecimal.ZERO, 0L, wallet.getLedgerSeq()));
+                confirmed = wallet.getBalance().add(tail.getBalance()).compareTo(walletDebitDto.getValue()) >= 0;
+                if (confirmed) {
+                    Long points = pointsFor(walletDebitDto);
+                    entries.add(ledgerEntry(wallet, tail, LedgerEntryType.DEBIT, walletDebitDto.getValue().negate(), points, referenceId, now));
+                    // The next debit of this wallet in the batch sees this one
+                    tail.setBalance(tail.getBalance().subtract(walletDebitDto.getValue()));
+                    tail.setPoints(tail.getPoints() + points);
+                    tail.setSeq(tail.getSeq() + 1);
+                }
+            }
+            if (referenceId != null) {
+                answered.put(referenceId, confirmed);
+                processedDebits.add(ProcessedDebit.builder().referenceId(referenceId).confirmed(confirmed).processedAt(now).build());
+            }
+            confirmations.add(confirmation(walletDebitDto, walletDebitDto.getEmail(), confirmed));
+        }
+
+        this.walletLedgerRepository.saveAll(entries);
+        this.walletLedgerRepository.flush();
+        this.processedDebitRepository.saveAll(processedDebits);
+        afterCommit(() -> publish(confirmations));
+    }
+
+    // A debit only loses its seq to a credit appended at the same moment. It's applied again in a new transaction,
+    // with the balance that includes the credit. The confirmations of a failed attempt were never sent, it rolled back
+    private void retryConflicts(Runnable debit) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> debit.run());
+                return;
+            } catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+                this.debitConflicts.increment();
+                if (attempt >= this.creditMaxAttempts) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    // Confirmations go out only once the debit committed. A debit rolled back is never answered, it's applied again and
+    // answered then. A confirmation the broker refuses or doesn't confirm in time fails the debit's message after the commit,
+    // its redelivery is answered again from the processed debit
+    private void afterCommit(Runnable publish) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish.run();
+            }
+        });
+    }
+
+    // Over one channel, the broker confirms them while they're being sent and they're waited for once
+    private void publish(List<DebitConfirmationDto> confirmations) {
+        List<CorrelationData> confirms = new ArrayList<>(confirmations.size());
+        this.rabbitTemplate.invoke(operations -> {
+            for (DebitConfirmationDto confirmation : confirmations) {
+                CorrelationData correlation = new CorrelationData();
+                operations.convertAndSend("DebitConfirmationQueue", confirmation, correlation);
+                confirms.add(correlation);
+            }
+            return null;
+        });
+        PublisherConfirms.await(confirms, this.confirmTimeout);
+    }
+
+    // Recorded as rejected, so the debit it cancels is answered with a rejection whenever it shows up
+    private boolean isCancellation(WalletDebitDto walletDebitDto, UUID referenceId) {
+        return referenceId != null && Boolean.TRUE.equals(walletDebitDto.getCancel());
+    }
+
+    private UUID referenceId(WalletDebitDto walletDebitDto) {
+        return walletDebitDto.getSaleId() != null ? walletDebitDto.getSaleId() : walletDebitDto.getCartId();
+    }
+
+    // A cart is debited once for its total and earns the points of every album in it
+    private Long pointsFor(WalletDebitDto walletDebitDto) {
+        int albumCount = walletDebitDto.getAlbumCount() == null ? 1 : walletDebitDto.getAlbumCount();
+        return (long) WeekDayPoints.valueOf(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")).getDayOfWeek().name()).getPoints() * albumCount;
+    }
+
+    // Only a missing wallet looks the user up, to fail with UserNotFound when the user is missing too
+    private WalletWasNotFoundException walletNotFound(String email) {
+        this.usersServices.findByEmail(email);
+        return new WalletWasNotFoundException("Wallet not found");
+    }
+
+    // Flushed right away, an append that lost its seq fails here and not at the commit
+    private void append(Wallet wallet, LedgerTailDto tail, LedgerEntryType type, BigDecimal amount, Long points, UUID referenceId) {
+        this.walletLedgerRepository.saveAndFlush(ledgerEntry(wallet, tail, type, amount, points, referenceId,
+                LocalDateTime.now(ZoneId.of("America/Sao_Paulo"))));
+    }
+
+    private WalletLedgerEntry ledgerEntry(Wallet wallet, LedgerTailDto tail, LedgerEntryType type, BigDecimal amount, Long points,
+                                          UUID referenceId, LocalDateTime createdAt) {
+        return WalletLedgerEntry.builder()
+                .userId(wallet.getUser().getId())
+                .seq(tail.getSeq() + 1)
+                .type(type)
+                .amount(amount)
+                .points(points)
+                .referenceId(referenceId)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    // The current balance and points, the snapshot plus the entries after it. Never saved back
+    private Wallet materialize(Wallet snapshot, LedgerTailDto tail) {
+        return snapshot.toBuilder()
+                .balance(snapshot.getBalance().add(tail.getBalance()))
+                .points(snapshot.getPoints() + tail.getPoints())
+                .build();
+    }
+
+    // Sent once the debit committed, its confirm is left to the caller in confirms
+    private void confirmDebit(WalletDebitDto walletDebitDto, String userEmail, boolean confirmed, List<CorrelationData> confirms) {
+        DebitConfirmationDto confirmation = confirmation(walletDebitDto, userEmail, confirmed);
+        afterCommit(() -> {
+            CorrelationData correlation = new CorrelationData();
+            this.rabbitTemplate.convertAndSend("DebitConfirmationQueue", confirmation, correlation);
+            confirms.add(correlation);
+        });
+    }
+
+    private DebitConfirmationDto confirmation(WalletDebitDto walletDebitDto, String userEmail, boolean confirmed) {
+        return DebitConfirmationDto.builder()
+                .userEmail(userEmail)
+                .isDebitConfirmed(confirmed)
+                .idSpotify(walletDebitDto.getIdSpotify())
+                .saleId(walletDebitDto.getSaleId())
+                .cartId(walletDebitDto.getCartId())
+                .build();
     }
 }
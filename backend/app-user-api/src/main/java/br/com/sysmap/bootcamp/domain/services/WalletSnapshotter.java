@@ -0,0 +1,73 @@
+package br.com.sysmap.bootcamp.domain.services;
+
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Folds the ledger entries after each wallet snapshot into it, so a balance read never sums more than one interval of entries
+@Slf4j
+@Component
+public class WalletSnapshotter {
+
+    private final WalletRepository walletRepository;
+    private final WalletLedgerRepository walletLedgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter folded;
+    private final int batchSize;
+
+    public WalletSnapshotter(WalletRepository walletRepository,
+                             WalletLedgerRepository walletLedgerRepository,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${wallet.snapshot.batch-size:500}") int batchSize) {
+        this.walletRepository = walletRepository;
+        this.walletLedgerRepository = walletLedgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.folded = Counter.builder("wallet.snapshot.folded")
+                .description("Wallet snapshots moved forward over their ledger entries")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${wallet.snapshot.interval:PT1M}", fixedDelayString = "${wallet.snapshot.interval:PT1M}")
+    public void snapshot() {
+        try {
+            Integer taken;
+            do {
+                taken = this.transactionTemplate.execute(status -> snapshotBatch());
+            } while (taken != null && taken == this.batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Couldn't take the wallet snapshots", e);
+        }
+    }
+
+    // An entry appended after the sum has a higher seq than the new ledgerSeq, it stays in the tail.
+    // The wallets are locked only against other snapshotters and debits, credits go on appending
+    private int snapshotBatch() {
+        List<Wallet> wallets = this.walletRepository.findWithLedgerTail(Limit.of(this.batchSize));
+        for (Wallet wallet : wallets) {
+            LedgerTailDto tail = this.walletLedgerRepository.findTail(wallet.getUser().getId(), wallet.getLedgerSeq());
+            this.walletRepository.save(wallet.toBuilder()
+                    .balance(wallet.getBalance().add(tail.getBalance()))
+                    .points(wallet.getPoints() + tail.getPoints())
+                    .ledgerSeq(tail.getSeq())
+                    .lastUpdate(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")))
+                    .build());
+        }
+        this.folded.increment(wallets.size());
+        return wallets.size();
+    }
+}
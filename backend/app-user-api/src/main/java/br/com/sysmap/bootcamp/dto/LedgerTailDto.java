@@ -0,0 +1,21 @@
+package br.com.sysmap.bootcamp.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+// Sum of the ledger entries after a wallet snapshot and the seq of the last one
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LedgerTailDto {
+    private Long userId;
+    private BigDecimal balance;
+    private Long points;
+    private Long seq;
+
+    public LedgerTailDto(BigDecimal balance, Long points, Long seq) {
+        this(null, balance, points, seq);
+    }
+}
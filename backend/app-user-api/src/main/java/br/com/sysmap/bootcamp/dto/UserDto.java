@@ -1,7 +1,10 @@
 package br.com.sysmap.bootcamp.dto;
 
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.io.Serializable;
@@ -9,7 +12,12 @@ import java.io.Serializable;
 @Getter
 @Setter
 @Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PROTECTED)
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class UserDto implements Serializable {
+        // Pinned to the value computed before its constructors were declared, it travels inside WalletCreationDto
+        private static final long serialVersionUID = -3667358507686200857L;
+
         private Long id;
         private String name;
         private String email;
@@ -12,6 +12,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class WalletCreationDto implements Serializable {
+    // Pinned to the value computed by the release that first queued it
+    private static final long serialVersionUID = -2466270870645175202L;
+
     private Long id;
     private BigDecimal balance;
     private Long points;
@@ -4,6 +4,7 @@ import lombok.*;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.UUID;
 
 @Getter
 @Setter
@@ -12,9 +13,23 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 public class WalletDebitDto implements Serializable {
 
+    // Pinned to the value computed before saleId, cartId and albumCount were added, so debits queued by an older release still deserialize
+    private static final long serialVersionUID = -4663969541642660845L;
+
     private String email;
 
     private BigDecimal value;
 
     private String idSpotify;
+
+    private UUID saleId;
+
+    // Set instead of idSpotify and saleId when a whole cart is debited at once
+    private UUID cartId;
+
+    private Integer albumCount;
+
+    // Sent by SaleSweeper once it gave up waiting: the sale or cart is rejected from now on, unless it was already debited.
+    // A wallet service that doesn't know the field debits it like any other, either way the answer settles the sale
+    private Boolean cancel;
 }
@@ -0,0 +1,7 @@
+package br.com.sysmap.bootcamp.errors;
+
+public class WalletUpdateConflictException extends RuntimeException{
+    public WalletUpdateConflictException(String message) {
+        super(message);
+    }
+}
@@ -1,20 +1,23 @@
 package br.com.sysmap.bootcamp.web;
 
 import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.common.idempotency.IdempotencyStore;
 import br.com.sysmap.bootcamp.domain.services.WalletServices;
 import br.com.sysmap.bootcamp.errors.InvalidValueException;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
 import br.com.sysmap.bootcamp.errors.WalletWasNotFoundException;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Optional;
 
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = IdempotencyStore.REPLAYED_HEADER)
 @RestController
 @RequestMapping("/wallet")
 @RequiredArgsConstructor
@@ -23,6 +26,8 @@ public class WalletController {
 
     private final WalletServices walletServices;
 
+    private final IdempotencyStore idempotencyStore;
+
     @Operation(summary = "Get authenticated user wallet")
     @GetMapping
     public ResponseEntity<Object> getAuthenticatedUserWallet(){
@@ -37,7 +42,12 @@ public class WalletController {
 
     @Operation(summary = "Credit wallet")
     @PostMapping("/credit/{value}")
-    public ResponseEntity<Object> credit(@PathVariable String value){
+    public ResponseEntity<Object> credit(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                         @PathVariable String value){
+        return this.idempotencyStore.execute("wallet-credit", idempotencyKey, value, () -> creditWallet(value));
+    }
+
+    private ResponseEntity<Object> creditWallet(String value){
         try {
             return ResponseEntity.status(HttpStatus.OK).body(this.walletServices.creditWallet(value));
         } catch (UserNotFoundException e) {
@@ -46,6 +56,9 @@ public class WalletController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid value");
         } catch (WalletWasNotFoundException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Wallet not found");
+        } catch (WalletUpdateConflictException e) {
+            // A 5xx releases the Idempotency-Key, the same request can be sent again
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body("Wallet is busy, try again");
         }
     }
 }
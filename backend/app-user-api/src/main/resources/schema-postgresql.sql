@@ -0,0 +1,3 @@
+-- Runs after Hibernate created the tables (spring.jpa.defer-datasource-initialization)
+-- WALLETS rows from before the ledger are snapshots with no entries after them
+UPDATE WALLETS SET ledger_seq = 0 WHERE ledger_seq IS NULL;
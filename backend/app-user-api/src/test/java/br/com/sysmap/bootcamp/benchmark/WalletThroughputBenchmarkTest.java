@@ -0,0 +1,221 @@
+package br.com.sysmap.bootcamp.benchmark;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+// Throughput of the wallet's write paths on one machine, the rates are logged for comparing schemes against each other.
+// Left out of the default build, run with mvn test -Pbenchmark
+@Tag("benchmark")
+@Slf4j
+@SpringBootTest
+public class WalletThroughputBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int CREDITS_PER_THREAD = 25;
+    private static final int WALLETS = 20;
+    private static final int DEBITS = 1000;
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private WalletServices walletServices;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null)))
+                .when(rabbitTemplate).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, RabbitOperations.OperationsCallback.class).doInRabbit(rabbitTemplate));
+    }
+
+    // Optimistic: nothing is locked, an append that lost its seq is retried with jitter
+    @Test
+    @DisplayName("Credits of a hot wallet appended to the ledger without a lock, retried on seq conflicts")
+    public void creditLedgerAppend() throws Exception {
+        Wallet wallet = createWallets(1, BigDecimal.ZERO).get(0);
+        String email = wallet.getUser().getEmail();
+        double conflicts = meterRegistry.counter("wallet.credit.conflicts").count();
+        AtomicInteger refused = new AtomicInteger();
+
+        long elapsed = concurrently(() -> {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null));
+            // A credit refused after its last attempt is sent again, as a client does on the 503
+            while (true) {
+                try {
+                    walletServices.creditWallet("1");
+                    return;
+                } catch (WalletUpdateConflictException e) {
+                    refused.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(0, walletLedgerRepository.findTail(wallet.getUser().getId(), 0L).getBalance()
+                .compareTo(BigDecimal.valueOf(THREADS * CREDITS_PER_THREAD)));
+        report("credits, optimistic ledger append", THREADS * CREDITS_PER_THREAD, elapsed);
+        log.info("credits, optimistic ledger append: {} seq conflicts, {} credits refused and sent again",
+                meterRegistry.counter("wallet.credit.conflicts").count() - conflicts, refused.get());
+    }
+
+    // Pessimistic: every credit waits for the wallet row lock and rewrites the row
+    @Test
+    @DisplayName("Credits of a hot wallet rewriting its row under SELECT FOR UPDATE")
+    public void creditRowRewrite() throws Exception {
+        Wallet wallet = createWallets(1, BigDecimal.ZERO).get(0);
+
+        long elapsed = concurrently(() -> transactionTemplate.executeWithoutResult(status -> {
+            Wallet locked = entityManager.find(Wallet.class, wallet.getId(), LockModeType.PESSIMISTIC_WRITE);
+            entityManager.merge(locked.toBuilder().balance(locked.getBalance().add(BigDecimal.ONE)).lastUpdate(LocalDateTime.now()).build());
+        }));
+
+        assertEquals(0, walletRepository.findById(wallet.getId()).orElseThrow().getBalance()
+                .compareTo(BigDecimal.valueOf(THREADS * CREDITS_PER_THREAD)));
+        report("credits, pessimistic row rewrite", THREADS * CREDITS_PER_THREAD, elapsed);
+    }
+
+    @Test
+    @DisplayName("WalletDebitQueue messages debited one at a time")
+    public void debitPerMessage() {
+        List<Wallet> wallets = createWallets(WALLETS, BigDecimal.valueOf(DEBITS));
+        List<WalletDebitDto> debits = debits(wallets);
+
+        long startedAt = System.nanoTime();
+        debits.forEach(walletServices::debitWallet);
+        long elapsed = System.nanoTime() - startedAt;
+
+        assertDebited(wallets);
+        report("debits, per message", DEBITS, elapsed);
+    }
+
+    @Test
+    @DisplayName("WalletDebitQueue messages debited in batches")
+    public void debitBatches() {
+        List<Wallet> wallets = createWallets(WALLETS, BigDecimal.valueOf(DEBITS));
+        List<WalletDebitDto> debits = debits(wallets);
+
+        long startedAt = System.nanoTime();
+        for (int from = 0; from < debits.size(); from += BATCH_SIZE) {
+            walletServices.debitWallets(debits.subList(from, Math.min(from + BATCH_SIZE, debits.size())));
+        }
+        long elapsed = System.nanoTime() - startedAt;
+
+        assertDebited(wallets);
+        report("debits, batch of " + BATCH_SIZE, DEBITS, elapsed);
+    }
+
+    private List<Wallet> createWallets(int count, BigDecimal balance) {
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Users user = usersRepository.save(Users.builder().name("benchmark").email("benchmark-" + UUID.randomUUID() + "@email.com")
+                    .password("secret").build());
+            wallets.add(walletRepository.save(Wallet.builder().user(user).balance(balance).points(0L)
+                    .lastUpdate(LocalDateTime.now()).build()));
+        }
+        return wallets;
+    }
+
+    // Round robin over the wallets, every debit its own sale
+    private List<WalletDebitDto> debits(List<Wallet> wallets) {
+        List<WalletDebitDto> debits = new ArrayList<>();
+        for (int i = 0; i < DEBITS; i++) {
+            debits.add(WalletDebitDto.builder().email(wallets.get(i % wallets.size()).getUser().getEmail())
+                    .value(BigDecimal.ONE).saleId(UUID.randomUUID()).build());
+        }
+        return debits;
+    }
+
+    private void assertDebited(List<Wallet> wallets) {
+        for (Wallet wallet : wallets) {
+            BigDecimal debited = walletLedgerRepository.findTail(wallet.getUser().getId(), 0L).getBalance();
+            assertEquals(0, debited.compareTo(BigDecimal.valueOf(-DEBITS / wallets.size())));
+        }
+    }
+
+    // Every thread runs the operation CREDITS_PER_THREAD times, all of them start together
+    private long concurrently(Runnable operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < CREDITS_PER_THREAD; j++) {
+                    operation.run();
+                }
+                return null;
+            }));
+        }
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        return System.nanoTime() - startedAt;
+    }
+
+    private static void report(String scheme, int operations, long elapsedNanos) {
+        log.info("{}: {} operations in {} ms, {} per second", scheme, operations, elapsedNanos / 1_000_000,
+                Math.round(operations / (elapsedNanos / 1e9)));
+    }
+}
@@ -11,10 +11,13 @@ import br.com.sysmap.bootcamp.errors.MissingUserFieldsException;
 import br.com.sysmap.bootcamp.errors.UserAlreadyExistsException;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
 import org.apache.coyote.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -52,6 +55,12 @@ public class UsersServiceTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @BeforeEach
+    public void confirmPublishes() {
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null)))
+                .when(rabbitTemplate).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
     @Test
     @DisplayName("Should return users when valid users is saved")
     public void shouldReturnUsersWhenValidUsersIsSaved() {
@@ -107,7 +116,7 @@ public class UsersServiceTest {
         WalletCreationDto result = usersService.createWallet(userDto);
 
         // Verify that the RabbitTemplate's convertAndSend method was called with the correct arguments
-        verify(rabbitTemplate).convertAndSend(eq("WalletCreationQueue"), any(WalletCreationDto.class));
+        verify(rabbitTemplate).convertAndSend(eq("WalletCreationQueue"), any(WalletCreationDto.class), any(CorrelationData.class));
 
         assertEquals(expectedWalletDto.getBalance(), result.getBalance());
         assertEquals(expectedWalletDto.getPoints(), result.getPoints());
@@ -115,6 +124,16 @@ public class UsersServiceTest {
         assertEquals(expectedWalletDto.getUser(), result.getUser());
     }
 
+    @Test
+    @DisplayName("Should fail creating a wallet the broker didn't take")
+    public void shouldFailCreatingWalletBrokerRefused() {
+        UserDto userDto = UserDto.builder().id(1L).name("User Test").email("testuser@email.com").password("123").build();
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(false, "queue full")))
+                .when(rabbitTemplate).convertAndSend(eq("WalletCreationQueue"), any(WalletCreationDto.class), any(CorrelationData.class));
+
+        assertThrows(AmqpException.class, () -> usersService.createWallet(userDto));
+    }
+
     @Test
     @DisplayName("Should return valid user when user is created")
     public void shouldReturnValidUserWhenUserIsCreated() throws BadRequestException {
@@ -141,6 +160,19 @@ public class UsersServiceTest {
         assertEquals(user.getPassword(), createdUser.getPassword());
     }
 
+    @Test
+    @DisplayName("Should remove the user again when the broker didn't take its wallet creation")
+    public void shouldRemoveUserWhenWalletCreationFails() {
+        UserDto userDto = UserDto.builder().name("User Test").email("testuser@email.com").password("123").build();
+        when(usersRepository.findByEmail(userDto.getEmail())).thenReturn(Optional.empty());
+        when(usersRepository.save(any(Users.class))).thenReturn(Users.builder().id(7L).email("testuser@email.com").build());
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(false, "queue full")))
+                .when(rabbitTemplate).convertAndSend(eq("WalletCreationQueue"), any(WalletCreationDto.class), any(CorrelationData.class));
+
+        assertThrows(AmqpException.class, () -> usersService.createUser(userDto));
+        verify(usersRepository).deleteById(7L);
+    }
+
     @Test
     @DisplayName("Should throw UserAlreadyExistsException when duplicate user being created")
     public void shouldThrowUserAlreadyExistsExceptionWhenDuplicateUserBeingCreated() {
@@ -0,0 +1,107 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.entities.WalletLedgerEntry;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Concurrent credits of one hot wallet, none may be lost or share a seq. A credit that keeps losing its seq is refused with
+// WalletUpdateConflictException and sent again, as a client does on the 503. Throughput is measured in WalletThroughputBenchmarkTest
+@SpringBootTest
+public class WalletCreditContentionTest {
+
+    private static final int THREADS = 4;
+    private static final int CREDITS_PER_THREAD = 10;
+
+    @Autowired
+    private WalletServices walletServices;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Test
+    @DisplayName("Should keep every credit of a hot wallet appended to the ledger")
+    public void shouldKeepEveryCreditAppendedToLedger() throws Exception {
+        Wallet wallet = createWallet();
+        String email = wallet.getUser().getEmail();
+
+        run(() -> {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null));
+            while (true) {
+                try {
+                    walletServices.creditWallet("1");
+                    return;
+                } catch (WalletUpdateConflictException e) {
+                    // Nothing was appended, the credit is sent again
+                }
+            }
+        });
+
+        BigDecimal balance = walletLedgerRepository.findTail(wallet.getUser().getId(), 0L).getBalance();
+        assertEquals(0, balance.compareTo(BigDecimal.valueOf(THREADS * CREDITS_PER_THREAD)));
+        // Every credit took the next seq of the wallet, none shares one
+        assertEquals(LongStream.rangeClosed(1, THREADS * CREDITS_PER_THREAD).boxed().toList(), walletLedgerRepository.findAll().stream()
+                .filter(entry -> entry.getUserId().equals(wallet.getUser().getId())).map(WalletLedgerEntry::getSeq).sorted().toList());
+    }
+
+    private Wallet createWallet() {
+        Users user = usersRepository.save(Users.builder().name("contention").email("contention-" + UUID.randomUUID() + "@email.com")
+                .password("secret").build());
+        return walletRepository.save(Wallet.builder().user(user).balance(BigDecimal.ZERO).points(0L).lastUpdate(LocalDateTime.now()).build());
+    }
+
+    // Every thread credits the wallet CREDITS_PER_THREAD times, all of them start together
+    private void run(Runnable credit) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < CREDITS_PER_THREAD; j++) {
+                    credit.run();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+    }
+}
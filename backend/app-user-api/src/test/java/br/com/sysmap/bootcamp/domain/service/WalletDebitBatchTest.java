@@ -0,0 +1,127 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+// WalletDebitQueue messages debited one at a time and in batches of BATCH_SIZE must end with the same balances and answers.
+// Throughput is measured in WalletThroughputBenchmarkTest
+@SpringBootTest
+public class WalletDebitBatchTest {
+
+    private static final int WALLETS = 4;
+    private static final int DEBITS = 40;
+    private static final int BATCH_SIZE = 10;
+    // Each wallet can pay for half of its debits, the rest must be rejected
+    private static final int BALANCE = DEBITS / WALLETS / 2;
+
+    @Autowired
+    private WalletServices walletServices;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    private final AtomicInteger confirmed = new AtomicInteger();
+
+    @BeforeEach
+    public void countConfirmations() {
+        doAnswer(invocation -> {
+            if (invocation.getArgument(1, DebitConfirmationDto.class).getIsDebitConfirmed()) {
+                confirmed.incrementAndGet();
+            }
+            return invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null));
+        }).when(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"), any(DebitConfirmationDto.class), any(CorrelationData.class));
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, RabbitOperations.OperationsCallback.class).doInRabbit(rabbitTemplate));
+    }
+
+    @Test
+    @DisplayName("Should debit one message at a time until each wallet runs out")
+    public void shouldDebitOneMessageAtATime() {
+        List<Wallet> wallets = createWallets();
+        List<WalletDebitDto> debits = debits(wallets);
+
+        debits.forEach(walletServices::debitWallet);
+
+        assertDebited(wallets);
+    }
+
+    @Test
+    @DisplayName("Should debit batches of messages like one message at a time")
+    public void shouldDebitBatchesOfMessages() {
+        List<Wallet> wallets = createWallets();
+        List<WalletDebitDto> debits = debits(wallets);
+
+        for (int from = 0; from < debits.size(); from += BATCH_SIZE) {
+            walletServices.debitWallets(debits.subList(from, Math.min(from + BATCH_SIZE, debits.size())));
+        }
+
+        assertDebited(wallets);
+    }
+
+    private List<Wallet> createWallets() {
+        confirmed.set(0);
+        List<Wallet> wallets = new ArrayList<>();
+        for (int i = 0; i < WALLETS; i++) {
+            Users user = usersRepository.save(Users.builder().name("batch").email("batch-" + UUID.randomUUID() + "@email.com")
+                    .password("secret").build());
+            wallets.add(walletRepository.save(Wallet.builder().user(user).balance(BigDecimal.valueOf(BALANCE)).points(0L)
+                    .lastUpdate(LocalDateTime.now()).build()));
+        }
+        return wallets;
+    }
+
+    // Round robin over the wallets, every debit its own sale
+    private List<WalletDebitDto> debits(List<Wallet> wallets) {
+        List<WalletDebitDto> debits = new ArrayList<>();
+        for (int i = 0; i < DEBITS; i++) {
+            debits.add(WalletDebitDto.builder().email(wallets.get(i % WALLETS).getUser().getEmail())
+                    .value(BigDecimal.ONE).saleId(UUID.randomUUID()).build());
+        }
+        return debits;
+    }
+
+    private void assertDebited(List<Wallet> wallets) {
+        assertEquals(BALANCE * WALLETS, confirmed.get());
+        for (Wallet wallet : wallets) {
+            BigDecimal debited = walletLedgerRepository.findTail(wallet.getUser().getId(), 0L).getBalance();
+            assertEquals(0, debited.compareTo(BigDecimal.valueOf(-BALANCE)));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.enums.WeekDayPoints;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.domain.services.WalletSnapshotter;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+public class WalletDebitConcurrencyTest {
+
+    @Autowired
+    private WalletServices walletServices;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private WalletSnapshotter walletSnapshotter;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Test
+    @DisplayName("Should never debit more than the balance when debits of the same wallet run in parallel")
+    public void shouldNotOverdrawWalletUnderParallelDebits() throws Exception {
+        String email = "concurrent-" + UUID.randomUUID() + "@email.com";
+        Users user = usersRepository.save(Users.builder().name("concurrent").email(email).password("secret").build());
+        Wallet wallet = walletRepository.save(Wallet.builder().user(user).balance(BigDecimal.valueOf(500)).points(0L)
+                .lastUpdate(LocalDateTime.now()).build());
+        long dayPoints = WeekDayPoints.valueOf(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")).getDayOfWeek().name()).getPoints();
+
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        doAnswer(invocation -> {
+            DebitConfirmationDto confirmation = invocation.getArgument(1);
+            (confirmation.getIsDebitConfirmed() ? confirmed : rejected).incrementAndGet();
+            return invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null));
+        }).when(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"), any(DebitConfirmationDto.class), any(CorrelationData.class));
+
+        // 64 debits of 10 against a balance of 500, only 50 of them fit
+        int debits = 64;
+        ExecutorService executor = Executors.newFixedThreadPool(debits);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < debits; i++) {
+            WalletDebitDto debit = WalletDebitDto.builder().email(email).value(BigDecimal.TEN).saleId(UUID.randomUUID()).build();
+            results.add(executor.submit(() -> {
+                start.await();
+                walletServices.debitWallet(debit);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(50, confirmed.get());
+        assertEquals(14, rejected.get());
+        LedgerTailDto tail = walletLedgerRepository.findTail(user.getId(), 0L);
+        assertEquals(0, wallet.getBalance().add(tail.getBalance()).compareTo(BigDecimal.ZERO));
+        assertEquals(50 * dayPoints, tail.getPoints());
+        assertEquals(50L, tail.getSeq());
+
+        // The snapshot takes the whole ledger in
+        walletSnapshotter.snapshot();
+        Wallet snapshot = walletRepository.findById(wallet.getId()).orElseThrow();
+        assertEquals(0, snapshot.getBalance().compareTo(BigDecimal.ZERO));
+        assertEquals(50 * dayPoints, snapshot.getPoints());
+        assertEquals(50L, snapshot.getLedgerSeq());
+    }
+}
@@ -0,0 +1,166 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.common.messaging.BackoffMessageRecoverer;
+import br.com.sysmap.bootcamp.config.RabbitConfig;
+import br.com.sysmap.bootcamp.common.messaging.VersionedJsonMessageConverter;
+import br.com.sysmap.bootcamp.config.WalletDebitShardingConfig;
+import br.com.sysmap.bootcamp.domain.listeners.WalletDebitShardListener;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class WalletDebitShardingTest {
+
+    private final VersionedJsonMessageConverter converter = new RabbitConfig().converter(new ObjectMapper(), false);
+
+    @Test
+    @DisplayName("Should declare one single active consumer queue per shard bound to the consistent-hash exchange")
+    public void shouldDeclareShardQueues() {
+        WalletDebitShardingConfig config = new WalletDebitShardingConfig(mock(WalletServices.class), converter,
+                mock(BackoffMessageRecoverer.class), new SimpleMeterRegistry(), null, 3, true, Duration.ofSeconds(30));
+
+        List<Queue> queues = config.walletDebitShards().getDeclarablesByType(Queue.class);
+        List<Binding> bindings = config.walletDebitShards().getDeclarablesByType(Binding.class);
+
+        assertEquals(List.of("WalletDebitQueue.0", "WalletDebitQueue.0.dlq", "WalletDebitQueue.1", "WalletDebitQueue.1.dlq",
+                "WalletDebitQueue.2", "WalletDebitQueue.2.dlq"), queues.stream().map(Queue::getName).toList());
+        assertTrue(queues.stream().filter(queue -> !queue.getName().endsWith(".dlq")).allMatch(queue -> Boolean.TRUE.equals(queue.getArguments().get("x-single-active-consumer"))));
+        assertTrue(bindings.stream().allMatch(binding -> "WalletDebitExchange".equals(binding.getExchange()) && "1".equals(binding.getRoutingKey())));
+    }
+
+    @Test
+    @DisplayName("Should debit a shard batch in order and record its lag")
+    public void shouldDebitShardBatchInOrder() {
+        WalletServices walletServices = mock(WalletServices.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WalletDebitShardListener listener = new WalletDebitShardListener(walletServices, converter, mock(BackoffMessageRecoverer.class), meterRegistry, 2, Duration.ofSeconds(30));
+        WalletDebitDto first = WalletDebitDto.builder().email("test@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        WalletDebitDto second = WalletDebitDto.builder().email("test@email.com").value(BigDecimal.TEN).saleId(UUID.randomUUID()).build();
+
+        listener.onMessages(1, List.of(message(first, new Date(System.currentTimeMillis() - 2000)), message(second, null)));
+
+        verify(walletServices).debitWallets(argThat(debits -> debits.size() == 2
+                && debits.get(0).getSaleId().equals(first.getSaleId()) && debits.get(1).getSaleId().equals(second.getSaleId())));
+        assertEquals(1, meterRegistry.get("wallet.debit.shard.lag").tag("shard", "1").timer().count());
+        assertTrue(meterRegistry.get("wallet.debit.shard.lag").tag("shard", "1").timer().max(TimeUnit.MILLISECONDS) >= 2000);
+        assertEquals(0, meterRegistry.get("wallet.debit.shard.lag").tag("shard", "0").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter only the failing debit of a failed batch")
+    public void shouldIsolateFailingDebit() {
+        WalletServices walletServices = mock(WalletServices.class);
+        BackoffMessageRecoverer messageRecoverer = mock(BackoffMessageRecoverer.class);
+        WalletDebitShardListener listener = new WalletDebitShardListener(walletServices, converter, messageRecoverer,
+                new SimpleMeterRegistry(), 1, Duration.ofSeconds(30));
+        WalletDebitDto good = WalletDebitDto.builder().email("good@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        WalletDebitDto poison = WalletDebitDto.builder().email("missing@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        Message poisonMessage = message(poison, null);
+        IllegalStateException failure = new IllegalStateException("Wallet not found");
+        doThrow(failure).when(walletServices).debitWallets(anyList());
+        doThrow(failure).when(walletServices).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(poison.getSaleId())));
+
+        listener.onMessages(0, List.of(message(good, null), poisonMessage));
+
+        verify(walletServices).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(good.getSaleId())));
+        verify(messageRecoverer).delays();
+        verify(messageRecoverer).deadLetter(poisonMessage, failure);
+        verifyNoMoreInteractions(messageRecoverer);
+    }
+
+    @Test
+    @DisplayName("Should retry a failing debit in place and hold its user's later debits behind it")
+    public void shouldHoldLaterDebitsOfFailingUser() {
+        WalletServices walletServices = mock(WalletServices.class);
+        BackoffMessageRecoverer messageRecoverer = mock(BackoffMessageRecoverer.class);
+        when(messageRecoverer.delays()).thenReturn(List.of(Duration.ZERO, Duration.ZERO));
+        WalletDebitShardListener listener = new WalletDebitShardListener(walletServices, converter, messageRecoverer,
+                new SimpleMeterRegistry(), 1, Duration.ofSeconds(30));
+        WalletDebitDto failing = WalletDebitDto.builder().email("user@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        WalletDebitDto later = WalletDebitDto.builder().email("user@email.com").value(BigDecimal.TEN).saleId(UUID.randomUUID()).build();
+        WalletDebitDto other = WalletDebitDto.builder().email("other@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        Message failingMessage = message(failing, null);
+        Message laterMessage = message(later, null);
+        IllegalStateException failure = new IllegalStateException("Wallet unavailable");
+        doThrow(new IllegalStateException("batch failed")).when(walletServices).debitWallets(anyList());
+        doThrow(failure).when(walletServices).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(failing.getSaleId())));
+
+        listener.onMessages(0, List.of(failingMessage, laterMessage, message(other, null)));
+
+        verify(walletServices, times(3)).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(failing.getSaleId())));
+        verify(walletServices, never()).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(later.getSaleId())));
+        verify(walletServices).debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(other.getSaleId())));
+        InOrder inOrder = inOrder(messageRecoverer);
+        inOrder.verify(messageRecoverer).deadLetter(failingMessage, failure);
+        inOrder.verify(messageRecoverer).deadLetter(eq(laterMessage), any(IllegalStateException.class));
+        verify(messageRecoverer, never()).recover(any(Message.class), any());
+    }
+
+    @Test
+    @DisplayName("Should send every confirmation of a failed batch before waiting for their confirms")
+    public void shouldAwaitFallbackConfirmsTogether() {
+        WalletServices walletServices = mock(WalletServices.class);
+        BackoffMessageRecoverer messageRecoverer = mock(BackoffMessageRecoverer.class);
+        WalletDebitShardListener listener = new WalletDebitShardListener(walletServices, converter, messageRecoverer,
+                new SimpleMeterRegistry(), 1, Duration.ofSeconds(30));
+        WalletDebitDto first = WalletDebitDto.builder().email("first@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        WalletDebitDto refused = WalletDebitDto.builder().email("refused@email.com").value(BigDecimal.ONE).saleId(UUID.randomUUID()).build();
+        Message refusedMessage = message(refused, null);
+        CorrelationData firstConfirm = new CorrelationData("first");
+        CorrelationData refusedConfirm = new CorrelationData("refused");
+        AmqpException nack = new AmqpException("The broker didn't take refused");
+        doThrow(new IllegalStateException("batch failed")).when(walletServices).debitWallets(anyList());
+        when(walletServices.debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(first.getSaleId()))))
+                .thenReturn(List.of(firstConfirm));
+        when(walletServices.debitWalletUnconfirmed(argThat(debit -> debit != null && debit.getSaleId().equals(refused.getSaleId()))))
+                .thenReturn(List.of(refusedConfirm));
+        doThrow(nack).when(walletServices).awaitConfirms(List.of(refusedConfirm));
+
+        listener.onMessages(0, List.of(message(first, null), refusedMessage));
+
+        InOrder inOrder = inOrder(walletServices);
+        inOrder.verify(walletServices, times(2)).debitWalletUnconfirmed(any());
+        inOrder.verify(walletServices, times(2)).awaitConfirms(anyList());
+        verify(walletServices, never()).debitWallet(any());
+        verify(messageRecoverer).recover(refusedMessage, nack);
+        verify(messageRecoverer, never()).deadLetter(any(), any());
+    }
+
+    private Message message(WalletDebitDto walletDebitDto, Date timestamp) {
+        MessageProperties properties = new MessageProperties();
+        properties.setTimestamp(timestamp);
+        return converter.toMessage(walletDebitDto, properties);
+    }
+}
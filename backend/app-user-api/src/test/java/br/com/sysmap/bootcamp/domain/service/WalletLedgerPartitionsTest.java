@@ -0,0 +1,102 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.domain.services.WalletLedgerPartitions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WalletLedgerPartitionsTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private WalletLedgerPartitions walletLedgerPartitions;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        walletLedgerPartitions = new WalletLedgerPartitions(jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)), 1);
+    }
+
+    @Test
+    @DisplayName("Should partition the ledger by month, copy its entries and make seq unique per wallet in new partitions")
+    public void shouldPartitionLedger() {
+        YearMonth now = YearMonth.now();
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(0);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Timestamp.class)))
+                .thenReturn(Timestamp.valueOf(now.minusMonths(1).atDay(15).atStartOfDay()));
+
+        walletLedgerPartitions.maintain();
+
+        List<String> statements = executed();
+        assertTrue(statements.contains("create table wallet_ledger (like wallet_ledger_unpartitioned including defaults including constraints) "
+                + "partition by range (created_at)"));
+        assertTrue(statements.contains("insert into wallet_ledger select * from wallet_ledger_unpartitioned"));
+        assertTrue(statements.stream().anyMatch(statement -> statement.startsWith("create table if not exists " + partition(now.minusMonths(1)))));
+        assertTrue(statements.stream().anyMatch(statement -> statement.startsWith("create table if not exists " + partition(now.plusMonths(1)))));
+        assertEquals(List.of(
+                        "create unique index if not exists ux_wallet_ledger_default_user_seq on wallet_ledger_default (user_id, seq)",
+                        uniqueSeq(partition(now)),
+                        uniqueSeq(partition(now.plusMonths(1)))),
+                statements.stream().filter(statement -> statement.startsWith("create unique index")).toList());
+    }
+
+    @Test
+    @DisplayName("Should keep maintaining the other partitions when one has duplicate seqs")
+    public void shouldSkipPartitionWithDuplicateSeqs() {
+        YearMonth now = YearMonth.now();
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(1);
+        doThrow(new DataIntegrityViolationException("could not create unique index")).when(jdbcTemplate).execute(uniqueSeq(partition(now)));
+
+        walletLedgerPartitions.maintain();
+
+        verify(jdbcTemplate).execute(uniqueSeq(partition(now.plusMonths(1))));
+        verify(jdbcTemplate, never()).execute("alter table wallet_ledger rename to wallet_ledger_unpartitioned");
+    }
+
+    @Test
+    @DisplayName("Should leave the ledger alone on databases other than PostgreSQL")
+    public void shouldOnlyPartitionOnPostgres() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        walletLedgerPartitions.maintain();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private List<String> executed() {
+        ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(statements.capture());
+        return statements.getAllValues();
+    }
+
+    private static String partition(YearMonth month) {
+        return String.format("wallet_ledger_%d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private static String uniqueSeq(String partition) {
+        return "create unique index if not exists ux_" + partition + "_user_seq on " + partition + " (user_id, seq)";
+    }
+}
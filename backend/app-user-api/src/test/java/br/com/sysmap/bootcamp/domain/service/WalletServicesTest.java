@@ -2,29 +2,56 @@ package br.com.sysmap.bootcamp.domain.service;
 
 import br.com.sysmap.bootcamp.domain.entities.Users;
 import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.entities.WalletLedgerEntry;
+import br.com.sysmap.bootcamp.domain.enums.LedgerEntryType;
+import br.com.sysmap.bootcamp.domain.enums.WeekDayPoints;
+import br.com.sysmap.bootcamp.domain.repositories.ProcessedDebitRepository;
 import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
 import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
 import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.dto.DebitConfirmationDto;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
+import br.com.sysmap.bootcamp.dto.UserDto;
 import br.com.sysmap.bootcamp.dto.WalletCreationDto;
 import br.com.sysmap.bootcamp.dto.WalletDebitDto;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
 import br.com.sysmap.bootcamp.errors.WalletWasNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,6 +70,21 @@ public class WalletServicesTest {
     @MockBean
     private RabbitTemplate rabbitTemplate;
 
+    @MockBean
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private ProcessedDebitRepository processedDebitRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void confirmPublishes() {
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null)))
+                .when(rabbitTemplate).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
     @Test
     @DisplayName("Should save wallet via save method")
     public void shouldSaveWallet() {
@@ -90,40 +132,328 @@ public class WalletServicesTest {
         assertEquals(wallet, result);
     }
 
+    @Test
+    @DisplayName("Should not create the wallet of a user whose sign-up was undone")
+    public void shouldSkipWalletOfRemovedUser() {
+        WalletCreationDto walletDto = WalletCreationDto.builder().user(UserDto.builder().id(7L).build()).build();
+        when(usersRepository.existsById(7L)).thenReturn(false);
+
+        assertNull(walletServices.createWallet(walletDto));
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
     @Test
     @DisplayName("Should debit the user wallet")
     public void shouldDebitUserWallet() {
         String email = "testuser@email.com";
-        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).build();
-        Users user = Users.builder().email(email).build();
-        Wallet wallet = Wallet.builder().balance(BigDecimal.valueOf(500)).points(0L).build();
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
 
-        when(usersRepository.findByEmail(email)).thenReturn(Optional.of(user));
-        when(walletRepository.findByUser(any(Users.class))).thenReturn(Optional.ofNullable(wallet));
-        when(walletRepository.save(any(Wallet.class))).thenReturn(wallet);
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 4L)));
+        when(walletLedgerRepository.findTail(1L, 4L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(-400), 0L, 7L));
         walletServices.debitWallet(walletDebitDto);
 
-        verify(walletRepository).save(any(Wallet.class));
+        verify(walletLedgerRepository).saveAndFlush(argThat(entry -> entry.getType() == LedgerEntryType.DEBIT && entry.getSeq() == 8L
+                && entry.getAmount().compareTo(BigDecimal.valueOf(-90)) == 0 && saleId.equals(entry.getReferenceId())));
+        verify(walletRepository, never()).save(any(Wallet.class));
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
     }
 
     @Test
-    @DisplayName("Should throw UserNotFoundException user not found when wallet debit")
-    public void shouldThrowUserNotFoundWhenNoUserWhenDebitingTheWallet() {
-        WalletDebitDto walletDebitDto = WalletDebitDto.builder().build();
+    @DisplayName("Should reject a debit the snapshot and the entries after it don't cover")
+    public void shouldRejectDebitOverLedgerBalance() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
 
-        when(usersRepository.findByEmail(any())).thenReturn(Optional.empty());
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 4L)));
+        when(walletLedgerRepository.findTail(1L, 4L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(-450), 0L, 7L));
+        walletServices.debitWallet(walletDebitDto);
 
-        assertThrows(UserNotFoundException.class, () -> walletServices.debitWallet(walletDebitDto));
+        verify(walletLedgerRepository, never()).saveAndFlush(any());
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
     }
 
     @Test
-    @DisplayName("Should throw WalletWasNotFound user's wallet was not found")
-    public void shouldThrowWalletWasNotFoundWhenNoWalletWhenDebiting() {
-        WalletDebitDto walletDebitDto = WalletDebitDto.builder().build();
+    @DisplayName("Should answer a debit sent again without charging twice")
+    public void shouldNotChargeDebitSentAgain() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
 
-        when(usersRepository.findByEmail(any())).thenReturn(Optional.of(Users.builder().build()));
-        when(walletRepository.findByUser(any())).thenReturn(Optional.empty());
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        walletServices.debitWallet(walletDebitDto);
+        walletServices.debitWallet(walletDebitDto);
+
+        verify(walletLedgerRepository, times(1)).saveAndFlush(any());
+        verify(rabbitTemplate, times(2)).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should confirm a debit only once its transaction committed")
+    public void shouldConfirmDebitAfterCommit() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        transactionTemplate.executeWithoutResult(status -> {
+            walletServices.debitWallet(walletDebitDto);
+            verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+        });
+
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should not confirm debits whose transaction rolled back")
+    public void shouldNotConfirmRolledBackDebits() {
+        String email = "testuser@email.com";
+        WalletDebitDto single = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(UUID.randomUUID()).build();
+        WalletDebitDto batched = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(UUID.randomUUID()).build();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        when(walletRepository.lockAllForDebit(any())).thenReturn(List.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTails(List.of(1L))).thenReturn(List.of(new LedgerTailDto(1L, BigDecimal.ZERO, 0L, 0L)));
+        transactionTemplate.executeWithoutResult(status -> {
+            walletServices.debitWallet(single);
+            walletServices.debitWallets(List.of(batched));
+            status.setRollbackOnly();
+        });
+
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+        verify(rabbitTemplate, never()).invoke(any());
+        assertFalse(processedDebitRepository.existsById(single.getSaleId()));
+        assertFalse(processedDebitRepository.existsById(batched.getSaleId()));
+    }
+
+    @Test
+    @DisplayName("Should debit again after a credit appended at the same moment took its seq")
+    public void shouldRetryDebitOnSeqConflict() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(50), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(40), 0L, 0L),
+                new LedgerTailDto(BigDecimal.valueOf(60), 0L, 1L));
+        when(walletLedgerRepository.saveAndFlush(argThat(entry -> entry.getSeq() == 1L)))
+                .thenThrow(new DataIntegrityViolationException("ux_wallet_ledger_user_seq"));
+
+        walletServices.debitWallet(walletDebitDto);
+
+        verify(walletLedgerRepository).saveAndFlush(argThat(entry -> entry.getType() == LedgerEntryType.DEBIT && entry.getSeq() == 2L));
+        assertTrue(processedDebitRepository.findById(saleId).orElseThrow().getConfirmed());
+        verify(rabbitTemplate, times(1)).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should fail a committed debit whose confirmation the broker refused, so it's answered again")
+    public void shouldFailDebitWhoseConfirmationWasRefused() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(false, "queue full")))
+                .when(rabbitTemplate).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+
+        assertThrows(AmqpException.class, () -> walletServices.debitWallet(walletDebitDto));
+        assertTrue(processedDebitRepository.findById(saleId).orElseThrow().getConfirmed());
+    }
+
+    @Test
+    @DisplayName("Should void a debit canceled before it was charged")
+    public void shouldCancelDebitNotCharged() {
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto cancellation = WalletDebitDto.builder().email("testuser@email.com").value(BigDecimal.valueOf(90)).saleId(saleId).cancel(true).build();
+
+        walletServices.debitWallet(cancellation);
+
+        verify(walletRepository, never()).lockForDebit(any());
+        assertFalse(processedDebitRepository.findById(saleId).orElseThrow().getConfirmed());
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should confirm a cancellation that came after its debit was charged")
+    public void shouldConfirmCancellationOfChargedDebit() {
+        String email = "testuser@email.com";
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(90)).saleId(saleId).build();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        walletServices.debitWallet(walletDebitDto);
+        walletServices.debitWallet(walletDebitDto.toBuilder().cancel(true).build());
+
+        verify(walletLedgerRepository, times(1)).saveAndFlush(any());
+        verify(rabbitTemplate, times(2)).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should debit a cart once and earn the points of every album")
+    public void shouldDebitCartOnce() {
+        String email = "testuser@email.com";
+        UUID cartId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(150)).cartId(cartId).albumCount(3).build();
+        long dayPoints = WeekDayPoints.valueOf(LocalDateTime.now(ZoneId.of("America/Sao_Paulo")).getDayOfWeek().name()).getPoints();
+
+        when(walletRepository.lockForDebit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(500), 0L)));
+        when(walletLedgerRepository.findTail(1L, 0L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 0L));
+        walletServices.debitWallet(walletDebitDto);
+
+        verify(walletLedgerRepository).saveAndFlush(argThat(entry -> entry.getAmount().compareTo(BigDecimal.valueOf(-150)) == 0
+                && entry.getPoints() == dayPoints * 3 && cartId.equals(entry.getReferenceId())));
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && cartId.equals(confirmation.getCartId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should reject a debit of an unknown wallet like a batch does")
+    public void shouldRejectDebitOfUnknownWallet() {
+        UUID saleId = UUID.randomUUID();
+        WalletDebitDto walletDebitDto = WalletDebitDto.builder().email("unknown@email.com").value(BigDecimal.ONE).saleId(saleId).build();
+
+        when(walletRepository.lockForDebit(any())).thenReturn(Optional.empty());
+        walletServices.debitWallet(walletDebitDto);
+
+        verify(walletLedgerRepository, never()).saveAndFlush(any());
+        assertFalse(processedDebitRepository.findById(saleId).orElseThrow().getConfirmed());
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should credit the wallet with an entry after the last one and return the current balance")
+    public void shouldAppendCreditToLedger() {
+        String email = "usertest@email.com";
+        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(email, null);
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+
+        when(walletRepository.findForCredit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(100), 2L)));
+        when(walletLedgerRepository.findTail(1L, 2L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(30), 5L, 3L));
+
+        Wallet result = walletServices.creditWallet("50");
+
+        assertEquals(0, result.getBalance().compareTo(BigDecimal.valueOf(180)));
+        assertEquals(5L, result.getPoints());
+        verify(walletLedgerRepository).saveAndFlush(argThat(entry -> entry.getType() == LedgerEntryType.CREDIT && entry.getSeq() == 4L
+                && entry.getAmount().compareTo(BigDecimal.valueOf(50)) == 0));
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    @DisplayName("Should credit again after the tail it read when another append took its seq")
+    public void shouldRetryCreditOnSeqConflict() {
+        String email = "usertest@email.com";
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null));
+
+        when(walletRepository.findForCredit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(100), 2L)));
+        when(walletLedgerRepository.findTail(1L, 2L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(30), 0L, 3L),
+                new LedgerTailDto(BigDecimal.valueOf(40), 0L, 4L));
+        when(walletLedgerRepository.saveAndFlush(argThat(entry -> entry.getSeq() == 4L)))
+                .thenThrow(new DataIntegrityViolationException("ux_wallet_ledger_user_seq"));
+
+        Wallet result = walletServices.creditWallet("50");
+
+        assertEquals(0, result.getBalance().compareTo(BigDecimal.valueOf(190)));
+        verify(walletLedgerRepository).saveAndFlush(argThat(entry -> entry.getSeq() == 5L));
+    }
+
+    @Test
+    @DisplayName("Should give up the credit after the configured attempts keep conflicting")
+    public void shouldGiveUpCreditAfterMaxAttempts() {
+        String email = "usertest@email.com";
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null));
+
+        when(walletRepository.findForCredit(email)).thenReturn(Optional.of(snapshot(BigDecimal.valueOf(100), 2L)));
+        when(walletLedgerRepository.findTail(1L, 2L)).thenReturn(new LedgerTailDto(BigDecimal.ZERO, 0L, 2L));
+        when(walletLedgerRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("ux_wallet_ledger_user_seq"));
+
+        assertThrows(WalletUpdateConflictException.class, () -> walletServices.creditWallet("50"));
+        verify(walletLedgerRepository, times(5)).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Should return the snapshot plus the entries after it as the authenticated user wallet")
+    public void shouldMaterializeAuthenticatedUserWallet() {
+        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken("usertest@email.com", null);
+        SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+        Wallet snapshot = snapshot(BigDecimal.valueOf(100), 2L);
+
+        when(usersRepository.findByEmail(any())).thenReturn(Optional.of(snapshot.getUser()));
+        when(walletRepository.findByUser(any())).thenReturn(Optional.of(snapshot));
+        when(walletLedgerRepository.findTail(1L, 2L)).thenReturn(new LedgerTailDto(BigDecimal.valueOf(-40), 12L, 6L));
+
+        Wallet result = walletServices.getAuthenticatedUserWallet().orElseThrow();
+
+        assertEquals(0, result.getBalance().compareTo(BigDecimal.valueOf(60)));
+        assertEquals(12L, result.getPoints());
+    }
+
+    @Test
+    @DisplayName("Should debit a batch with one lock query and send its confirmations together")
+    public void shouldDebitBatchOfWallets() {
+        String email = "testuser@email.com";
+        UUID firstSale = UUID.randomUUID();
+        UUID secondSale = UUID.randomUUID();
+        UUID unknownSale = UUID.randomUUID();
+        List<WalletDebitDto> debits = List.of(
+                WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(60)).saleId(firstSale).build(),
+                WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(60)).saleId(secondSale).build(),
+                WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(60)).saleId(firstSale).build(),
+                WalletDebitDto.builder().email("unknown@email.com").value(BigDecimal.ONE).saleId(unknownSale).build());
+
+        when(walletRepository.lockAllForDebit(any())).thenReturn(List.of(snapshot(BigDecimal.valueOf(100), 4L)));
+        when(walletLedgerRepository.findTails(List.of(1L))).thenReturn(List.of(new LedgerTailDto(1L, BigDecimal.ZERO, 0L, 6L)));
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, RabbitOperations.OperationsCallback.class).doInRabbit(rabbitTemplate));
+        walletServices.debitWallets(debits);
+
+        // Only the first sale fits, the same sale again in the batch gets its answer without a second entry
+        verify(walletLedgerRepository).saveAll(argThat((List<WalletLedgerEntry> entries) -> entries.size() == 1
+                && entries.get(0).getSeq() == 7L && firstSale.equals(entries.get(0).getReferenceId())));
+        verify(walletRepository, times(1)).lockAllForDebit(any());
+        verify(rabbitTemplate, times(2)).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> confirmation.getIsDebitConfirmed() && firstSale.equals(confirmation.getSaleId())), any(CorrelationData.class));
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && secondSale.equals(confirmation.getSaleId())), any(CorrelationData.class));
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && unknownSale.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
+
+    @Test
+    @DisplayName("Should void a canceled debit in a batch without locking its wallet")
+    public void shouldCancelDebitInBatch() {
+        UUID saleId = UUID.randomUUID();
+        List<WalletDebitDto> debits = List.of(
+                WalletDebitDto.builder().email("canceled@email.com").value(BigDecimal.TEN).saleId(saleId).cancel(true).build());
+
+        when(walletRepository.lockAllForDebit(any())).thenReturn(List.of());
+        when(rabbitTemplate.invoke(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, RabbitOperations.OperationsCallback.class).doInRabbit(rabbitTemplate));
+        walletServices.debitWallets(debits);
+
+        verify(walletRepository, never()).lockAllForDebit(argThat(emails -> emails.contains("canceled@email.com")));
+        assertFalse(processedDebitRepository.findById(saleId).orElseThrow().getConfirmed());
+        verify(rabbitTemplate).convertAndSend(eq("DebitConfirmationQueue"),
+                argThat((DebitConfirmationDto confirmation) -> !confirmation.getIsDebitConfirmed() && saleId.equals(confirmation.getSaleId())), any(CorrelationData.class));
+    }
 
-        assertThrows(WalletWasNotFoundException.class, () -> walletServices.debitWallet(walletDebitDto));
+    private Wallet snapshot(BigDecimal balance, Long ledgerSeq) {
+        return Wallet.builder().id(1L).user(Users.builder().id(1L).email("testuser@email.com").build())
+                .balance(balance).points(0L).ledgerSeq(ledgerSeq).build();
     }
 }
@@ -0,0 +1,83 @@
+package br.com.sysmap.bootcamp.domain.service;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.entities.Wallet;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletLedgerRepository;
+import br.com.sysmap.bootcamp.domain.repositories.WalletRepository;
+import br.com.sysmap.bootcamp.domain.services.WalletServices;
+import br.com.sysmap.bootcamp.domain.services.WalletSnapshotter;
+import br.com.sysmap.bootcamp.dto.LedgerTailDto;
+import br.com.sysmap.bootcamp.dto.WalletDebitDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+public class WalletSnapshotterTest {
+
+    @Autowired
+    private WalletSnapshotter walletSnapshotter;
+
+    @Autowired
+    private WalletServices walletServices;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletLedgerRepository walletLedgerRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @Test
+    @DisplayName("Should fold the ledger entries into the wallet snapshot and keep the balance")
+    public void shouldFoldLedgerIntoSnapshot() {
+        String email = "snapshot-" + UUID.randomUUID() + "@email.com";
+        Users user = usersRepository.save(Users.builder().name("snapshot").email(email).password("secret").build());
+        Wallet wallet = walletRepository.save(Wallet.builder().user(user).balance(BigDecimal.valueOf(100)).points(10L)
+                .lastUpdate(LocalDateTime.now()).build());
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(email, null));
+        doAnswer(invocation -> invocation.<CorrelationData>getArgument(2).getFuture().complete(new CorrelationData.Confirm(true, null)))
+                .when(rabbitTemplate).convertAndSend(anyString(), any(Object.class), any(CorrelationData.class));
+
+        walletServices.creditWallet("50");
+        walletServices.creditWallet("30");
+        walletServices.debitWallet(WalletDebitDto.builder().email(email).value(BigDecimal.valueOf(60)).saleId(UUID.randomUUID()).build());
+        Wallet before = walletServices.getAuthenticatedUserWallet().orElseThrow();
+
+        walletSnapshotter.snapshot();
+
+        Wallet snapshot = walletRepository.findById(wallet.getId()).orElseThrow();
+        assertEquals(0, snapshot.getBalance().compareTo(BigDecimal.valueOf(120)));
+        assertEquals(before.getPoints(), snapshot.getPoints());
+        assertEquals(3L, snapshot.getLedgerSeq());
+        LedgerTailDto tail = walletLedgerRepository.findTail(user.getId(), snapshot.getLedgerSeq());
+        assertEquals(0, tail.getBalance().compareTo(BigDecimal.ZERO));
+        Wallet after = walletServices.getAuthenticatedUserWallet().orElseThrow();
+        assertEquals(0, after.getBalance().compareTo(before.getBalance()));
+
+        // Entries after the snapshot are read on top of it
+        walletServices.creditWallet("5");
+        assertEquals(0, walletServices.getAuthenticatedUserWallet().orElseThrow().getBalance().compareTo(BigDecimal.valueOf(125)));
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.sysmap.bootcamp.web;
+
+import br.com.sysmap.bootcamp.domain.entities.Users;
+import br.com.sysmap.bootcamp.domain.repositories.UsersRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"security.admins=admin@email.com", "management.endpoints.web.exposure.include=deadletters"})
+@AutoConfigureMockMvc
+public class DeadLetterSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @MockBean
+    private UsersRepository usersRepository;
+
+    @MockBean
+    private RabbitTemplate rabbitTemplate;
+
+    @MockBean
+    private AmqpAdmin amqpAdmin;
+
+    @BeforeEach
+    public void setUp() {
+        for (String email : new String[]{"admin@email.com", "buyer@email.com"}) {
+            when(usersRepository.findByEmail(email)).thenReturn(Optional.of(Users.builder().email(email).password(passwordEncoder.encode("123")).build()));
+        }
+    }
+
+    @Test
+    @DisplayName("Should only let admins list and replay dead letters")
+    public void shouldOnlyLetAdminsReplayDeadLetters() throws Exception {
+        mockMvc.perform(get("/actuator/deadletters")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/deadletters").with(httpBasic("admin@email.com", "wrong"))).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/deadletters").with(httpBasic("buyer@email.com", "123"))).andExpect(status().isForbidden());
+        mockMvc.perform(post("/actuator/deadletters/WalletCreationQueue").with(httpBasic("buyer@email.com", "123"))).andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/actuator/deadletters").with(httpBasic("admin@email.com", "123"))).andExpect(status().isOk());
+        mockMvc.perform(post("/actuator/deadletters/WalletCreationQueue").with(httpBasic("admin@email.com", "123")).contentType(MediaType.APPLICATION_JSON).content("{}")).andExpect(status().isOk());
+    }
+}
@@ -65,7 +65,7 @@ public class UsersControllerTest {
                         .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                         .andExpect(jsonPath("$.name").value("User Test"))
                         .andExpect(jsonPath("$.email").value("test@email.com"))
-                        .andExpect(jsonPath("$.password").exists());
+                        .andExpect(jsonPath("$.password").doesNotExist());
     }
 
     @Test
@@ -222,7 +222,7 @@ public class UsersControllerTest {
                         .andExpect(status().isOk())
                         .andExpect(jsonPath("$.name").value("User test"))
                         .andExpect(jsonPath("$.email").value("test@email.com"))
-                        .andExpect(jsonPath("$.password").exists());
+                        .andExpect(jsonPath("$.password").doesNotExist());
     }
 
     @Test
@@ -5,6 +5,7 @@ import br.com.sysmap.bootcamp.domain.entities.Wallet;
 import br.com.sysmap.bootcamp.domain.services.WalletServices;
 import br.com.sysmap.bootcamp.errors.InvalidValueException;
 import br.com.sysmap.bootcamp.errors.UserNotFoundException;
+import br.com.sysmap.bootcamp.errors.WalletUpdateConflictException;
 import br.com.sysmap.bootcamp.errors.WalletWasNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.DisplayName;
@@ -97,6 +98,28 @@ public class WalletControllerTest {
                 .andExpect(jsonPath("$.balance").value(50));
     }
 
+    @Test
+    @DisplayName("Should credit once when retried with the same idempotency key")
+    public void shouldCreditOnceWithSameIdempotencyKey() throws Exception {
+        Wallet wallet = Wallet.builder()
+                .balance(BigDecimal.valueOf(50))
+                .points(0L)
+                .lastUpdate(LocalDateTime.now())
+                .user(Users.builder().build())
+                .build();
+
+        when(walletServices.creditWallet("50")).thenReturn(wallet);
+
+        mockMvc.perform(post("/wallet/credit/50").header("Idempotency-Key", "credit-50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(50));
+        mockMvc.perform(post("/wallet/credit/50").header("Idempotency-Key", "credit-50"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.balance").value(50));
+        verify(walletServices, times(1)).creditWallet("50");
+    }
+
     @Test
     @DisplayName("Should return bad request when credit wallet with invalid user")
     public void shouldReturnBadRequestWhenCreditWalletWithInvalidUser() throws Exception {
@@ -126,4 +149,15 @@ public class WalletControllerTest {
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("Wallet not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should return service unavailable when the wallet stays busy")
+    public void shouldReturnServiceUnavailableWhenWalletStaysBusy() throws Exception {
+        when(walletServices.creditWallet("1")).thenThrow(new WalletUpdateConflictException("Error on creditWallet"));
+
+        mockMvc.perform(post("/wallet/credit/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(content().string("Wallet is busy, try again"));
+    }
+}
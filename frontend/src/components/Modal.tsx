@@ -1,6 +1,6 @@
 import { AlbumModel } from '@/models/AlbumModel';
 import { albumApi } from '@/services/apiService';
-import { useEffect, useState } from 'react';
+import { useEffect, useMemo, useState } from 'react';
 import { toast } from 'react-hot-toast';
 import '../../src/styles/modal-style.css';
 import { UserModel } from '@/models/UserModel';
@@ -15,6 +15,8 @@ interface props {
 export function Modal( {album, isVisible, onClose} : props){
     const [isModalVisible, setModalVisible] = useState(false);
     const formattedReleaseDate = album.releaseDate.split('-').reverse().join('/');
+    // Same key for every attempt to buy this album, a double click or a retry is only charged once
+    const saleKey = useMemo(() => crypto.randomUUID(), [album.id]);
 
     useEffect (() => {
         setModalVisible(isVisible);
@@ -40,11 +42,10 @@ export function Modal( {album, isVisible, onClose} : props){
                     id: userData.id,
                     name: userData.name,
                     email: userData.email,
-                    password: userData.password,
                 }
             };
 
-            albumApi.post(`/albums/sale`, data, { headers: { Authorization: `Basic ${localStorage.getItem('@Auth.Token')}` } })
+            albumApi.post(`/albums/sale`, data, { headers: { Authorization: `Basic ${localStorage.getItem('@Auth.Token')}`, 'Idempotency-Key': saleKey } })
                 .then(() => {
                     toast.success('Album comprado com sucesso!');
                     setTimeout(() => {
@@ -82,7 +82,6 @@ export const AuthProvider: React.FC<Props> = ({children}) => {
       id: userData?.id?? 0,
       name: userData?.name?? '',
       email: userData?.email?? '',
-      password: userData?.password?? '',
    };
 
   return (
@@ -12,5 +12,4 @@ export class Album {
 type User = {
     id : string;
     email : string;
-    password : string;
 }
\ No newline at end of file
@@ -2,5 +2,4 @@ export class UserModel {
     id: number;
     name: string;
     email: string;
-    password: string;
   }
\ No newline at end of file
@@ -5,29 +5,69 @@ import totalAlbumsIcon from "@/assets/total-albums.svg";
 import totalSpendingIcon from "@/assets/total-spending.svg";
 import { albumApi } from "@/services/apiService";
 import { Album } from "@/models/Album";
-import { useEffect, useState, useMemo } from "react";
+import { useCallback, useEffect, useRef, useState } from "react";
 import { AlbumCard } from "@/components/AlbumCard";
+import toast from "react-hot-toast";
 
 const MY_COLLECTION_TEXT = "Minha coleção";
 const TOTAL_ALBUMS_TEXT = "Total de albums";
 const TOTAL_SPENDING_TEXT = "Valor investido";
 const NO_ALBUMS_TEXT = "Nenhum album encontrado";
+const LOADING_TEXT = "Carregando...";
+const LOAD_ERROR_TEXT = "Não foi possível carregar a sua coleção";
+const PAGE_SIZE = 50;
 
 export function UserCollection(){
     const _navegate = useNavigate();
     const [albums, setAlbums] = useState<Album[]>([]);
+    const [totals, setTotals] = useState({ albums: 0, value: 0 });
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
     const [loading, setLoading] = useState(true);
+    const endOfListRef = useRef<HTMLDivElement>(null);
 
-    useEffect(() => {
-        albumApi.get('/albums/my-collection', { headers: { Authorization: `Basic ${localStorage.getItem('@Auth.Token')}` } })
+    // The collection comes in pages, X-Next-Cursor points to the next one until the last page.
+    // The first page also carries the totals of the whole collection, the next ones are only read when needed
+    const loadPage = useCallback((after?: string) => {
+        setLoading(true);
+        albumApi.get('/albums/my-collection', {
+            params: { after, limit: PAGE_SIZE },
+            headers: { Authorization: `Basic ${localStorage.getItem('@Auth.Token')}` }
+        })
             .then((resp) => {
-                setAlbums(resp.data);
-                setLoading(false);
+                setAlbums((loaded) => after ? [...loaded, ...resp.data] : resp.data);
+                if (!after) {
+                    setTotals({ albums: Number(resp.headers['x-total-count'] ?? 0), value: Number(resp.headers['x-total-value'] ?? 0) });
+                }
+                setNextCursor(resp.headers['x-next-cursor'] ?? null);
+            })
+            // Stops paging instead of asking for the same page again every time the end of the list is in view
+            .catch(() => {
+                toast.error(LOAD_ERROR_TEXT);
+                setNextCursor(null);
             })
+            .finally(() => setLoading(false));
     }, []);
 
-    const totalAlbums = useMemo(() => albums.length, [albums]);
-    const totalSpending = useMemo(() => albums.reduce((acc, album) => acc + album.value, 0).toFixed(2), [albums]);
+    useEffect(() => {
+        loadPage();
+    }, [loadPage]);
+
+    // Loads the next page once the end of the list scrolls into view. Observed again after every page,
+    // so a page too short to fill the screen is followed by the next one right away
+    useEffect(() => {
+        const endOfList = endOfListRef.current;
+        if (!endOfList || !nextCursor || loading) {
+            return;
+        }
+        const observer = new IntersectionObserver((entries) => {
+            if (entries[0].isIntersecting) {
+                observer.disconnect();
+                loadPage(nextCursor);
+            }
+        });
+        observer.observe(endOfList);
+        return () => observer.disconnect();
+    }, [nextCursor, loading, loadPage]);
 
     return (
        <>
@@ -42,25 +82,26 @@ export function UserCollection(){
                     <div className="flex p-4 gap-4 sm:mx-7 sm:justify-normal justify-center w-full">
                         <CollectionCard icon={totalAlbumsIcon}>
                             <h1 className="text-black text-lg font-semibold">{TOTAL_ALBUMS_TEXT}</h1>
-                            <p className="text-black text-lg text-start font-semibold">{totalAlbums}</p>
+                            <p className="text-black text-lg text-start font-semibold">{totals.albums}</p>
                         </CollectionCard>
                         <CollectionCard icon={totalSpendingIcon}>
                             <h1 className="text-black text-lg font-semibold">{TOTAL_SPENDING_TEXT}</h1>
-                            <p className="text-black text-lg text-start font-semibold">R${totalSpending}</p>
+                            <p className="text-black text-lg text-start font-semibold">R${totals.value.toFixed(2)}</p>
                         </CollectionCard>
                     </div>
                 </div>
  
-                { {loading} && (
-                    <div className="flex flex-wrap gap-4 justify-center">
-                        { albums.length === 0 && <div className="flex w-full justify-center"><h1 className="text-white text-2xl">{NO_ALBUMS_TEXT}</h1></div>}
-                        { albums?.map((album, i) => (
-                            <div key={i} style={{'--bg-fundo': `url(${album.imageUrl})`} as React.CSSProperties} className="bg-[image:var(--bg-fundo)] bg-cover bg-no-repeat w-60 h-[245px] rounded-md hover:scale-110">
-                                <AlbumCard albumName={album.name} albumValue={album.value}/>
-                            </div>
-                        ))}
-                    </div>
-                )}
+                <div className="flex flex-wrap gap-4 justify-center">
+                    { !loading && albums.length === 0 && <div className="flex w-full justify-center"><h1 className="text-white text-2xl">{NO_ALBUMS_TEXT}</h1></div>}
+                    { albums.map((album) => (
+                        <div key={album.id} style={{'--bg-fundo': `url(${album.imageUrl})`} as React.CSSProperties} className="bg-[image:var(--bg-fundo)] bg-cover bg-no-repeat w-60 h-[245px] rounded-md hover:scale-110">
+                            <AlbumCard albumName={album.name} albumValue={album.value}/>
+                        </div>
+                    ))}
+                </div>
+                <div ref={endOfListRef} className="flex w-full justify-center py-6">
+                    { loading && <p className="text-white">{LOADING_TEXT}</p>}
+                </div>
             </div>
         </section>
        </>